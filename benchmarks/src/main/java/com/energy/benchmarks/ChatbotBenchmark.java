@@ -0,0 +1,38 @@
+package com.energy.benchmarks;
+
+import com.energy.support.dto.ChatResponse;
+import com.energy.support.service.RuleBasedChatbotService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rule matching of the support chatbot, for a message that hits a high-priority rule early and
+ * for one that falls through every rule.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatbotBenchmark {
+
+    private RuleBasedChatbotService chatbotService;
+
+    @Setup
+    public void setUp() {
+        chatbotService = new RuleBasedChatbotService();
+        chatbotService.initRules();
+    }
+
+    @Benchmark
+    public ChatResponse matchingMessage() {
+        return chatbotService.processMessage("Why is my energy bill high this month?");
+    }
+
+    @Benchmark
+    public ChatResponse unmatchedMessage() {
+        return chatbotService.processMessage("Can you tell me something about the weather tomorrow in Cluj?");
+    }
+}
@@ -0,0 +1,46 @@
+package com.energy.benchmarks;
+
+import com.energy.loadbalancer.service.ConsistentHashingService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replica lookup done by the load balancer for every measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsistentHashingBenchmark {
+
+    @Param({"3", "10"})
+    private int replicas;
+
+    private ConsistentHashingService hashingService;
+    private String[] deviceIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        hashingService = new ConsistentHashingService();
+        ReflectionTestUtils.setField(hashingService, "numberOfReplicas", replicas);
+        ReflectionTestUtils.setField(hashingService, "queuePrefix", "monitoring-ingest-queue");
+        ReflectionTestUtils.setField(hashingService, "virtualNodesPerReplica", 150);
+        hashingService.init();
+
+        deviceIds = new String[4096];
+        for (int i = 0; i < deviceIds.length; i++) {
+            deviceIds[i] = Integer.toString(i + 1);
+        }
+    }
+
+    @Benchmark
+    public String getReplicaQueue() {
+        next = (next + 1) & (deviceIds.length - 1);
+        return hashingService.getReplicaQueue(deviceIds[next]);
+    }
+}
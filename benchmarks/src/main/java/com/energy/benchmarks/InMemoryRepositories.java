@@ -0,0 +1,95 @@
+package com.energy.benchmarks;
+
+import com.energy.monitoring.dto.HourlyDelta;
+import com.energy.monitoring.entity.DeviceReference;
+import com.energy.monitoring.entity.EnergyConsumption;
+import com.energy.monitoring.entity.EnergyUnits;
+import com.energy.monitoring.repository.DeviceReferenceRepository;
+import com.energy.monitoring.repository.EnergyConsumptionRepository;
+import org.springframework.data.domain.Page;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map-backed stand-ins for the monitoring repositories, implementing only the methods the ingest
+ * path calls, so benchmarks measure the service code rather than a database round trip.
+ */
+final class InMemoryRepositories {
+
+    private final Map<HourKey, Long> hourlyTotals = new ConcurrentHashMap<>();
+
+    EnergyConsumptionRepository consumption() {
+        return proxy(EnergyConsumptionRepository.class, (method, args) -> switch (method.getName()) {
+            case "findByDeviceIdAndTimestamp" -> {
+                HourKey key = new HourKey((Long) args[0], (LocalDateTime) args[1]);
+                yield Optional.ofNullable(hourlyTotals.get(key)).map(total -> EnergyConsumption.builder()
+                        .deviceId(key.deviceId())
+                        .timestamp(key.hour())
+                        .totalConsumption(EnergyUnits.toDecimal(total))
+                        .build());
+            }
+            case "applyHourlyDeltas" -> {
+                @SuppressWarnings("unchecked")
+                List<HourlyDelta> deltas = (List<HourlyDelta>) args[0];
+                for (HourlyDelta delta : deltas) {
+                    hourlyTotals.merge(new HourKey(delta.getDeviceId(), delta.getTimestamp()), delta.getDelta(), Long::sum);
+                }
+                yield null;
+            }
+            case "upsertHourlyConsumption" -> {
+                hourlyTotals.merge(new HourKey((Long) args[0], (LocalDateTime) args[1]),
+                        EnergyUnits.toMilliwattHours((BigDecimal) args[2]), Long::sum);
+                yield 1;
+            }
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    /**
+     * Every device exists, belongs to user 1 and has no effective limit, so no alerts are sent.
+     */
+    DeviceReferenceRepository deviceReferences() {
+        return proxy(DeviceReferenceRepository.class, (method, args) -> switch (method.getName()) {
+            case "findById" -> Optional.of(new DeviceReference(
+                    (Long) args[0], "device-" + args[0], Double.MAX_VALUE, 1L));
+            case "findAll" -> Page.empty();
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    static <T> T unsupported(Class<T> repositoryType) {
+        return proxy(repositoryType, (method, args) -> {
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> "InMemory" + type.getSimpleName();
+                };
+            }
+            return handler.invoke(method, args);
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler));
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object invoke(Method method, Object[] args);
+    }
+
+    private record HourKey(Long deviceId, LocalDateTime hour) {
+    }
+}
@@ -0,0 +1,170 @@
+package com.energy.benchmarks;
+
+import com.energy.monitoring.dto.DeviceMeasurement;
+import com.energy.monitoring.repository.DailyConsumptionRepository;
+import com.energy.monitoring.repository.DeviceReferenceRepository;
+import com.energy.monitoring.repository.EnergyConsumptionRepository;
+import com.energy.monitoring.repository.MonthlyConsumptionRepository;
+import com.energy.monitoring.service.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measurement processing in monitoring-service (dedup, recent-readings store, watermark,
+ * baselines, heartbeats, write-behind accumulator, limit cache and alert state) against
+ * in-memory repositories.
+ * <p>
+ * Readings are spread round-robin over {@code devices} devices, each 10 seconds after the
+ * previous reading of the same device, so hours roll over and buckets get flushed as in
+ * production. Configuration values are the defaults from application.properties.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MonitoringIngestBenchmark {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"1000"})
+    private int devices;
+
+    private MonitoringService monitoringService;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        monitoringService = createMonitoringService();
+        sequence = 0;
+    }
+
+    @Benchmark
+    public void processDeviceMeasurement() {
+        monitoringService.processDeviceMeasurement(nextMeasurement());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int processMeasurementBatch() {
+        List<DeviceMeasurement> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(nextMeasurement());
+        }
+        return monitoringService.processMeasurementBatch(batch);
+    }
+
+    private DeviceMeasurement nextMeasurement() {
+        long n = sequence++;
+        long deviceId = 1 + n % devices;
+        LocalDateTime timestamp = START.plusSeconds(10 * (n / devices));
+        return new DeviceMeasurement(timestamp, deviceId, 0.05 + (n % 7) * 0.01);
+    }
+
+    private static MonitoringService createMonitoringService() {
+        InMemoryRepositories repositories = new InMemoryRepositories();
+        EnergyConsumptionRepository consumptionRepository = repositories.consumption();
+        DeviceReferenceRepository referenceRepository = repositories.deviceReferences();
+        IngestMetrics ingestMetrics = new IngestMetrics(new SimpleMeterRegistry());
+        RabbitTemplate rabbitTemplate = new RabbitTemplate();
+
+        ConsumptionResponseCache responseCache = new ConsumptionResponseCache(rabbitTemplate);
+        ReflectionTestUtils.setField(responseCache, "capacity", 10_000);
+        // Keeps the 2025 readings on open days, so no write broadcasts an invalidation
+        ReflectionTestUtils.setField(responseCache, "closedDayGrace", Duration.ofDays(365_000));
+        ReflectionTestUtils.setField(responseCache, "invalidationExchange", "monitoring-cache-exchange");
+
+        HourlyConsumptionAccumulator accumulator = new HourlyConsumptionAccumulator(consumptionRepository, ingestMetrics,
+                responseCache);
+        ReflectionTestUtils.setField(accumulator, "maxDirtyBuckets", 1000);
+        ReflectionTestUtils.setField(accumulator, "idleCloseAfter", Duration.ofHours(1));
+
+        DeviceLimitCache deviceLimitCache = new DeviceLimitCache(referenceRepository, ingestMetrics);
+        ReflectionTestUtils.setField(deviceLimitCache, "capacity", 65536);
+        ReflectionTestUtils.setField(deviceLimitCache, "missingTtl", Duration.ofMinutes(1));
+        deviceLimitCache.afterSingletonsInstantiated();
+
+        AlertStateTracker alertStateTracker = new AlertStateTracker();
+        ReflectionTestUtils.setField(alertStateTracker, "hysteresisMargin", 0.05);
+        ReflectionTestUtils.setField(alertStateTracker, "reNotifyIntervalMs", 3_600_000L);
+
+        RecentReadingsStore recentReadingsStore = new RecentReadingsStore();
+        ReflectionTestUtils.setField(recentReadingsStore, "enabled", true);
+        ReflectionTestUtils.setField(recentReadingsStore, "retentionDays", 7);
+
+        MeasurementDeduplicator deduplicator = new MeasurementDeduplicator();
+        ReflectionTestUtils.setField(deduplicator, "enabled", true);
+        ReflectionTestUtils.setField(deduplicator, "ringSize", 16);
+        ReflectionTestUtils.setField(deduplicator, "bloomBits", 1 << 24);
+        ReflectionTestUtils.invokeMethod(deduplicator, "init");
+
+        EventTimeWatermarks watermarks = new EventTimeWatermarks();
+        ReflectionTestUtils.setField(watermarks, "allowedLateness", Duration.ofMinutes(10));
+        // Readings are timestamped from 2025 on, so the wall-clock bound is left off
+        ReflectionTestUtils.setField(watermarks, "maxProcessingDelay", Duration.ZERO);
+
+        ConsumptionBaselines baselines = new ConsumptionBaselines();
+        ReflectionTestUtils.setField(baselines, "enabled", true);
+        ReflectionTestUtils.setField(baselines, "maxDevices", 65536);
+        ReflectionTestUtils.setField(baselines, "alpha", 0.05);
+        ReflectionTestUtils.setField(baselines, "minSamples", 30);
+        ReflectionTestUtils.setField(baselines, "anomalyThreshold", 4.0);
+        ReflectionTestUtils.setField(baselines, "minRelativeDeviation", 0.25);
+        ReflectionTestUtils.setField(baselines, "projectionMinElapsed", Duration.ofMinutes(10));
+        ReflectionTestUtils.invokeMethod(baselines, "init");
+
+        AlertPublisher alertPublisher = new AlertPublisher(deviceLimitCache, alertStateTracker, baselines,
+                ingestMetrics, rabbitTemplate, new ObjectMapper());
+        ReflectionTestUtils.setField(alertPublisher, "alertExchange", "alert-exchange");
+        ReflectionTestUtils.setField(alertPublisher, "alertRoutingKey", "alert.overconsumption");
+
+        DeviceHeartbeatMonitor heartbeats = new DeviceHeartbeatMonitor(alertPublisher);
+        ReflectionTestUtils.setField(heartbeats, "enabled", true);
+        ReflectionTestUtils.setField(heartbeats, "maxDevices", 65536);
+        ReflectionTestUtils.setField(heartbeats, "expectedInterval", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(heartbeats, "missedIntervals", 3);
+        ReflectionTestUtils.setField(heartbeats, "tickMillis", 1000L);
+        ReflectionTestUtils.setField(heartbeats, "wheelSize", 512);
+        ReflectionTestUtils.setField(heartbeats, "forgetAfter", Duration.ofHours(24));
+        ReflectionTestUtils.invokeMethod(heartbeats, "init");
+
+        HotPathLogger hotPathLogger = new HotPathLogger();
+        ReflectionTestUtils.setField(hotPathLogger, "sampleEvery", 1000L);
+        ReflectionTestUtils.setField(hotPathLogger, "maxLinesPerSecond", 5.0);
+
+        return new MonitoringService(
+                consumptionRepository,
+                referenceRepository,
+                InMemoryRepositories.unsupported(DailyConsumptionRepository.class),
+                InMemoryRepositories.unsupported(MonthlyConsumptionRepository.class),
+                accumulator,
+                deviceLimitCache,
+                alertStateTracker,
+                alertPublisher,
+                recentReadingsStore,
+                new RecentReadingsPeers(new RestTemplateBuilder()),
+                deduplicator,
+                watermarks,
+                baselines,
+                heartbeats,
+                responseCache,
+                new DeviceStateBroadcaster(rabbitTemplate),
+                hotPathLogger,
+                ingestMetrics,
+                new DefaultListableBeanFactory().getBeanProvider(IngestPipeline.class),
+                new DefaultListableBeanFactory().getBeanProvider(MeasurementJournal.class));
+    }
+}
@@ -0,0 +1,112 @@
+package com.energy.simulator;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.ShutdownSignalException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A few channels multiplexed over one connection, shared by all simulated devices.
+ * <p>
+ * Channels are not safe for concurrent publishing, so each one is guarded by a lock; a device
+ * always uses the same channel. Publisher confirms are enabled and handled asynchronously, which
+ * keeps publishing non-blocking while still measuring how long the broker takes to accept a
+ * message.
+ */
+@Slf4j
+final class ChannelPool implements AutoCloseable {
+
+    private static final long CONFIRM_TIMEOUT_MS = 10_000;
+
+    private final Connection connection;
+    private final PooledChannel[] channels;
+
+    ChannelPool(ConnectionFactory connectionFactory, int size, PublishStats stats) throws IOException, TimeoutException {
+        this.connection = connectionFactory.newConnection("fleet-simulator");
+        this.channels = new PooledChannel[size];
+        for (int i = 0; i < size; i++) {
+            channels[i] = new PooledChannel(connection.createChannel(), stats);
+        }
+    }
+
+    void publish(long deviceId, String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body)
+            throws IOException {
+        channels[Math.floorMod(deviceId, channels.length)].publish(exchange, routingKey, properties, body);
+    }
+
+    /**
+     * Waits for outstanding confirms, then closes the connection.
+     */
+    @Override
+    public void close() throws IOException {
+        for (PooledChannel channel : channels) {
+            try {
+                channel.channel.waitForConfirms(CONFIRM_TIMEOUT_MS);
+            } catch (TimeoutException | InterruptedException e) {
+                log.warn("Gave up waiting for {} publisher confirms", channel.pending.size());
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            } catch (ShutdownSignalException e) {
+                log.warn("Channel closed before all confirms arrived: {}", e.getMessage());
+            }
+        }
+        connection.close();
+    }
+
+    private static final class PooledChannel {
+
+        private final Channel channel;
+        private final PublishStats stats;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final NavigableMap<Long, Long> pending = new ConcurrentSkipListMap<>();
+
+        PooledChannel(Channel channel, PublishStats stats) throws IOException {
+            this.channel = channel;
+            this.stats = stats;
+            channel.confirmSelect();
+            channel.addConfirmListener(
+                    (deliveryTag, multiple) -> complete(deliveryTag, multiple, true),
+                    (deliveryTag, multiple) -> complete(deliveryTag, multiple, false));
+        }
+
+        void publish(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body)
+                throws IOException {
+            lock.lock();
+            try {
+                long seqNo = channel.getNextPublishSeqNo();
+                pending.put(seqNo, System.nanoTime());
+                try {
+                    channel.basicPublish(exchange, routingKey, properties, body);
+                } catch (IOException e) {
+                    pending.remove(seqNo);
+                    throw e;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void complete(long deliveryTag, boolean multiple, boolean ack) {
+            if (multiple) {
+                NavigableMap<Long, Long> confirmed = pending.headMap(deliveryTag, true);
+                confirmed.values().forEach(publishedAt -> stats.recordConfirm(publishedAt, ack));
+                confirmed.clear();
+            } else {
+                Long publishedAt = pending.remove(deliveryTag);
+                if (publishedAt != null) {
+                    stats.recordConfirm(publishedAt, ack);
+                }
+            }
+        }
+    }
+}
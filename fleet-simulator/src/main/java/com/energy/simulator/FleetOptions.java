@@ -0,0 +1,68 @@
+package com.energy.simulator;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Command line options, given as {@code --name=value}.
+ *
+ * @param rate target messages per second for the whole fleet; by default every device publishes
+ *             once per {@code interval_seconds} as the Python simulator does
+ * @param duration how long to publish, or zero to run until interrupted
+ */
+record FleetOptions(
+        Path config,
+        int devices,
+        long firstDeviceId,
+        double rate,
+        long seed,
+        int channels,
+        Duration duration,
+        Duration reportInterval,
+        String rabbitHost) {
+
+    private static final Set<String> NAMES = Set.of(
+            "config", "devices", "first-device-id", "rate", "seed", "channels",
+            "duration", "report-interval", "rabbitmq-host");
+
+    static FleetOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            if (!NAMES.contains(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name + ", expected one of " + NAMES);
+            }
+            values.put(name, arg.substring(eq + 1));
+        }
+
+        FleetOptions options = new FleetOptions(
+                Path.of(values.getOrDefault("config", "../device-simulator/config.json")),
+                Integer.parseInt(values.getOrDefault("devices", "1000")),
+                Long.parseLong(values.getOrDefault("first-device-id", "1")),
+                Double.parseDouble(values.getOrDefault("rate", "0")),
+                Long.parseLong(values.getOrDefault("seed", "42")),
+                Integer.parseInt(values.getOrDefault("channels", "8")),
+                Duration.parse(values.getOrDefault("duration", "PT5M")),
+                Duration.parse(values.getOrDefault("report-interval", "PT10S")),
+                values.getOrDefault("rabbitmq-host", System.getenv("RABBITMQ_HOST")));
+
+        if (options.devices <= 0 || options.channels <= 0 || options.rate < 0) {
+            throw new IllegalArgumentException("devices and channels must be positive and rate not negative");
+        }
+        return options;
+    }
+
+    /**
+     * Nanoseconds between two readings of the same device.
+     */
+    long periodNanos(int intervalSeconds) {
+        return rate > 0 ? (long) (devices * 1e9 / rate) : intervalSeconds * 1_000_000_000L;
+    }
+}
@@ -0,0 +1,116 @@
+package com.energy.simulator;
+
+import com.rabbitmq.client.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load-test counterpart of {@code device-simulator/simulator.py}: simulates a fleet of devices,
+ * one virtual thread each, publishing to the device data exchange over a small pool of channels.
+ * Reports progress periodically and a summary of the achieved rate and publish latency at the end.
+ */
+@Slf4j
+public final class FleetSimulator {
+
+    private final FleetOptions options;
+    private final SimulatorConfig config;
+    private final PublishStats stats = new PublishStats();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private FleetSimulator(FleetOptions options, SimulatorConfig config) {
+        this.options = options;
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws Exception {
+        FleetOptions options = FleetOptions.parse(args);
+        new FleetSimulator(options, SimulatorConfig.load(options.config())).run();
+    }
+
+    private void run() throws Exception {
+        SimulatorConfig.RabbitConfig rabbit = config.rabbitmq();
+        ConnectionFactory connectionFactory = new ConnectionFactory();
+        connectionFactory.setHost(options.rabbitHost() != null ? options.rabbitHost() : rabbit.host());
+        connectionFactory.setPort(rabbit.port());
+        connectionFactory.setUsername(rabbit.username());
+        connectionFactory.setPassword(rabbit.password());
+
+        long periodNanos = options.periodNanos(config.simulation().intervalSeconds());
+        double targetRate = options.devices() * 1e9 / periodNanos;
+        if (periodNanos < TimeUnit.SECONDS.toNanos(1)) {
+            log.warn("Devices publish more than once per second; monitoring-service drops readings "
+                    + "of a device with the same second as duplicates");
+        }
+
+        LoadProfile profile = new LoadProfile(config.simulation());
+        ExecutorService devices = Executors.newVirtualThreadPerTaskExecutor();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            devices.shutdownNow();
+            try {
+                finished.await(15, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        log.info("Simulating {} devices (ids {}..{}) at {} msg/s, seed {}, {} channels, duration {}",
+                options.devices(), options.firstDeviceId(), options.firstDeviceId() + options.devices() - 1,
+                String.format("%.1f", targetRate), options.seed(), options.channels(),
+                options.duration().isZero() ? "unlimited" : options.duration());
+
+        long start = System.nanoTime();
+        long end = options.duration().isZero() ? Long.MAX_VALUE : start + options.duration().toNanos();
+        try (ChannelPool channels = new ChannelPool(connectionFactory, options.channels(), stats)) {
+            long reportMs = options.reportInterval().toMillis();
+            long[] lastPublished = {0};
+            reporter.scheduleAtFixedRate(() -> {
+                long published = stats.published();
+                log.info("Published {} messages, {} msg/s over the last {}",
+                        published, String.format("%.1f", (published - lastPublished[0]) * 1000.0 / reportMs),
+                        options.reportInterval());
+                lastPublished[0] = published;
+            }, reportMs, reportMs, TimeUnit.MILLISECONDS);
+
+            for (int i = 0; i < options.devices(); i++) {
+                devices.execute(new SimulatedDevice(options.firstDeviceId() + i, options.seed(), profile,
+                        channels, stats, rabbit, periodNanos, start, end));
+            }
+            devices.shutdown();
+            while (!devices.awaitTermination(1, TimeUnit.SECONDS)) {
+                // wait for the duration to elapse or for the shutdown hook to interrupt the devices
+            }
+        } finally {
+            reporter.shutdownNow();
+            report(Duration.ofNanos(System.nanoTime() - start), targetRate);
+            finished.countDown();
+        }
+    }
+
+    private void report(Duration elapsed, double targetRate) {
+        PublishStats.Snapshot snapshot = stats.snapshot();
+        double seconds = elapsed.toNanos() / 1e9;
+        log.info("""
+
+                ===== Fleet simulator summary =====
+                Elapsed:        {} s
+                Target rate:    {} msg/s
+                Achieved rate:  {} msg/s
+                Published:      {} (failed {}, skipped behind schedule {})
+                Confirmed:      {} (nacked {})
+                Confirm latency (us): p50 {}  p90 {}  p99 {}  p99.9 {}  max {}""",
+                String.format("%.1f", seconds),
+                String.format("%.1f", targetRate),
+                String.format("%.1f", snapshot.published() / seconds),
+                snapshot.published(), snapshot.failed(), snapshot.missedTicks(),
+                snapshot.confirmed(), snapshot.nacked(),
+                snapshot.latencyPercentile(50), snapshot.latencyPercentile(90), snapshot.latencyPercentile(99),
+                snapshot.latencyPercentile(99.9), snapshot.maxLatencyMicros());
+    }
+}
@@ -0,0 +1,31 @@
+package com.energy.simulator;
+
+import java.util.SplittableRandom;
+
+/**
+ * Consumption per reading by hour of day, the same formula as {@code calculate_consumption} in
+ * {@code simulator.py}: base load, raised during peak hours, lowered at night, plus noise.
+ */
+final class LoadProfile {
+
+    private final double baseLoad;
+    private final boolean[] peak = new boolean[24];
+    private final boolean[] night = new boolean[24];
+
+    LoadProfile(SimulatorConfig.SimulationConfig simulation) {
+        this.baseLoad = simulation.baseLoad();
+        simulation.peakHours().forEach(hour -> peak[hour] = true);
+        simulation.nightHours().forEach(hour -> night[hour] = true);
+    }
+
+    double consumption(int hour, SplittableRandom random) {
+        double consumption = baseLoad;
+        if (peak[hour]) {
+            consumption += random.nextDouble(0.2, 0.5);
+        } else if (night[hour]) {
+            consumption -= random.nextDouble(0.1, 0.3);
+        }
+        consumption += random.nextDouble(-0.1, 0.1);
+        return Math.max(0.05, Math.round(consumption * 100) / 100.0);
+    }
+}
@@ -0,0 +1,104 @@
+package com.energy.simulator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and a confirm latency histogram shared by all devices and channels.
+ * <p>
+ * Latency is the time from {@code basicPublish} to the broker's publisher confirm, recorded in
+ * microseconds into log-linear buckets (eight per power of two, so percentiles are within 12.5%).
+ */
+final class PublishStats {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS);
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder nacked = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder missedTicks = new LongAdder();
+    private final AtomicLong maxLatencyMicros = new AtomicLong();
+    private final AtomicLongArray latency = new AtomicLongArray(BUCKETS);
+
+    void recordPublished() {
+        published.increment();
+    }
+
+    void recordFailed() {
+        failed.increment();
+    }
+
+    /**
+     * A device fell more than one period behind its schedule and skipped readings to catch up.
+     */
+    void recordMissedTicks(long ticks) {
+        missedTicks.add(ticks);
+    }
+
+    void recordConfirm(long publishedAtNanos, boolean ack) {
+        (ack ? confirmed : nacked).increment();
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - publishedAtNanos);
+        latency.incrementAndGet(bucket(micros));
+        maxLatencyMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    long published() {
+        return published.sum();
+    }
+
+    Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = latency.get(i);
+        }
+        return new Snapshot(published.sum(), confirmed.sum(), nacked.sum(), failed.sum(),
+                missedTicks.sum(), maxLatencyMicros.get(), counts);
+    }
+
+    private static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(micros, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS * (exponent - SUB_BUCKET_BITS + 1) + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS - 1 + SUB_BUCKET_BITS;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    record Snapshot(long published, long confirmed, long nacked, long failed, long missedTicks,
+                    long maxLatencyMicros, long[] latencyCounts) {
+
+        /**
+         * Upper bound of the bucket holding the given percentile of confirm latencies, in
+         * microseconds.
+         */
+        long latencyPercentile(double percentile) {
+            long total = confirmed + nacked;
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < latencyCounts.length; i++) {
+                seen += latencyCounts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), maxLatencyMicros);
+                }
+            }
+            return maxLatencyMicros;
+        }
+    }
+}
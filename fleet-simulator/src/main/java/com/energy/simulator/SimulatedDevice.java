@@ -0,0 +1,90 @@
+package com.energy.simulator;
+
+import com.rabbitmq.client.AMQP;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One device of the fleet, run on its own virtual thread. Publishes a reading every
+ * {@code periodNanos}, starting at a random phase so the fleet's load is spread evenly instead of
+ * arriving in bursts.
+ * <p>
+ * Phase and values come from a generator seeded with the fleet seed and the device id, so a run
+ * with the same seed produces the same sequence of values per device.
+ */
+@Slf4j
+final class SimulatedDevice implements Runnable {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final AMQP.BasicProperties PERSISTENT_JSON = new AMQP.BasicProperties.Builder()
+            .contentType("application/json")
+            .deliveryMode(2)
+            .build();
+
+    private final long deviceId;
+    private final SplittableRandom random;
+    private final LoadProfile profile;
+    private final ChannelPool channels;
+    private final PublishStats stats;
+    private final SimulatorConfig.RabbitConfig rabbit;
+    private final long periodNanos;
+    private final long startNanos;
+    private final long endNanos;
+
+    SimulatedDevice(long deviceId, long seed, LoadProfile profile, ChannelPool channels, PublishStats stats,
+                    SimulatorConfig.RabbitConfig rabbit, long periodNanos, long startNanos, long endNanos) {
+        this.deviceId = deviceId;
+        this.random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + deviceId);
+        this.profile = profile;
+        this.channels = channels;
+        this.stats = stats;
+        this.rabbit = rabbit;
+        this.periodNanos = periodNanos;
+        this.startNanos = startNanos;
+        this.endNanos = endNanos;
+    }
+
+    @Override
+    public void run() {
+        long deadline = startNanos + random.nextLong(periodNanos);
+        while (deadline < endNanos && !Thread.currentThread().isInterrupted()) {
+            long wait = deadline - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+
+            // Skip readings rather than bursting to catch up after a stall
+            long behind = -wait / periodNanos;
+            if (behind > 0) {
+                stats.recordMissedTicks(behind);
+                deadline += behind * periodNanos;
+            }
+
+            publish();
+            deadline += periodNanos;
+        }
+    }
+
+    private void publish() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        double value = profile.consumption(now.getHour(), random);
+        byte[] body = ("{\"timestamp\":\"" + TIMESTAMP.format(now)
+                + "\",\"deviceId\":" + deviceId
+                + ",\"measurementValue\":" + value + "}").getBytes(StandardCharsets.UTF_8);
+        try {
+            channels.publish(deviceId, rabbit.exchange(), rabbit.routingKey(), PERSISTENT_JSON, body);
+            stats.recordPublished();
+        } catch (IOException | RuntimeException e) {
+            stats.recordFailed();
+            log.debug("Device {} failed to publish: {}", deviceId, e.getMessage());
+        }
+    }
+}
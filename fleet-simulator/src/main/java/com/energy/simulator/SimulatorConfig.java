@@ -0,0 +1,39 @@
+package com.energy.simulator;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * The {@code config.json} of the single-device Python simulator. {@code device_id} is ignored,
+ * the fleet assigns its own ids.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record SimulatorConfig(RabbitConfig rabbitmq, SimulationConfig simulation) {
+
+    public static SimulatorConfig load(Path path) throws IOException {
+        return new ObjectMapper().readValue(path.toFile(), SimulatorConfig.class);
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record RabbitConfig(
+            String host,
+            int port,
+            String username,
+            String password,
+            String exchange,
+            @JsonProperty("routing_key") String routingKey) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record SimulationConfig(
+            @JsonProperty("base_load") double baseLoad,
+            @JsonProperty("peak_hours") Set<Integer> peakHours,
+            @JsonProperty("night_hours") Set<Integer> nightHours,
+            @JsonProperty("interval_seconds") int intervalSeconds) {
+    }
+}
@@ -2,21 +2,27 @@ package com.energy.loadbalancer.consumer;
 
 import com.energy.loadbalancer.dto.DeviceMeasurement;
 import com.energy.loadbalancer.service.ConsistentHashingService;
+import com.energy.loadbalancer.service.HotPathLogger;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 @Component
+@Slf4j
 public class DeviceDataConsumer {
 
     private final ConsistentHashingService hashingService;
     private final RabbitTemplate rabbitTemplate;
+    private final HotPathLogger hotPathLogger;
 
     @Autowired
-    public DeviceDataConsumer(ConsistentHashingService hashingService, RabbitTemplate rabbitTemplate) {
+    public DeviceDataConsumer(ConsistentHashingService hashingService, RabbitTemplate rabbitTemplate,
+                              HotPathLogger hotPathLogger) {
         this.hashingService = hashingService;
         this.rabbitTemplate = rabbitTemplate;
+        this.hotPathLogger = hotPathLogger;
     }
 
     @RabbitListener(queues = "${rabbitmq.queue.device-data}")
@@ -24,10 +30,13 @@ public class DeviceDataConsumer {
         String targetQueue = hashingService.getReplicaQueue(measurement.getDeviceId());
 
         if (targetQueue != null) {
-            System.out.println("LB: Redirecting Device " + measurement.getDeviceId() + " -> " + targetQueue);
+            if (hotPathLogger.isDetailEnabled(measurement.getDeviceId())) {
+                log.info("LB: Redirecting Device {} -> {}", measurement.getDeviceId(), targetQueue);
+            }
             rabbitTemplate.convertAndSend(targetQueue, measurement);
+            hotPathLogger.recordRouted();
         } else {
-            System.err.println("LB Error: No monitoring replica available!");
+            log.error("LB Error: No monitoring replica available!");
         }
     }
-}
\ No newline at end of file
+}
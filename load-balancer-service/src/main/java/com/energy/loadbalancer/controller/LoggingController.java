@@ -0,0 +1,33 @@
+package com.energy.loadbalancer.controller;
+
+import com.energy.loadbalancer.service.HotPathLogger;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Set;
+
+@RestController
+@RequestMapping("/load-balancer/internal/logging")
+@RequiredArgsConstructor
+public class LoggingController {
+
+    private final HotPathLogger hotPathLogger;
+
+    @GetMapping("/trace")
+    public ResponseEntity<Set<String>> getTracedDevices() {
+        return ResponseEntity.ok(hotPathLogger.getTracedDevices());
+    }
+
+    @PutMapping("/trace/{deviceId}")
+    public ResponseEntity<Set<String>> traceDevice(@PathVariable String deviceId) {
+        hotPathLogger.trace(deviceId);
+        return ResponseEntity.ok(hotPathLogger.getTracedDevices());
+    }
+
+    @DeleteMapping("/trace/{deviceId}")
+    public ResponseEntity<Set<String>> untraceDevice(@PathVariable String deviceId) {
+        hotPathLogger.untrace(deviceId);
+        return ResponseEntity.ok(hotPathLogger.getTracedDevices());
+    }
+}
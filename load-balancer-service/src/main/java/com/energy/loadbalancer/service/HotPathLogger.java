@@ -0,0 +1,81 @@
+package com.energy.loadbalancer.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throttles the per-message routing line: messages of traced devices are always logged, the rest
+ * once every {@code sample-every} routed messages and at most {@code max-lines-per-second}.
+ */
+@Component
+@Slf4j
+public class HotPathLogger {
+
+    @Value("${load-balancer.hot-path-log.sample-every:1000}")
+    private long sampleEvery;
+
+    @Value("${load-balancer.hot-path-log.max-lines-per-second:5}")
+    private double maxLinesPerSecond;
+
+    @Value("${load-balancer.hot-path-log.summary-interval-ms:10000}")
+    private long summaryIntervalMs;
+
+    private final Set<String> tracedDevices = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sampled = new AtomicLong();
+    private final LongAdder routed = new LongAdder();
+
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    public boolean isDetailEnabled(String deviceId) {
+        if (deviceId != null && !tracedDevices.isEmpty() && tracedDevices.contains(deviceId)) {
+            return true;
+        }
+        return sampleEvery > 0 && sampled.incrementAndGet() % sampleEvery == 0 && tryAcquire();
+    }
+
+    public void recordRouted() {
+        routed.increment();
+    }
+
+    public void trace(String deviceId) {
+        tracedDevices.add(deviceId);
+        log.info("Per-message logging enabled for device {}", deviceId);
+    }
+
+    public void untrace(String deviceId) {
+        if (tracedDevices.remove(deviceId)) {
+            log.info("Per-message logging disabled for device {}", deviceId);
+        }
+    }
+
+    public Set<String> getTracedDevices() {
+        return Set.copyOf(tracedDevices);
+    }
+
+    @Scheduled(fixedRateString = "${load-balancer.hot-path-log.summary-interval-ms:10000}")
+    public void logSummary() {
+        long count = routed.sumThenReset();
+        if (count > 0) {
+            log.info("{} measurements routed in last {}s", count, summaryIntervalMs / 1000);
+        }
+    }
+
+    private synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(maxLinesPerSecond, tokens + (now - lastRefill) / 1e9 * maxLinesPerSecond);
+        lastRefill = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
@@ -1,10 +1,13 @@
 package com.energy.monitoring.config;
 
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -26,6 +29,18 @@ public class RabbitMQConfig {
     @Value("${rabbitmq.exchange.sync}")
     private String syncExchange;
 
+    @Value("${rabbitmq.exchange.cache-invalidation}")
+    private String cacheInvalidationExchange;
+
+    @Value("${rabbitmq.exchange.device-state}")
+    private String deviceStateExchange;
+
+    @Value("${monitoring.ingest.batch.size:100}")
+    private int ingestBatchSize;
+
+    @Value("${monitoring.ingest.batch.receive-timeout-ms:1000}")
+    private long ingestBatchReceiveTimeout;
+
     @Bean
     public Queue deviceDataQueue() {
         return new Queue(myIngestQueueName, true);
@@ -62,6 +77,46 @@ public class RabbitMQConfig {
                 .with("sync.#");
     }
 
+    @Bean
+    public FanoutExchange cacheInvalidationExchange() {
+        return new FanoutExchange(cacheInvalidationExchange);
+    }
+
+    /**
+     * Exclusive, auto-deleted queue per replica, so every replica sees every invalidation.
+     */
+    @Bean
+    public Queue consumptionCacheQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding consumptionCacheBinding() {
+        return BindingBuilder
+                .bind(consumptionCacheQueue())
+                .to(cacheInvalidationExchange());
+    }
+
+    @Bean
+    public FanoutExchange deviceStateExchange() {
+        return new FanoutExchange(deviceStateExchange);
+    }
+
+    /**
+     * Exclusive, auto-deleted queue per replica for device changes that all replicas must apply.
+     */
+    @Bean
+    public Queue deviceStateQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding deviceStateBinding() {
+        return BindingBuilder
+                .bind(deviceStateQueue())
+                .to(deviceStateExchange());
+    }
+
     @Bean
     public Jackson2JsonMessageConverter messageConverter() {
         return new Jackson2JsonMessageConverter();
@@ -73,4 +128,31 @@ public class RabbitMQConfig {
         template.setMessageConverter(messageConverter());
         return template;
     }
+
+    /**
+     * For ingest listeners that take the raw {@link Message} and decode the body themselves. The
+     * JSON converter would resolve the load balancer's {@code __TypeId__} header, a class that does
+     * not exist here, because a {@code Message} parameter gives it no type to infer.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory ingestListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setMessageConverter(new SimpleMessageConverter());
+        return factory;
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(ingestBatchSize);
+        factory.setReceiveTimeout(ingestBatchReceiveTimeout);
+        factory.setPrefetchCount(Math.max(ingestBatchSize, 250));
+        return factory;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.energy.monitoring.config;
+
+import com.energy.monitoring.service.ReplicaLagMonitor;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions ({@code @Transactional(readOnly = true)}, including Spring Data's
+ * finder methods) to a streaming replica of monitoring-db and everything else to the primary.
+ * <p>
+ * The lazy proxy only fetches a physical connection at the first statement, after the
+ * transaction manager has marked it read-only, and then picks the read-only pool. That pool
+ * routes to the primary as well while {@link ReplicaLagMonitor} reports the replica as lagging
+ * or unreachable.
+ */
+@Configuration
+@ConditionalOnProperty(name = "monitoring.datasource.replica.enabled", havingValue = "true")
+public class ReadReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("monitoring-primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("monitoring.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(
+            @Value("${monitoring.datasource.replica.url}") String url,
+            @Value("${monitoring.datasource.replica.username}") String username,
+            @Value("${monitoring.datasource.replica.password}") String password) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setReadOnly(true);
+        dataSource.setPoolName("monitoring-replica");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor) {
+        ReplicaRoutingDataSource readOnlyDataSource = new ReplicaRoutingDataSource(replicaLagMonitor);
+        readOnlyDataSource.setTargetDataSources(Map.of(
+                ReplicaRoutingDataSource.PRIMARY, primaryDataSource,
+                ReplicaRoutingDataSource.REPLICA, replicaDataSource));
+        readOnlyDataSource.setDefaultTargetDataSource(primaryDataSource);
+        readOnlyDataSource.afterPropertiesSet();
+
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primaryDataSource);
+        proxy.setReadOnlyDataSource(readOnlyDataSource);
+        return proxy;
+    }
+
+    private static final class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+        private static final String PRIMARY = "primary";
+        private static final String REPLICA = "replica";
+
+        private final ReplicaLagMonitor replicaLagMonitor;
+
+        private ReplicaRoutingDataSource(ReplicaLagMonitor replicaLagMonitor) {
+            this.replicaLagMonitor = replicaLagMonitor;
+        }
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            return replicaLagMonitor.isReplicaUsable() ? REPLICA : PRIMARY;
+        }
+    }
+}
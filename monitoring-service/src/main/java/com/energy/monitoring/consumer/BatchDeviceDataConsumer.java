@@ -0,0 +1,74 @@
+package com.energy.monitoring.consumer;
+
+import com.energy.monitoring.dto.DeviceMeasurement;
+import com.energy.monitoring.service.HotPathLogger;
+import com.energy.monitoring.service.IngestMetrics;
+import com.energy.monitoring.service.MonitoringService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch alternative to {@link DeviceDataConsumer}, enabled with {@code monitoring.ingest.batch.enabled=true}
+ * (unless the pipeline or the journal is enabled too, which take precedence).
+ * Messages are decoded one by one so a malformed payload is dropped on its own instead of
+ * failing the whole batch. A batch that cannot be written because the database is unavailable
+ * is left to the broker to deliver again.
+ */
+@Component
+@ConditionalOnExpression("${monitoring.ingest.batch.enabled:false} and !${monitoring.ingest.pipeline.enabled:false}"
+        + " and !${monitoring.ingest.journal.enabled:false}")
+@RequiredArgsConstructor
+@Slf4j
+public class BatchDeviceDataConsumer {
+
+    private final MonitoringService monitoringService;
+    private final ObjectMapper objectMapper;
+    private final HotPathLogger hotPathLogger;
+    private final IngestMetrics ingestMetrics;
+
+    @RabbitListener(queues = "${rabbitmq.queue.ingest}", containerFactory = "batchListenerContainerFactory")
+    public void consumeDeviceData(List<Message> messages) {
+        long start = System.nanoTime();
+
+        List<DeviceMeasurement> measurements = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            long decodeStart = System.nanoTime();
+            try {
+                measurements.add(objectMapper.readValue(message.getBody(), DeviceMeasurement.class));
+                ingestMetrics.record(IngestMetrics.Stage.DECODE, decodeStart);
+            } catch (Exception e) {
+                ingestMetrics.error(IngestMetrics.Stage.DECODE);
+                log.error("Dropping undecodable device measurement: {}", e.getMessage());
+            }
+        }
+
+        try {
+            int processed = monitoringService.processMeasurementBatch(measurements);
+            hotPathLogger.recordProcessed(processed);
+            log.debug("Processed batch of {} messages ({} accepted) in {} ms",
+                    messages.size(), processed, (System.nanoTime() - start) / 1_000_000);
+        } catch (DataAccessResourceFailureException | TransientDataAccessException
+                 | RecoverableDataAccessException | CannotCreateTransactionException e) {
+            // the database is unreachable: leave the batch unacknowledged, the broker delivers it again
+            ingestMetrics.error(IngestMetrics.Stage.PROCESS);
+            log.warn("Requeueing batch of {} messages, the database is unavailable: {}",
+                    messages.size(), e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            ingestMetrics.error(IngestMetrics.Stage.PROCESS);
+            log.error("Error processing measurement batch: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.energy.monitoring.consumer;
+
+import com.energy.monitoring.dto.CacheInvalidationEvent;
+import com.energy.monitoring.service.ConsumptionResponseCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CacheInvalidationConsumer {
+
+    private final ConsumptionResponseCache responseCache;
+
+    @RabbitListener(queues = "#{consumptionCacheQueue.name}")
+    public void consumeInvalidation(CacheInvalidationEvent event) {
+        log.debug("Received cache invalidation: deviceId={}, day={}", event.getDeviceId(), event.getDay());
+        responseCache.evict(event.getDeviceId(), event.getDay());
+    }
+}
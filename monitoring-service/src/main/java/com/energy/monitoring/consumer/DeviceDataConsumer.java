@@ -1,31 +1,49 @@
 package com.energy.monitoring.consumer;
 
 import com.energy.monitoring.dto.DeviceMeasurement;
+import com.energy.monitoring.service.HotPathLogger;
+import com.energy.monitoring.service.IngestMetrics;
 import com.energy.monitoring.service.MonitoringService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 @Component
+@ConditionalOnProperty(name = {"monitoring.ingest.batch.enabled", "monitoring.ingest.pipeline.enabled",
+        "monitoring.ingest.journal.enabled"},
+        havingValue = "false", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class DeviceDataConsumer {
 
     private final MonitoringService monitoringService;
+    private final HotPathLogger hotPathLogger;
+    private final IngestMetrics ingestMetrics;
+    private final ObjectMapper objectMapper;
 
-    @RabbitListener(queues = "${rabbitmq.queue.ingest}")
-    public void consumeDeviceData(DeviceMeasurement measurement) {
-        log.info("Received device measurement: deviceId={}, value={}, timestamp={}",
-                measurement.getDeviceId(),
-                measurement.getMeasurementValue(),
-                measurement.getTimestamp());
+    @RabbitListener(queues = "${rabbitmq.queue.ingest}", containerFactory = "ingestListenerContainerFactory")
+    public void consumeDeviceData(Message message) {
+        long start = System.nanoTime();
+        DeviceMeasurement measurement;
+        try {
+            measurement = objectMapper.readValue(message.getBody(), DeviceMeasurement.class);
+            ingestMetrics.record(IngestMetrics.Stage.DECODE, start);
+        } catch (Exception e) {
+            ingestMetrics.error(IngestMetrics.Stage.DECODE);
+            log.error("Dropping undecodable device measurement: {}", e.getMessage());
+            return;
+        }
 
         try {
             monitoringService.processDeviceMeasurement(measurement);
-            log.info("Successfully processed measurement for device: {}", measurement.getDeviceId());
+            hotPathLogger.recordProcessed(1);
         } catch (Exception e) {
+            ingestMetrics.error(IngestMetrics.Stage.PROCESS);
             log.error("Error processing measurement: {}", e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,34 @@
+package com.energy.monitoring.consumer;
+
+import com.energy.monitoring.dto.DeviceStateEvent;
+import com.energy.monitoring.service.DeviceLimitCache;
+import com.energy.monitoring.service.DeviceStateBroadcaster;
+import com.energy.monitoring.service.HotPathLogger;
+import com.energy.monitoring.service.MonitoringService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceStateConsumer {
+
+    private final DeviceLimitCache deviceLimitCache;
+    private final MonitoringService monitoringService;
+    private final HotPathLogger hotPathLogger;
+
+    @RabbitListener(queues = "#{deviceStateQueue.name}")
+    public void consumeDeviceState(DeviceStateEvent event) {
+        log.debug("Received device state event: type={}, deviceId={}", event.getEventType(), event.getDeviceId());
+        switch (event.getEventType()) {
+            case DeviceStateBroadcaster.DEVICE_CREATED ->
+                    deviceLimitCache.put(event.getDeviceId(), event.getMaxConsumption(), event.getUserId());
+            case DeviceStateBroadcaster.DEVICE_DELETED -> monitoringService.onDeviceDeleted(event.getDeviceId());
+            case DeviceStateBroadcaster.DEVICE_TRACED -> hotPathLogger.trace(event.getDeviceId());
+            case DeviceStateBroadcaster.DEVICE_UNTRACED -> hotPathLogger.untrace(event.getDeviceId());
+            default -> log.warn("Unknown device state event type: {}", event.getEventType());
+        }
+    }
+}
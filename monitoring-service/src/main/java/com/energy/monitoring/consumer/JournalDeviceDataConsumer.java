@@ -0,0 +1,67 @@
+package com.energy.monitoring.consumer;
+
+import com.energy.monitoring.dto.DeviceMeasurement;
+import com.energy.monitoring.service.IngestMetrics;
+import com.energy.monitoring.service.MeasurementJournal;
+import com.energy.monitoring.service.MonitoringService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Journal alternative to {@link DeviceDataConsumer}, enabled with
+ * {@code monitoring.ingest.journal.enabled=true} (unless the pipeline is enabled too, which takes
+ * precedence). A batch is acknowledged once its readings are durable in the
+ * {@link MeasurementJournal}; if the journal cannot take them the listener throws and the whole
+ * batch is requeued.
+ */
+@Component
+@ConditionalOnExpression("${monitoring.ingest.journal.enabled:false} and !${monitoring.ingest.pipeline.enabled:false}")
+@RequiredArgsConstructor
+@Slf4j
+public class JournalDeviceDataConsumer {
+
+    private final MeasurementJournal measurementJournal;
+    private final MonitoringService monitoringService;
+    private final ObjectMapper objectMapper;
+    private final IngestMetrics ingestMetrics;
+
+    @RabbitListener(queues = "${rabbitmq.queue.ingest}", containerFactory = "batchListenerContainerFactory")
+    public void consumeDeviceData(List<Message> messages) {
+        List<DeviceMeasurement> measurements = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            long decodeStart = System.nanoTime();
+            DeviceMeasurement measurement;
+            try {
+                measurement = objectMapper.readValue(message.getBody(), DeviceMeasurement.class);
+                ingestMetrics.record(IngestMetrics.Stage.DECODE, decodeStart);
+            } catch (Exception e) {
+                ingestMetrics.error(IngestMetrics.Stage.DECODE);
+                log.error("Dropping undecodable device measurement: {}", e.getMessage());
+                continue;
+            }
+            if (!monitoringService.isValid(measurement)) {
+                ingestMetrics.measurement(IngestMetrics.Outcome.INVALID);
+                log.warn("Skipping invalid measurement: {}", measurement);
+                continue;
+            }
+            measurements.add(measurement);
+        }
+
+        try {
+            measurementJournal.append(measurements);
+        } catch (RuntimeException e) {
+            ingestMetrics.error(IngestMetrics.Stage.JOURNAL);
+            log.warn("Requeueing {} messages, the ingest journal did not take them: {}",
+                    messages.size(), e.getMessage());
+            throw e;
+        }
+    }
+}
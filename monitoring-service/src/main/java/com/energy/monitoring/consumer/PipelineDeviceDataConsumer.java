@@ -0,0 +1,26 @@
+package com.energy.monitoring.consumer;
+
+import com.energy.monitoring.service.IngestPipeline;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pipeline alternative to {@link DeviceDataConsumer}, enabled with
+ * {@code monitoring.ingest.pipeline.enabled=true}. Only hands the raw message to the
+ * {@link IngestPipeline}; if the pipeline is not running the message is rejected and requeued.
+ */
+@Component
+@ConditionalOnProperty(name = "monitoring.ingest.pipeline.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class PipelineDeviceDataConsumer {
+
+    private final IngestPipeline ingestPipeline;
+
+    @RabbitListener(queues = "${rabbitmq.queue.ingest}", containerFactory = "ingestListenerContainerFactory")
+    public void consumeDeviceData(Message message) {
+        ingestPipeline.publish(message.getBody());
+    }
+}
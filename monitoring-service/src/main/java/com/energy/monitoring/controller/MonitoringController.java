@@ -1,15 +1,36 @@
 package com.energy.monitoring.controller;
 
+import com.energy.monitoring.dto.BaselineStatsDTO;
+import com.energy.monitoring.dto.ConsumptionTotalDTO;
+import com.energy.monitoring.dto.DedupStatsDTO;
+import com.energy.monitoring.dto.DeviceCacheStatsDTO;
+import com.energy.monitoring.dto.DeviceConsumptionSeriesDTO;
+import com.energy.monitoring.dto.HeartbeatStatsDTO;
 import com.energy.monitoring.dto.HourlyConsumptionDTO;
+import com.energy.monitoring.dto.JournalStatsDTO;
+import com.energy.monitoring.dto.LatenessStatsDTO;
+import com.energy.monitoring.dto.PipelineStatsDTO;
+import com.energy.monitoring.dto.RecentReadingsStatsDTO;
+import com.energy.monitoring.service.ConsumptionExportService;
+import com.energy.monitoring.service.ConsumptionResponseCache;
 import com.energy.monitoring.service.MonitoringService;
+import com.energy.monitoring.service.RecentReadingsPeers;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/monitoring")
@@ -18,6 +39,13 @@ import java.util.List;
 public class MonitoringController {
 
     private final MonitoringService monitoringService;
+    private final ConsumptionExportService exportService;
+
+    @Value("${monitoring.http-cache.current-day-max-age:PT30S}")
+    private Duration currentDayMaxAge;
+
+    @Value("${monitoring.http-cache.closed-day-max-age:PT5M}")
+    private Duration closedDayMaxAge;
 
     @GetMapping("/device/{deviceId}/consumption")
     public ResponseEntity<List<HourlyConsumptionDTO>> getHourlyConsumption(
@@ -27,11 +55,158 @@ public class MonitoringController {
 
         log.info("REST request to get hourly consumption for device {} on date {}", deviceId, date);
 
-        List<HourlyConsumptionDTO> consumption = monitoringService
-                .getHourlyConsumptionByDeviceAndDate(deviceId, date);
+        ConsumptionResponseCache.Entry consumption = monitoringService
+                .getHourlyConsumptionResponse(deviceId, date);
+
+        // Closed days can still take late corrections, so clients reuse them only for a while and
+        // then revalidate with the ETag like the current day. A matching If-None-Match is answered
+        // with 304 by Spring from the ETag set here.
+        Duration maxAge = consumption.closed() ? closedDayMaxAge : currentDayMaxAge;
+        CacheControl cacheControl = CacheControl.maxAge(maxAge).cachePrivate().mustRevalidate();
+
+        return ResponseEntity.ok()
+                .eTag(consumption.etag())
+                .cacheControl(cacheControl)
+                .body(consumption.body());
+    }
+
+    @GetMapping("/device/{deviceId}/readings")
+    public ResponseEntity<DeviceConsumptionSeriesDTO> getRecentReadings(
+            @PathVariable Long deviceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+
+        log.info("REST request to get raw readings for device {} from {} to {}", deviceId, from, to);
+
+        // Each replica only holds the readings it ingested; the answer merges all of them and
+        // names the replicas that could not be reached, whose readings are missing.
+        RecentReadingsPeers.Result readings = monitoringService.getRecentReadings(deviceId, from, to);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!readings.unreachable().isEmpty()) {
+            response.header("X-Readings-Incomplete", String.join(",", readings.unreachable()));
+        }
+        return response.body(readings.series());
+    }
+
+    @GetMapping("/internal/readings/local/{deviceId}")
+    public ResponseEntity<DeviceConsumptionSeriesDTO> getLocalRecentReadings(
+            @PathVariable Long deviceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return ResponseEntity.ok(monitoringService.getLocalRecentReadings(deviceId, from, to));
+    }
+
+    @GetMapping("/consumption")
+    public ResponseEntity<List<DeviceConsumptionSeriesDTO>> getHourlyConsumptionForDevices(
+            @RequestParam Set<Long> deviceIds,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
 
-        return ResponseEntity.ok(consumption);
+        log.info("REST request to get hourly consumption for devices {} from {} to {}", deviceIds, from, to);
+
+        return ResponseEntity.ok(monitoringService.getHourlyConsumptionForDevices(deviceIds, from, to));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportConsumption(
+            @RequestParam(required = false) Set<Long> deviceIds,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "ndjson") String format) {
+
+        log.info("REST request to export consumption as {} for devices {} from {} to {}",
+                format, deviceIds != null ? deviceIds : "all", from, to);
+
+        ConsumptionExportService.ExportFormat exportFormat = ConsumptionExportService.ExportFormat.from(format);
+        exportService.validateRange(from, to);
+
+        StreamingResponseBody body = out -> exportService.export(deviceIds, from, to, exportFormat, out);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"consumption-" + from + "-" + to
+                        + "." + exportFormat.getExtension() + "\"")
+                .body(body);
     }
+
+    @GetMapping("/device/{deviceId}/consumption/daily")
+    public ResponseEntity<List<ConsumptionTotalDTO>> getDailyConsumption(
+            @PathVariable Long deviceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        log.info("REST request to get daily consumption for device {} from {} to {}", deviceId, from, to);
+
+        return ResponseEntity.ok(monitoringService.getDailyConsumption(deviceId, from, to));
+    }
+
+    @GetMapping("/device/{deviceId}/consumption/monthly")
+    public ResponseEntity<List<ConsumptionTotalDTO>> getMonthlyConsumption(
+            @PathVariable Long deviceId,
+            @RequestParam int year) {
+
+        log.info("REST request to get monthly consumption for device {} in {}", deviceId, year);
+
+        return ResponseEntity.ok(monitoringService.getMonthlyConsumption(deviceId, year));
+    }
+
+    @GetMapping("/device/{deviceId}/consumption/yearly")
+    public ResponseEntity<List<ConsumptionTotalDTO>> getYearlyConsumption(@PathVariable Long deviceId) {
+        log.info("REST request to get yearly consumption for device {}", deviceId);
+
+        return ResponseEntity.ok(monitoringService.getYearlyConsumption(deviceId));
+    }
+
+    @GetMapping("/internal/cache/devices")
+    public ResponseEntity<DeviceCacheStatsDTO> getDeviceCacheStats() {
+        return ResponseEntity.ok(monitoringService.getDeviceCacheStats());
+    }
+
+    @GetMapping("/internal/dedup")
+    public ResponseEntity<DedupStatsDTO> getDedupStats() {
+        return ResponseEntity.ok(monitoringService.getDedupStats());
+    }
+
+    @GetMapping("/internal/lateness")
+    public ResponseEntity<LatenessStatsDTO> getLatenessStats() {
+        return ResponseEntity.ok(monitoringService.getLatenessStats());
+    }
+
+    @GetMapping("/internal/pipeline")
+    public ResponseEntity<PipelineStatsDTO> getPipelineStats() {
+        return ResponseEntity.of(monitoringService.getPipelineStats());
+    }
+
+    @GetMapping("/internal/journal")
+    public ResponseEntity<JournalStatsDTO> getJournalStats() {
+        return ResponseEntity.of(monitoringService.getJournalStats());
+    }
+
+    @GetMapping("/internal/baselines")
+    public ResponseEntity<BaselineStatsDTO> getBaselineStats() {
+        return ResponseEntity.ok(monitoringService.getBaselineStats());
+    }
+
+    @GetMapping("/internal/heartbeats")
+    public ResponseEntity<HeartbeatStatsDTO> getHeartbeatStats() {
+        return ResponseEntity.ok(monitoringService.getHeartbeatStats());
+    }
+
+    @GetMapping("/internal/readings/stats")
+    public ResponseEntity<RecentReadingsStatsDTO> getRecentReadingsStats() {
+        return ResponseEntity.ok(monitoringService.getRecentReadingsStats());
+    }
+
+    @PutMapping("/internal/logging/trace/{deviceId}")
+    public ResponseEntity<Set<Long>> traceDevice(@PathVariable Long deviceId) {
+        return ResponseEntity.ok(monitoringService.traceDevice(deviceId, true));
+    }
+
+    @DeleteMapping("/internal/logging/trace/{deviceId}")
+    public ResponseEntity<Set<Long>> untraceDevice(@PathVariable Long deviceId) {
+        return ResponseEntity.ok(monitoringService.traceDevice(deviceId, false));
+    }
+
     @DeleteMapping("/internal/delete/{deviceId}")
     public ResponseEntity<String> deleteDeviceCredentials(@PathVariable Long deviceId) {
         monitoringService.deleteDeviceCredentials(deviceId);
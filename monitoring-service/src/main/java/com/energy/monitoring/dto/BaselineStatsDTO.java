@@ -0,0 +1,17 @@
+package com.energy.monitoring.dto;
+
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BaselineStatsDTO {
+    private boolean enabled;
+    private int maxDevices;
+    private int trackedDevices;
+    private long memoryBytes;
+    private long untrackedReadings;
+    private long anomalies;
+    private long projectedOverruns;
+}
@@ -0,0 +1,18 @@
+package com.energy.monitoring.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheInvalidationEvent {
+    private Long deviceId;
+
+    /** Day to drop, or {@code null} to drop every cached day of the device. */
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate day;
+}
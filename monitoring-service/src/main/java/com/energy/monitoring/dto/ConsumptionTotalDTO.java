@@ -0,0 +1,15 @@
+package com.energy.monitoring.dto;
+
+import lombok.*;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsumptionTotalDTO {
+    private Long deviceId;
+    private LocalDate periodStart;
+    private Double totalConsumption;
+}
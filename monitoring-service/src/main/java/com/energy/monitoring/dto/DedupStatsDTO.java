@@ -0,0 +1,16 @@
+package com.energy.monitoring.dto;
+
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DedupStatsDTO {
+    private int trackedDevices;
+    private long checked;
+    private long duplicates;
+    private long ringDuplicates;
+    private long bloomDuplicates;
+    private long bloomRotations;
+}
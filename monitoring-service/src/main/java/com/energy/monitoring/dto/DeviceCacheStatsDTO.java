@@ -0,0 +1,15 @@
+package com.energy.monitoring.dto;
+
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceCacheStatsDTO {
+    private int capacity;
+    private int size;
+    private long hits;
+    private long misses;
+    private long evictions;
+}
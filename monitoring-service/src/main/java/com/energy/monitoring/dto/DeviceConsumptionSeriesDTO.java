@@ -0,0 +1,20 @@
+package com.energy.monitoring.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Hourly totals of one device in columnar form: {@code values[i]} is the total of the hour
+ * starting at {@code timestamps[i]}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceConsumptionSeriesDTO {
+    private Long deviceId;
+    private List<LocalDateTime> timestamps;
+    private List<Double> values;
+}
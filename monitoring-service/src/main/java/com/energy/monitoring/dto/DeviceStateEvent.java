@@ -0,0 +1,18 @@
+package com.energy.monitoring.dto;
+
+import lombok.*;
+
+/**
+ * Change of a device that every monitoring replica has to apply to its in-memory state, sent
+ * through the device-state fanout exchange.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceStateEvent {
+    private String eventType;
+    private Long deviceId;
+    private Double maxConsumption;
+    private Long userId;
+}
@@ -0,0 +1,19 @@
+package com.energy.monitoring.dto;
+
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeartbeatStatsDTO {
+    private boolean enabled;
+    private int maxDevices;
+    private int trackedDevices;
+    private int silentDevices;
+    private long timeoutMs;
+    private long untrackedReadings;
+    private long silentEvents;
+    private long resumedEvents;
+    private long forgottenDevices;
+}
@@ -0,0 +1,16 @@
+package com.energy.monitoring.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Closed projection of {@link com.energy.monitoring.entity.EnergyConsumption} that selects only
+ * the columns a chart needs.
+ */
+public interface HourlyConsumptionView {
+    Long getDeviceId();
+
+    LocalDateTime getTimestamp();
+
+    BigDecimal getTotalConsumption();
+}
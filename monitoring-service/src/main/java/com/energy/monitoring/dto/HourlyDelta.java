@@ -0,0 +1,18 @@
+package com.energy.monitoring.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Amount to add to the hourly total of a device, in milliwatt-hours.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HourlyDelta {
+    private Long deviceId;
+    private LocalDateTime timestamp;
+    private long delta;
+}
@@ -0,0 +1,21 @@
+package com.energy.monitoring.dto;
+
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JournalStatsDTO {
+    private String journalId;
+    private String directory;
+    private boolean failed;
+    private long durablePosition;
+    private long appliedPosition;
+    private long unapplied;
+    private int segments;
+    private long syncs;
+    private double avgReadingsPerSync;
+    private long avgSyncMicros;
+    private long applyRetries;
+}
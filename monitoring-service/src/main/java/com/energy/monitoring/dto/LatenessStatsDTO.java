@@ -0,0 +1,18 @@
+package com.energy.monitoring.dto;
+
+import lombok.*;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LatenessStatsDTO {
+    private long allowedLatenessSeconds;
+    private int trackedDevices;
+    private long onTime;
+    private long corrections;
+    private long staleCorrections;
+    private Map<String, Long> latenessHistogram;
+}
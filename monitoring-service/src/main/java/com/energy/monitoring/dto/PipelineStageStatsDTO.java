@@ -0,0 +1,17 @@
+package com.energy.monitoring.dto;
+
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PipelineStageStatsDTO {
+    private String stage;
+    private long events;
+    private long errors;
+    private double eventsPerSecond;
+    private long averageNanos;
+    private long backlog;
+    private int ringCapacity;
+}
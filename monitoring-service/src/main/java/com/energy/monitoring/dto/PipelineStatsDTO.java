@@ -0,0 +1,17 @@
+package com.energy.monitoring.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PipelineStatsDTO {
+    private String waitStrategy;
+    private int shards;
+    private long trackedDevices;
+    private long stateTableBytes;
+    private List<PipelineStageStatsDTO> stages;
+}
@@ -0,0 +1,18 @@
+package com.energy.monitoring.dto;
+
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecentReadingsStatsDTO {
+    private int retentionDays;
+    private int devices;
+    private int chunks;
+    private long points;
+    private long compressedBytes;
+    private long allocatedBytes;
+    private double bytesPerPoint;
+    private long outOfOrderDropped;
+}
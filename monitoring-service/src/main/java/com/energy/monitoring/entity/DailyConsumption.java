@@ -0,0 +1,36 @@
+package com.energy.monitoring.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Daily rollup of {@link EnergyConsumption}, maintained by a database trigger on every change of
+ * an hourly total (see {@code schema-postgres.sql}).
+ */
+@Entity
+@Table(name = "energy_consumption_daily",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_energy_consumption_daily_device_day",
+                columnNames = {"device_id", "day"}))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyConsumption {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long deviceId;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false, precision = EnergyUnits.PRECISION, scale = EnergyUnits.SCALE)
+    private BigDecimal totalConsumption;
+}
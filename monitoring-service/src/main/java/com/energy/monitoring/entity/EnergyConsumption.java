@@ -3,10 +3,14 @@ package com.energy.monitoring.entity;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "energy_consumption")
+@Table(name = "energy_consumption",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_energy_consumption_device_hour",
+                columnNames = {"device_id", "timestamp"}))
 @Data
 @Builder
 @NoArgsConstructor
@@ -23,8 +27,8 @@ public class EnergyConsumption {
     @Column(nullable = false)
     private LocalDateTime timestamp;
 
-    @Column(nullable = false)
-    private Double totalConsumption;
+    @Column(nullable = false, precision = EnergyUnits.PRECISION, scale = EnergyUnits.SCALE)
+    private BigDecimal totalConsumption;
 
     @Column(nullable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,40 @@
+package com.energy.monitoring.entity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point representation of energy. Consumption is accounted in whole milliwatt-hours held in
+ * a {@code long}, so sums of any length are exact, and stored as kWh in {@code numeric(20, 6)}
+ * columns, whose six decimals are exactly one milliwatt-hour. REST responses keep reporting kWh
+ * as JSON numbers.
+ */
+public final class EnergyUnits {
+
+    public static final int PRECISION = 20;
+    public static final int SCALE = 6;
+
+    private static final double MILLIWATT_HOURS_PER_KILOWATT_HOUR = 1_000_000.0;
+
+    private EnergyUnits() {
+    }
+
+    /**
+     * Rounds a reading in kWh to the nearest milliwatt-hour.
+     */
+    public static long toMilliwattHours(double kilowattHours) {
+        return Math.round(kilowattHours * MILLIWATT_HOURS_PER_KILOWATT_HOUR);
+    }
+
+    public static long toMilliwattHours(BigDecimal kilowattHours) {
+        return kilowattHours.movePointRight(SCALE).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    public static double toKilowattHours(long milliwattHours) {
+        return milliwattHours / MILLIWATT_HOURS_PER_KILOWATT_HOUR;
+    }
+
+    public static BigDecimal toDecimal(long milliwattHours) {
+        return BigDecimal.valueOf(milliwattHours, SCALE);
+    }
+}
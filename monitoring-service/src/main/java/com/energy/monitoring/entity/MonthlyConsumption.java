@@ -0,0 +1,36 @@
+package com.energy.monitoring.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Monthly rollup of {@link EnergyConsumption}, keyed by the first day of the month and maintained
+ * by a database trigger on every change of an hourly total (see {@code schema-postgres.sql}).
+ */
+@Entity
+@Table(name = "energy_consumption_monthly",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_energy_consumption_monthly_device_month",
+                columnNames = {"device_id", "month"}))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlyConsumption {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long deviceId;
+
+    @Column(nullable = false)
+    private LocalDate month;
+
+    @Column(nullable = false, precision = EnergyUnits.PRECISION, scale = EnergyUnits.SCALE)
+    private BigDecimal totalConsumption;
+}
@@ -0,0 +1,9 @@
+package com.energy.monitoring.exception;
+
+public class InvalidRequestException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,21 @@
+package com.energy.monitoring.repository;
+
+import com.energy.monitoring.entity.DailyConsumption;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailyConsumptionRepository extends JpaRepository<DailyConsumption, Long> {
+
+    List<DailyConsumption> findByDeviceIdAndDayBetweenOrderByDayAsc(
+            Long deviceId, LocalDate start, LocalDate end);
+
+    @Modifying
+    @Query("delete from DailyConsumption d where d.deviceId = :deviceId")
+    void deleteByDeviceId(Long deviceId);
+}
@@ -1,20 +1,57 @@
 package com.energy.monitoring.repository;
 
+import com.energy.monitoring.dto.HourlyConsumptionView;
 import com.energy.monitoring.entity.EnergyConsumption;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface EnergyConsumptionRepository extends JpaRepository<EnergyConsumption, Long> {
+public interface EnergyConsumptionRepository extends JpaRepository<EnergyConsumption, Long>,
+        EnergyConsumptionRepositoryCustom {
 
+    // Read-write on purpose: the hourly accumulator adds deltas to this total, so it must come
+    // from the primary even when read-only queries are routed to a replica
+    @Transactional
     Optional<EnergyConsumption> findByDeviceIdAndTimestamp(Long deviceId, LocalDateTime timestamp);
 
     List<EnergyConsumption> findByDeviceIdAndTimestampBetweenOrderByTimestampAsc(
             Long deviceId, LocalDateTime start, LocalDateTime end);
 
+    @Query(value = """
+            SELECT device_id AS "deviceId", timestamp AS "timestamp", total_consumption AS "totalConsumption"
+            FROM energy_consumption
+            WHERE device_id IN (:deviceIds) AND timestamp >= :start AND timestamp < :end
+            ORDER BY device_id, timestamp
+            """, nativeQuery = true)
+    List<HourlyConsumptionView> findHourlyConsumption(@Param("deviceIds") Collection<Long> deviceIds,
+                                                      @Param("start") LocalDateTime start,
+                                                      @Param("end") LocalDateTime end);
+
+    /**
+     * Adds {@code delta} kWh to the hourly row of a device in one statement, creating the row if it
+     * does not exist yet. Relies on the unique key on (device_id, timestamp).
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO energy_consumption (device_id, timestamp, total_consumption, created_at)
+            VALUES (:deviceId, :timestamp, :delta, LOCALTIMESTAMP)
+            ON CONFLICT (device_id, timestamp)
+            DO UPDATE SET total_consumption = energy_consumption.total_consumption + excluded.total_consumption
+            """, nativeQuery = true)
+    int upsertHourlyConsumption(@Param("deviceId") Long deviceId,
+                                @Param("timestamp") LocalDateTime timestamp,
+                                @Param("delta") BigDecimal delta);
+
     void deleteByDeviceId(Long deviceId);
 }
\ No newline at end of file
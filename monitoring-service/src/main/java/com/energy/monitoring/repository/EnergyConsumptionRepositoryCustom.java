@@ -0,0 +1,26 @@
+package com.energy.monitoring.repository;
+
+import com.energy.monitoring.dto.HourlyDelta;
+
+import java.util.List;
+
+public interface EnergyConsumptionRepositoryCustom {
+
+    /**
+     * Adds each delta to the hourly row of its device, creating missing rows, with multi-row
+     * {@code INSERT ... ON CONFLICT DO UPDATE} statements inside a single transaction.
+     * Deltas must not repeat a (device, hour) pair.
+     */
+    void applyHourlyDeltas(List<HourlyDelta> deltas);
+
+    /**
+     * Applies the deltas like {@link #applyHourlyDeltas} and records {@code position} as the
+     * checkpoint of the ingest journal {@code journalId} in the same transaction.
+     */
+    void applyJournaledDeltas(List<HourlyDelta> deltas, String journalId, long position);
+
+    /**
+     * Returns the journal position stored by {@link #applyJournaledDeltas}, or 0 if there is none.
+     */
+    long findJournalCheckpoint(String journalId);
+}
@@ -0,0 +1,75 @@
+package com.energy.monitoring.repository;
+
+import com.energy.monitoring.dto.HourlyDelta;
+import com.energy.monitoring.entity.EnergyUnits;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class EnergyConsumptionRepositoryImpl implements EnergyConsumptionRepositoryCustom {
+
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+
+    private static final String UPSERT_PREFIX =
+            "INSERT INTO energy_consumption (device_id, timestamp, total_consumption, created_at) VALUES ";
+
+    private static final String UPSERT_ROW = "(?, ?, ?, LOCALTIMESTAMP)";
+
+    private static final String UPSERT_SUFFIX =
+            " ON CONFLICT (device_id, timestamp) DO UPDATE " +
+            "SET total_consumption = energy_consumption.total_consumption + excluded.total_consumption";
+
+    private static final String UPSERT_CHECKPOINT =
+            "INSERT INTO ingest_journal_checkpoint (journal_id, position, updated_at) VALUES (?, ?, LOCALTIMESTAMP) " +
+            "ON CONFLICT (journal_id) DO UPDATE SET position = excluded.position, updated_at = excluded.updated_at";
+
+    private static final String SELECT_CHECKPOINT =
+            "SELECT position FROM ingest_journal_checkpoint WHERE journal_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional
+    public void applyHourlyDeltas(List<HourlyDelta> deltas) {
+        for (int from = 0; from < deltas.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<HourlyDelta> chunk = deltas.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, deltas.size()));
+            jdbcTemplate.update(upsertSql(chunk.size()), ps -> {
+                int index = 1;
+                for (HourlyDelta delta : chunk) {
+                    ps.setLong(index++, delta.getDeviceId());
+                    ps.setObject(index++, delta.getTimestamp());
+                    ps.setBigDecimal(index++, EnergyUnits.toDecimal(delta.getDelta()));
+                }
+            });
+        }
+    }
+
+    @Override
+    @Transactional
+    public void applyJournaledDeltas(List<HourlyDelta> deltas, String journalId, long position) {
+        applyHourlyDeltas(deltas);
+        jdbcTemplate.update(UPSERT_CHECKPOINT, journalId, position);
+    }
+
+    @Override
+    public long findJournalCheckpoint(String journalId) {
+        List<Long> positions = jdbcTemplate.queryForList(SELECT_CHECKPOINT, Long.class, journalId);
+        return positions.isEmpty() ? 0 : positions.get(0);
+    }
+
+    private static String upsertSql(int rows) {
+        StringBuilder sql = new StringBuilder(UPSERT_PREFIX.length() + rows * (UPSERT_ROW.length() + 2)
+                + UPSERT_SUFFIX.length());
+        sql.append(UPSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(UPSERT_ROW);
+        }
+        return sql.append(UPSERT_SUFFIX).toString();
+    }
+}
@@ -0,0 +1,23 @@
+package com.energy.monitoring.repository;
+
+import com.energy.monitoring.entity.MonthlyConsumption;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface MonthlyConsumptionRepository extends JpaRepository<MonthlyConsumption, Long> {
+
+    List<MonthlyConsumption> findByDeviceIdAndMonthBetweenOrderByMonthAsc(
+            Long deviceId, LocalDate start, LocalDate end);
+
+    List<MonthlyConsumption> findByDeviceIdOrderByMonthAsc(Long deviceId);
+
+    @Modifying
+    @Query("delete from MonthlyConsumption m where m.deviceId = :deviceId")
+    void deleteByDeviceId(Long deviceId);
+}
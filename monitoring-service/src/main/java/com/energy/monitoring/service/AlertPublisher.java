@@ -0,0 +1,196 @@
+package com.energy.monitoring.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides which alerts a device's consumption warrants and publishes them to the alert exchange.
+ * Every alert carries a {@code type}: {@code OVERCONSUMPTION}, {@code PROJECTED_OVERRUN},
+ * {@code ANOMALY}, {@code DEVICE_SILENT} or {@code DEVICE_RESUMED}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AlertPublisher {
+
+    private final DeviceLimitCache deviceLimitCache;
+    private final AlertStateTracker alertStateTracker;
+    private final ConsumptionBaselines baselines;
+    private final IngestMetrics ingestMetrics;
+    private final RabbitTemplate rabbitTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${rabbitmq.exchange.alerts}")
+    private String alertExchange;
+
+    @Value("${rabbitmq.routing-key.alert}")
+    private String alertRoutingKey;
+
+    /**
+     * Feeds the current hourly total of a device into its alert state and publishes an
+     * overconsumption or projected-overrun alert when one is due.
+     */
+    public void checkConsumption(Long deviceId, double currentConsumption, LocalDateTime timestamp) {
+        try {
+            DeviceLimitCache.DeviceLimits limits = deviceLimitCache.get(deviceId);
+            if (limits == null) {
+                return;
+            }
+
+            if (alertStateTracker.evaluate(deviceId, timestamp, currentConsumption, limits.maxConsumption())) {
+                publishOverconsumption(deviceId, timestamp, currentConsumption, limits);
+                return;
+            }
+
+            double projected = baselines.projectOverrun(deviceId, timestamp, currentConsumption, limits.maxConsumption());
+            if (!Double.isNaN(projected)) {
+                publishProjectedOverrun(deviceId, timestamp, currentConsumption, projected, limits);
+            }
+        } catch (Exception e) {
+            ingestMetrics.error(IngestMetrics.Stage.ALERT_PUBLISH);
+            log.error("Failed to process alert logic", e);
+        }
+    }
+
+    public void publishOverconsumption(Long deviceId, LocalDateTime timestamp, double currentConsumption,
+                                       DeviceLimitCache.DeviceLimits limits) {
+        try {
+            log.warn("OVERCONSUMPTION DETECTED! Device: {}, Limit: {}, Current: {}",
+                    deviceId, limits.maxConsumption(), currentConsumption);
+
+            Map<String, Object> alert = newAlert("OVERCONSUMPTION", deviceId, timestamp, currentConsumption, limits);
+            alert.put("message", "High energy consumption detected!");
+            sendAlert(alert, limits);
+        } catch (Exception e) {
+            ingestMetrics.error(IngestMetrics.Stage.ALERT_PUBLISH);
+            log.error("Failed to publish overconsumption alert", e);
+        }
+    }
+
+    public void publishProjectedOverrun(Long deviceId, LocalDateTime timestamp, double currentConsumption,
+                                        double projected, DeviceLimitCache.DeviceLimits limits) {
+        try {
+            log.warn("Projected overrun for device {}: {} kWh expected this hour, limit {}",
+                    deviceId, projected, limits.maxConsumption());
+
+            Map<String, Object> alert = newAlert("PROJECTED_OVERRUN", deviceId, timestamp, currentConsumption, limits);
+            alert.put("projectedConsumption", projected);
+            alert.put("message", "Energy consumption is on track to exceed the limit this hour");
+            sendAlert(alert, limits);
+        } catch (Exception e) {
+            ingestMetrics.error(IngestMetrics.Stage.ALERT_PUBLISH);
+            log.error("Failed to publish projected overrun alert", e);
+        }
+    }
+
+    public void publishAnomaly(Long deviceId, LocalDateTime timestamp, double value,
+                               ConsumptionBaselines.Anomaly anomaly) {
+        try {
+            DeviceLimitCache.DeviceLimits limits = deviceLimitCache.get(deviceId);
+            if (limits == null) {
+                return;
+            }
+            log.warn("Anomalous reading of device {}: {} kWh, expected {} +/- {}",
+                    deviceId, value, anomaly.expected(), anomaly.standardDeviation());
+
+            Map<String, Object> alert = newAlert("ANOMALY", deviceId, timestamp, value, limits);
+            alert.put("expectedValue", anomaly.expected());
+            alert.put("message", "Unusual energy consumption detected!");
+            sendAlert(alert, limits);
+        } catch (Exception e) {
+            ingestMetrics.error(IngestMetrics.Stage.ALERT_PUBLISH);
+            log.error("Failed to process anomaly alert", e);
+        }
+    }
+
+    /**
+     * Reports a device that stopped sending readings; {@code lastSeen} is epoch millis.
+     */
+    public void publishDeviceSilent(Long deviceId, long lastSeen) {
+        try {
+            DeviceLimitCache.DeviceLimits limits = deviceLimitCache.get(deviceId);
+            if (limits == null) {
+                return;
+            }
+            log.warn("Device {} stopped reporting, last reading at {}", deviceId, toLocalDateTime(lastSeen));
+
+            Map<String, Object> alert = newHeartbeatAlert("DEVICE_SILENT", deviceId, lastSeen);
+            alert.put("message", "Device stopped sending measurements");
+            sendAlert(alert, limits);
+        } catch (Exception e) {
+            ingestMetrics.error(IngestMetrics.Stage.ALERT_PUBLISH);
+            log.error("Failed to publish device silent alert", e);
+        }
+    }
+
+    /**
+     * Reports a silent device that sent a reading again; times are epoch millis.
+     */
+    public void publishDeviceResumed(Long deviceId, long silentSince, long resumedAt) {
+        try {
+            DeviceLimitCache.DeviceLimits limits = deviceLimitCache.get(deviceId);
+            if (limits == null) {
+                return;
+            }
+            log.info("Device {} resumed reporting after {} s", deviceId, (resumedAt - silentSince) / 1000);
+
+            Map<String, Object> alert = newHeartbeatAlert("DEVICE_RESUMED", deviceId, resumedAt);
+            alert.put("silentSince", toLocalDateTime(silentSince).toString());
+            alert.put("message", "Device is sending measurements again");
+            sendAlert(alert, limits);
+        } catch (Exception e) {
+            ingestMetrics.error(IngestMetrics.Stage.ALERT_PUBLISH);
+            log.error("Failed to publish device resumed alert", e);
+        }
+    }
+
+    private Map<String, Object> newHeartbeatAlert(String type, Long deviceId, long lastSeen) {
+        Map<String, Object> alert = new HashMap<>();
+        alert.put("type", type);
+        alert.put("deviceId", deviceId);
+        alert.put("timestamp", LocalDateTime.now().toString());
+        alert.put("lastSeen", toLocalDateTime(lastSeen).toString());
+        return alert;
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private Map<String, Object> newAlert(String type, Long deviceId, LocalDateTime timestamp, double value,
+                                         DeviceLimitCache.DeviceLimits limits) {
+        Map<String, Object> alert = new HashMap<>();
+        alert.put("type", type);
+        alert.put("deviceId", deviceId);
+        alert.put("timestamp", timestamp.toString());
+        alert.put("measurementValue", value);
+        alert.put("limit", limits.maxConsumption());
+        return alert;
+    }
+
+    private void sendAlert(Map<String, Object> alert, DeviceLimitCache.DeviceLimits limits) throws Exception {
+        if (limits.userId() == null) {
+            log.error("Device {} has no user assigned in monitoring DB! Cannot send alert.", alert.get("deviceId"));
+            return; // Nu putem trimite alerta fără destinatar
+        }
+        alert.put("userId", limits.userId());
+
+        String jsonAlert = objectMapper.writeValueAsString(alert);
+        long start = System.nanoTime();
+        rabbitTemplate.convertAndSend(alertExchange, alertRoutingKey, jsonAlert);
+        ingestMetrics.record(IngestMetrics.Stage.ALERT_PUBLISH, start);
+        ingestMetrics.alertPublished();
+
+        log.info("Alert sent to RabbitMQ for User {}: {}", limits.userId(), jsonAlert);
+    }
+}
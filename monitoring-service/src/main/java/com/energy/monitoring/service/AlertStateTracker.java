@@ -0,0 +1,156 @@
+package com.energy.monitoring.service;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-device overconsumption state machine, so that an alert is published when a device crosses
+ * its limit and not for every reading that follows.
+ * <pre>
+ * NORMAL    -- total &gt; limit -----------------------&gt; EXCEEDED (alert) -&gt; NOTIFIED
+ * NOTIFIED  -- total &gt; limit, re-notify interval over -&gt; NOTIFIED (alert again)
+ * NOTIFIED  -- total &lt;= limit * (1 - hysteresis) ----&gt; RECOVERED
+ * RECOVERED -- total &gt; limit -----------------------&gt; EXCEEDED (alert) -&gt; NOTIFIED
+ * RECOVERED -- later hour, still below the margin ---&gt; NORMAL
+ * </pre>
+ * Readings for an hour older than the latest one seen for the device never change its state.
+ * <p>
+ * The state normally lives in a map owned by this class. Callers that already own per-device
+ * storage (the ingest pipeline's off-heap table) can run the same state machine on it through
+ * {@link #advance}.
+ */
+@Component
+@Slf4j
+public class AlertStateTracker {
+
+    public enum AlertState {
+        NORMAL, EXCEEDED, NOTIFIED, RECOVERED
+    }
+
+    /**
+     * Marks a slot that has not seen any hour yet.
+     */
+    public static final long NO_HOUR = Long.MIN_VALUE;
+
+    /**
+     * Alert state of one device; hours are epoch seconds of the hour's start.
+     */
+    public interface AlertSlot {
+        AlertState getState();
+
+        void setState(AlertState state);
+
+        long getHour();
+
+        void setHour(long hour);
+
+        long getLastNotifiedAt();
+
+        void setLastNotifiedAt(long lastNotifiedAt);
+    }
+
+    @Value("${monitoring.alerts.hysteresis-margin:0.05}")
+    private double hysteresisMargin;
+
+    @Value("${monitoring.alerts.renotify-interval-ms:3600000}")
+    private long reNotifyIntervalMs;
+
+    private final Map<Long, DeviceAlert> alerts = new ConcurrentHashMap<>();
+
+    /**
+     * Feeds the current hourly total of a device into its state machine.
+     *
+     * @return {@code true} if an alert should be published for this reading
+     */
+    public boolean evaluate(Long deviceId, LocalDateTime hour, double total, double limit) {
+        DeviceAlert alert = alerts.computeIfAbsent(deviceId, id -> new DeviceAlert());
+        synchronized (alert) {
+            return advance(deviceId, alert, hour.toEpochSecond(ZoneOffset.UTC), total, limit);
+        }
+    }
+
+    /**
+     * Runs the state machine on a slot the caller has exclusive access to.
+     *
+     * @return {@code true} if an alert should be published for this reading
+     */
+    public boolean advance(Long deviceId, AlertSlot alert, long hour, double total, double limit) {
+        long now = System.currentTimeMillis();
+        long previousHour = alert.getHour();
+        if (previousHour != NO_HOUR && hour < previousHour) {
+            return false;
+        }
+        boolean newHour = previousHour != NO_HOUR && hour > previousHour;
+        alert.setHour(hour);
+
+        AlertState previous = alert.getState();
+        AlertState state = previous;
+        boolean notify = false;
+
+        switch (state) {
+            case NORMAL -> {
+                if (total > limit) {
+                    state = AlertState.EXCEEDED;
+                }
+            }
+            case NOTIFIED -> {
+                if (total <= limit * (1 - hysteresisMargin)) {
+                    state = AlertState.RECOVERED;
+                } else if (total > limit && reNotifyIntervalMs > 0
+                        && now - alert.getLastNotifiedAt() >= reNotifyIntervalMs) {
+                    notify = true;
+                }
+            }
+            case RECOVERED -> {
+                if (total > limit) {
+                    state = AlertState.EXCEEDED;
+                } else if (newHour && total <= limit * (1 - hysteresisMargin)) {
+                    state = AlertState.NORMAL;
+                }
+            }
+            case EXCEEDED -> {
+                // transient, resolved below
+            }
+        }
+
+        if (state == AlertState.EXCEEDED) {
+            state = AlertState.NOTIFIED;
+            notify = true;
+        }
+        if (notify) {
+            alert.setLastNotifiedAt(now);
+        }
+        alert.setState(state);
+
+        if (previous != state) {
+            log.debug("Alert state of device {} changed {} -> {} (total {}, limit {})",
+                    deviceId, previous, state, total, limit);
+        }
+        return notify;
+    }
+
+    public AlertState getState(Long deviceId) {
+        DeviceAlert alert = alerts.get(deviceId);
+        return alert != null ? alert.getState() : AlertState.NORMAL;
+    }
+
+    public void forget(Long deviceId) {
+        alerts.remove(deviceId);
+    }
+
+    @Getter
+    @Setter
+    private static final class DeviceAlert implements AlertSlot {
+        private AlertState state = AlertState.NORMAL;
+        private long hour = NO_HOUR;
+        private long lastNotifiedAt;
+    }
+}
@@ -0,0 +1,253 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.BaselineStatsDTO;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-device consumption baselines for alerts that do not wait for the limit to be breached.
+ * <p>
+ * Every device has an exponentially weighted mean and variance of its readings for each hour of
+ * the day, updated in constant time per reading. A reading further than {@code anomaly-threshold}
+ * standard deviations (and {@code min-relative-deviation} of the mean) from the baseline of its
+ * hour is an anomaly, once that hour has seen {@code min-samples} readings. Separately, the
+ * run-rate of the current hour projects the hourly total; if it will end above the limit while
+ * still below it, a projected overrun is reported. Either alert fires at most once per device
+ * and hour.
+ * <p>
+ * All state lives in flat primitive arrays allocated once for {@code max-devices} devices, about
+ * 300 bytes each. Devices beyond that are not tracked until a slot is freed.
+ */
+@Component
+@Slf4j
+public class ConsumptionBaselines {
+
+    private static final int HOURS = 24;
+    private static final int STRIPES = 64;
+    private static final int NEVER = Integer.MIN_VALUE;
+
+    @Value("${monitoring.baselines.enabled:true}")
+    private boolean enabled;
+
+    @Value("${monitoring.baselines.max-devices:65536}")
+    private int maxDevices;
+
+    @Value("${monitoring.baselines.alpha:0.05}")
+    private double alpha;
+
+    @Value("${monitoring.baselines.min-samples:30}")
+    private int minSamples;
+
+    @Value("${monitoring.baselines.anomaly-threshold:4.0}")
+    private double anomalyThreshold;
+
+    @Value("${monitoring.baselines.min-relative-deviation:0.25}")
+    private double minRelativeDeviation;
+
+    @Value("${monitoring.baselines.projection-min-elapsed:PT10M}")
+    private Duration projectionMinElapsed;
+
+    private final Map<Long, Integer> slots = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[STRIPES];
+    private final LongAdder untrackedReadings = new LongAdder();
+    private final LongAdder anomalies = new LongAdder();
+    private final LongAdder projectedOverruns = new LongAdder();
+
+    // indexed by slot * HOURS + hour of day
+    private float[] mean;
+    private float[] variance;
+    private int[] samples;
+
+    // indexed by slot
+    private long[] owner;
+    private long[] latestSecond;
+    private int[] anomalyHour;
+    private int[] projectionHour;
+
+    private int[] freeSlots;
+    private int freeCount;
+
+    @PostConstruct
+    void init() {
+        mean = new float[maxDevices * HOURS];
+        variance = new float[maxDevices * HOURS];
+        samples = new int[maxDevices * HOURS];
+        owner = new long[maxDevices];
+        latestSecond = new long[maxDevices];
+        anomalyHour = new int[maxDevices];
+        projectionHour = new int[maxDevices];
+        freeSlots = new int[maxDevices];
+        for (int i = 0; i < maxDevices; i++) {
+            freeSlots[i] = maxDevices - 1 - i;
+        }
+        freeCount = maxDevices;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        log.info("Consumption baselines sized for {} devices ({} KiB)", maxDevices, memoryBytes() / 1024);
+    }
+
+    /**
+     * Checks a reading against the baseline of its hour of day, then folds it into the baseline.
+     *
+     * @return the anomaly to report, or {@code null}
+     */
+    public Anomaly observe(Long deviceId, LocalDateTime timestamp, double value) {
+        if (!enabled) {
+            return null;
+        }
+        int slot = slotOf(deviceId);
+        if (slot < 0) {
+            untrackedReadings.increment();
+            return null;
+        }
+
+        long second = timestamp.toEpochSecond(ZoneOffset.UTC);
+        int hour = (int) Math.floorDiv(second, 3600L);
+        int index = slot * HOURS + timestamp.getHour();
+
+        synchronized (locks[slot & (STRIPES - 1)]) {
+            if (owner[slot] != deviceId) {
+                return null;
+            }
+            latestSecond[slot] = Math.max(latestSecond[slot], second);
+
+            Anomaly anomaly = null;
+            double expected = mean[index];
+            double deviation = Math.abs(value - expected);
+            if (samples[index] >= minSamples
+                    && anomalyHour[slot] != hour
+                    && deviation > anomalyThreshold * Math.sqrt(variance[index])
+                    && deviation > minRelativeDeviation * Math.abs(expected)) {
+                anomalyHour[slot] = hour;
+                anomalies.increment();
+                anomaly = new Anomaly(expected, Math.sqrt(variance[index]));
+            }
+
+            if (samples[index] == 0) {
+                mean[index] = (float) value;
+            } else {
+                // incremental EWMA of mean and variance (West, 1979)
+                double diff = value - expected;
+                double increment = alpha * diff;
+                mean[index] = (float) (expected + increment);
+                variance[index] = (float) ((1 - alpha) * (variance[index] + diff * increment));
+            }
+            if (samples[index] < Integer.MAX_VALUE) {
+                samples[index]++;
+            }
+            return anomaly;
+        }
+    }
+
+    /**
+     * Projects the total of the device's current hour from its run-rate so far.
+     *
+     * @return the projected total if it will exceed {@code limit} while {@code total} does not yet,
+     *         otherwise {@code NaN}
+     */
+    public double projectOverrun(Long deviceId, LocalDateTime hourStart, double total, double limit) {
+        if (!enabled || total > limit) {
+            return Double.NaN;
+        }
+        Integer slot = slots.get(deviceId);
+        if (slot == null) {
+            return Double.NaN;
+        }
+
+        long startSecond = hourStart.toEpochSecond(ZoneOffset.UTC);
+        int hour = (int) Math.floorDiv(startSecond, 3600L);
+        synchronized (locks[slot & (STRIPES - 1)]) {
+            if (owner[slot] != deviceId || projectionHour[slot] == hour) {
+                return Double.NaN;
+            }
+            // seconds covered by the readings of this hour so far
+            long elapsed = latestSecond[slot] - startSecond + 1;
+            if (elapsed < projectionMinElapsed.toSeconds() || elapsed > 3600) {
+                return Double.NaN;
+            }
+            double projected = total * 3600.0 / elapsed;
+            if (projected <= limit) {
+                return Double.NaN;
+            }
+            projectionHour[slot] = hour;
+            projectedOverruns.increment();
+            return projected;
+        }
+    }
+
+    public void evictDevice(Long deviceId) {
+        Integer slot = slots.remove(deviceId);
+        if (slot == null) {
+            return;
+        }
+        synchronized (locks[slot & (STRIPES - 1)]) {
+            int from = slot * HOURS;
+            Arrays.fill(mean, from, from + HOURS, 0f);
+            Arrays.fill(variance, from, from + HOURS, 0f);
+            Arrays.fill(samples, from, from + HOURS, 0);
+            owner[slot] = 0;
+            latestSecond[slot] = 0;
+        }
+        synchronized (freeSlots) {
+            freeSlots[freeCount++] = slot;
+        }
+    }
+
+    public BaselineStatsDTO getStats() {
+        return BaselineStatsDTO.builder()
+                .enabled(enabled)
+                .maxDevices(maxDevices)
+                .trackedDevices(slots.size())
+                .memoryBytes(memoryBytes())
+                .untrackedReadings(untrackedReadings.sum())
+                .anomalies(anomalies.sum())
+                .projectedOverruns(projectedOverruns.sum())
+                .build();
+    }
+
+    /**
+     * Returns the slot of a device, assigning a free one on first sight, or -1 when all slots
+     * are taken.
+     */
+    private int slotOf(Long deviceId) {
+        Integer slot = slots.get(deviceId);
+        if (slot != null) {
+            return slot;
+        }
+        slot = slots.computeIfAbsent(deviceId, id -> {
+            int free;
+            synchronized (freeSlots) {
+                if (freeCount == 0) {
+                    return null;
+                }
+                free = freeSlots[--freeCount];
+            }
+            synchronized (locks[free & (STRIPES - 1)]) {
+                owner[free] = id;
+                anomalyHour[free] = NEVER;
+                projectionHour[free] = NEVER;
+            }
+            return free;
+        });
+        return slot != null ? slot : -1;
+    }
+
+    private long memoryBytes() {
+        return (long) maxDevices * (HOURS * (Float.BYTES * 2 + Integer.BYTES)
+                + Long.BYTES * 2 + Integer.BYTES * 3);
+    }
+
+    public record Anomaly(double expected, double standardDeviation) {
+    }
+}
@@ -0,0 +1,147 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.exception.InvalidRequestException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Streams consumption history straight from a server-side cursor to the HTTP response.
+ * <p>
+ * Rows are fetched {@code monitoring.export.fetch-size} at a time inside a read-only transaction
+ * (the PostgreSQL driver only uses a cursor when auto-commit is off) and written as they arrive,
+ * so heap use does not depend on how many rows are exported.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConsumptionExportService {
+
+    private static final String EXPORT_SQL =
+            "SELECT device_id, timestamp, total_consumption FROM energy_consumption " +
+            "WHERE timestamp >= ? AND timestamp < ?";
+
+    private static final String DEVICE_FILTER = " AND device_id = ANY (?)";
+
+    private static final String ORDER_BY = " ORDER BY device_id, timestamp";
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum ExportFormat {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String mediaType;
+        private final String extension;
+
+        public static ExportFormat from(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidRequestException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${monitoring.export.fetch-size:1000}")
+    private int fetchSize;
+
+    public void validateRange(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new InvalidRequestException("'to' must not be before 'from'");
+        }
+    }
+
+    /**
+     * Writes the hourly rows of {@code deviceIds} (all devices when empty) for whole days
+     * {@code from..to} to {@code out}.
+     */
+    public void export(Set<Long> deviceIds, LocalDate from, LocalDate to, ExportFormat format, OutputStream out) {
+        boolean filterDevices = deviceIds != null && !deviceIds.isEmpty();
+        String sql = EXPORT_SQL + (filterDevices ? DEVICE_FILTER : "") + ORDER_BY;
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        long[] rows = {0};
+
+        readOnly.executeWithoutResult(status -> {
+            try {
+                if (format == ExportFormat.CSV) {
+                    writer.write("device_id,timestamp,total_consumption\n");
+                }
+
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(
+                            sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    ps.setTimestamp(1, Timestamp.valueOf(from.atStartOfDay()));
+                    ps.setTimestamp(2, Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+                    if (filterDevices) {
+                        ps.setArray(3, connection.createArrayOf("bigint", deviceIds.toArray()));
+                    }
+                    return ps;
+                }, rs -> {
+                    writeRow(writer, format, rs.getLong(1), rs.getTimestamp(2), rs.getBigDecimal(3));
+                    rows[0]++;
+                });
+
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        log.info("Exported {} consumption rows as {} ({} devices, {} to {})",
+                rows[0], format, filterDevices ? deviceIds.size() : "all", from, to);
+    }
+
+    private void writeRow(Writer writer, ExportFormat format, long deviceId, Timestamp timestamp, BigDecimal total) {
+        try {
+            String hour = timestamp.toLocalDateTime().toString();
+            String kilowattHours = total.stripTrailingZeros().toPlainString();
+            if (format == ExportFormat.CSV) {
+                writer.write(Long.toString(deviceId));
+                writer.write(',');
+                writer.write(hour);
+                writer.write(',');
+                writer.write(kilowattHours);
+                writer.write('\n');
+            } else {
+                writer.write("{\"deviceId\":");
+                writer.write(Long.toString(deviceId));
+                writer.write(",\"timestamp\":\"");
+                writer.write(hour);
+                writer.write("\",\"totalConsumption\":");
+                writer.write(kilowattHours);
+                writer.write("}\n");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.energy.monitoring.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Keeps the monthly range partitions of {@code energy_consumption} rolling: partitions for the
+ * coming months are created ahead of time, and whole partitions past the retention period are
+ * dropped instead of deleting their rows. The partitioned table itself and the
+ * {@code create_energy_consumption_partition} function are set up by {@code schema-postgres.sql}.
+ * <p>
+ * Every replica runs this, so the work is serialized with a transaction-scoped advisory lock.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ConsumptionPartitionManager {
+
+    private static final long MAINTENANCE_LOCK_ID = 0x656e6572677950L;
+    private static final String PARTITION_PREFIX = "energy_consumption_";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${monitoring.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${monitoring.partitions.retention-months:0}")
+    private int retentionMonths;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${monitoring.partitions.maintenance-cron:0 15 0 * * *}")
+    public void maintainPartitions() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Boolean locked = jdbcTemplate.queryForObject(
+                        "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, MAINTENANCE_LOCK_ID);
+                if (!Boolean.TRUE.equals(locked)) {
+                    log.debug("Partition maintenance is already running on another replica");
+                    return;
+                }
+                createFuturePartitions();
+                dropExpiredPartitions();
+            });
+        } catch (RuntimeException e) {
+            log.error("Partition maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void createFuturePartitions() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            jdbcTemplate.queryForObject("SELECT create_energy_consumption_partition(?)",
+                    Object.class, current.plusMonths(i).atDay(1));
+        }
+    }
+
+    private void dropExpiredPartitions() {
+        if (retentionMonths <= 0) {
+            return;
+        }
+
+        YearMonth oldestKept = YearMonth.now().minusMonths(retentionMonths);
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = 'energy_consumption'::regclass", String.class);
+
+        for (String partition : partitions) {
+            YearMonth month = partitionMonth(partition);
+            if (month != null && month.isBefore(oldestKept)) {
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                log.info("Dropped energy consumption partition {} (retention {} months)", partition, retentionMonths);
+            }
+        }
+    }
+
+    private YearMonth partitionMonth(String partition) {
+        if (!partition.startsWith(PARTITION_PREFIX)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
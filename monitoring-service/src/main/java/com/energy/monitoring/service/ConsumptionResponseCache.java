@@ -0,0 +1,146 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.CacheInvalidationEvent;
+import com.energy.monitoring.dto.HourlyConsumptionDTO;
+import com.energy.monitoring.dto.HourlyDelta;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-side cache of hourly consumption responses for closed days, with the strong ETag sent
+ * for every response.
+ * <p>
+ * A day is closed once it ended more than {@code monitoring.http-cache.closed-day-grace} ago,
+ * which must cover the watermark's allowed lateness and the accumulator flush interval. A closed
+ * day can still change afterwards, through late corrections, replayed backlogs and device
+ * deletes, so every write path reports what it wrote to {@link #invalidateClosedDays}, which
+ * evicts locally and tells the other replicas through a fanout exchange. Clients only keep
+ * closed days for {@code monitoring.http-cache.closed-day-max-age} before revalidating.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ConsumptionResponseCache {
+
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${rabbitmq.exchange.cache-invalidation}")
+    private String invalidationExchange;
+
+    @Value("${monitoring.http-cache.capacity:10000}")
+    private int capacity;
+
+    @Value("${monitoring.http-cache.closed-day-grace:PT30M}")
+    private Duration closedDayGrace;
+
+    private final Map<DeviceDay, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicLong generation = new AtomicLong();
+
+    public boolean isClosed(LocalDate day) {
+        return !day.plusDays(1).atStartOfDay().isAfter(LocalDateTime.now().minus(closedDayGrace));
+    }
+
+    public Entry get(Long deviceId, LocalDate day) {
+        synchronized (entries) {
+            return entries.get(new DeviceDay(deviceId, day));
+        }
+    }
+
+    /**
+     * Generation to pass to {@link #put}; read it before loading the data to be cached.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Caches an entry unless an invalidation happened since {@code loadedAt} was read, in which
+     * case the data may already be stale.
+     */
+    public void put(Long deviceId, LocalDate day, Entry entry, long loadedAt) {
+        synchronized (entries) {
+            if (generation.get() != loadedAt) {
+                return;
+            }
+            entries.put(new DeviceDay(deviceId, day), entry);
+            if (entries.size() > capacity) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+    }
+
+    /**
+     * Drops a cached day ({@code day == null}: every day of the device) on all replicas.
+     */
+    public void invalidate(Long deviceId, LocalDate day) {
+        evict(deviceId, day);
+        try {
+            rabbitTemplate.convertAndSend(invalidationExchange, "", new CacheInvalidationEvent(deviceId, day));
+        } catch (Exception e) {
+            log.error("Failed to broadcast cache invalidation for device {} day {}: {}", deviceId, day, e.getMessage());
+        }
+    }
+
+    /**
+     * Invalidates the day of every written delta that falls on a closed day, once per device and
+     * day. Deltas of open days are skipped, since those are never cached.
+     */
+    public void invalidateClosedDays(Collection<HourlyDelta> written) {
+        Set<DeviceDay> days = new HashSet<>();
+        for (HourlyDelta delta : written) {
+            LocalDate day = delta.getTimestamp().toLocalDate();
+            if (isClosed(day) && days.add(new DeviceDay(delta.getDeviceId(), day))) {
+                invalidate(delta.getDeviceId(), day);
+            }
+        }
+    }
+
+    public void evict(Long deviceId, LocalDate day) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            if (day != null) {
+                entries.remove(new DeviceDay(deviceId, day));
+            } else {
+                entries.keySet().removeIf(key -> key.deviceId().equals(deviceId));
+            }
+        }
+    }
+
+    public static String etagOf(Long deviceId, LocalDate day, List<HourlyConsumptionDTO> rows) {
+        long hash = deviceId * 0x9E3779B97F4A7C15L ^ day.toEpochDay();
+        for (HourlyConsumptionDTO row : rows) {
+            hash = mix(hash ^ row.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            hash = mix(hash ^ Double.doubleToLongBits(row.getTotalConsumption()));
+        }
+        return "\"" + Long.toHexString(mix(hash ^ rows.size())) + "\"";
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    public record Entry(List<HourlyConsumptionDTO> body, String etag, boolean closed) {
+    }
+
+    private record DeviceDay(Long deviceId, LocalDate day) {
+    }
+}
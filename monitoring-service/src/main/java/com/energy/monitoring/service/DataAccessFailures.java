@@ -0,0 +1,26 @@
+package com.energy.monitoring.service;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+/**
+ * Tells failures of the database itself (unreachable, restarting, out of connections), after
+ * which the same write can succeed later, apart from failures caused by the rows written.
+ */
+final class DataAccessFailures {
+
+    private DataAccessFailures() {
+    }
+
+    /**
+     * @return {@code true} if retrying the write unchanged may succeed, so its deltas must be kept
+     */
+    static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof CannotCreateTransactionException;
+    }
+}
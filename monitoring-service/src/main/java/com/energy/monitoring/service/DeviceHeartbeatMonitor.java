@@ -0,0 +1,348 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.HeartbeatStatsDTO;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detects devices that stop reporting and publishes {@code DEVICE_SILENT} when a device has missed
+ * {@code missed-intervals} expected intervals, and {@code DEVICE_RESUMED} with its next reading.
+ * <p>
+ * Deadlines live in a hashed timer wheel of {@code wheel-size} buckets, advanced one bucket per
+ * {@code tick-ms} by a single scheduled task that owns the wheel. A reading only stores the time
+ * it was seen; the wheel is not touched until the device's deadline comes up, and then the device
+ * is moved to the bucket of its new deadline, so each reading costs one volatile write and each
+ * tick only visits the devices due in its bucket. All state lives in flat arrays allocated once
+ * for {@code max-devices} devices.
+ * <p>
+ * Devices are tracked from their first reading after startup. While the replica receives no
+ * readings at all for a whole timeout, for example because the broker is unreachable, no device
+ * is reported silent. A device that stays silent for {@code forget-after} gives its slot back, so
+ * devices that moved to another replica or were decommissioned do not use up {@code max-devices};
+ * if it reports again it is tracked anew, without a {@code DEVICE_RESUMED}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceHeartbeatMonitor {
+
+    private static final int ACTIVE = 0;
+    private static final int SILENT = 1;
+    private static final int RESUMING = 2;
+    private static final int FREE = 3;
+    private static final int NONE = -1;
+
+    private final AlertPublisher alertPublisher;
+
+    @Value("${monitoring.heartbeat.enabled:true}")
+    private boolean enabled;
+
+    @Value("${monitoring.heartbeat.max-devices:65536}")
+    private int maxDevices;
+
+    @Value("${monitoring.heartbeat.expected-interval:PT10S}")
+    private Duration expectedInterval;
+
+    @Value("${monitoring.heartbeat.missed-intervals:3}")
+    private int missedIntervals;
+
+    @Value("${monitoring.heartbeat.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${monitoring.heartbeat.wheel-size:512}")
+    private int wheelSize;
+
+    @Value("${monitoring.heartbeat.forget-after:PT24H}")
+    private Duration forgetAfter;
+
+    private final Map<Long, Integer> slots = new ConcurrentHashMap<>();
+    private final Queue<Integer> arrivals = new ConcurrentLinkedQueue<>();
+    private final Queue<Integer> releases = new ConcurrentLinkedQueue<>();
+    private final LongAdder readings = new LongAdder();
+    private final LongAdder untrackedReadings = new LongAdder();
+    private final LongAdder silentEvents = new LongAdder();
+    private final LongAdder resumedEvents = new LongAdder();
+    private final LongAdder forgottenDevices = new LongAdder();
+
+    // written by readings, indexed by slot
+    private AtomicLongArray lastSeen;
+    private AtomicIntegerArray state;
+    private long[] owner;
+
+    // owned by the ticker, indexed by slot
+    private long[] deadline;
+    private int[] next;
+    private int[] prev;
+    private boolean[] linked;
+    private boolean[] announced;
+    private long[] silentSince;
+
+    private int[] buckets;
+    private int mask;
+    private long timeoutTicks;
+    private long forgetTicks;
+    private long currentTick;
+    private long lastActivityTick;
+    private long lastReadings;
+    private volatile int silentDevices;
+
+    private int[] freeSlots;
+    private int freeCount;
+
+    @PostConstruct
+    void init() {
+        lastSeen = new AtomicLongArray(maxDevices);
+        state = new AtomicIntegerArray(maxDevices);
+        owner = new long[maxDevices];
+        deadline = new long[maxDevices];
+        next = new int[maxDevices];
+        prev = new int[maxDevices];
+        linked = new boolean[maxDevices];
+        announced = new boolean[maxDevices];
+        silentSince = new long[maxDevices];
+        freeSlots = new int[maxDevices];
+        for (int i = 0; i < maxDevices; i++) {
+            state.set(i, FREE);
+            freeSlots[i] = maxDevices - 1 - i;
+        }
+        freeCount = maxDevices;
+
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) * 2 - 1);
+        buckets = new int[size];
+        Arrays.fill(buckets, NONE);
+        mask = size - 1;
+        timeoutTicks = Math.max(1, (expectedInterval.toMillis() * missedIntervals + tickMillis - 1) / tickMillis);
+        forgetTicks = forgetAfter.isZero() ? 0 : Math.max(1, forgetAfter.toMillis() / tickMillis);
+        currentTick = System.currentTimeMillis() / tickMillis;
+        lastActivityTick = currentTick;
+        log.info("Heartbeat monitor: devices silent after {} ms, wheel of {} x {} ms, sized for {} devices",
+                timeoutTicks * tickMillis, size, tickMillis, maxDevices);
+    }
+
+    /**
+     * Records that a device has just reported.
+     */
+    public void recordSeen(Long deviceId) {
+        if (!enabled) {
+            return;
+        }
+        readings.increment();
+        int slot = slotOf(deviceId);
+        if (slot < 0) {
+            untrackedReadings.increment();
+            return;
+        }
+        lastSeen.set(slot, System.currentTimeMillis());
+        if (state.get(slot) == SILENT && state.compareAndSet(slot, SILENT, RESUMING)) {
+            arrivals.add(slot);
+        }
+    }
+
+    public void evictDevice(Long deviceId) {
+        Integer slot = slots.remove(deviceId);
+        if (slot != null) {
+            releases.add(slot);
+        }
+    }
+
+    /**
+     * Advances the wheel to the current time, visiting every bucket passed since the last run.
+     */
+    @Scheduled(fixedDelayString = "${monitoring.heartbeat.tick-ms:1000}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        Integer slot;
+        while ((slot = releases.poll()) != null) {
+            release(slot);
+        }
+        while ((slot = arrivals.poll()) != null) {
+            arrive(slot);
+        }
+
+        long target = System.currentTimeMillis() / tickMillis;
+        while (currentTick < target) {
+            currentTick++;
+            long total = readings.sum();
+            if (total != lastReadings) {
+                lastReadings = total;
+                lastActivityTick = currentTick;
+            }
+            expire((int) (currentTick & mask));
+        }
+    }
+
+    public HeartbeatStatsDTO getStats() {
+        return HeartbeatStatsDTO.builder()
+                .enabled(enabled)
+                .maxDevices(maxDevices)
+                .trackedDevices(slots.size())
+                .silentDevices(silentDevices)
+                .timeoutMs(timeoutTicks * tickMillis)
+                .untrackedReadings(untrackedReadings.sum())
+                .silentEvents(silentEvents.sum())
+                .resumedEvents(resumedEvents.sum())
+                .forgottenDevices(forgottenDevices.sum())
+                .build();
+    }
+
+    private void expire(int bucket) {
+        boolean receiving = currentTick - lastActivityTick < timeoutTicks;
+        int slot = buckets[bucket];
+        while (slot != NONE) {
+            int following = next[slot];
+            if (deadline[slot] <= currentTick) {
+                unlink(slot);
+                int current = state.get(slot);
+                if (current == SILENT) {
+                    forget(slot);
+                } else if (current == ACTIVE) {
+                    long seenDeadline = lastSeen.get(slot) / tickMillis + timeoutTicks;
+                    if (seenDeadline > currentTick) {
+                        link(slot, seenDeadline);
+                    } else if (!receiving) {
+                        link(slot, currentTick + timeoutTicks);
+                    } else if (state.compareAndSet(slot, ACTIVE, SILENT)) {
+                        silence(slot);
+                    }
+                }
+                // RESUMING: the queued arrival links the slot again
+            }
+            slot = following;
+        }
+    }
+
+    private void silence(int slot) {
+        // A reading may have landed between the deadline check and the state change
+        long seen = lastSeen.get(slot);
+        if (seen / tickMillis + timeoutTicks > currentTick) {
+            if (state.compareAndSet(slot, SILENT, ACTIVE)) {
+                link(slot, seen / tickMillis + timeoutTicks);
+            }
+            return;
+        }
+        announced[slot] = true;
+        silentSince[slot] = seen;
+        silentDevices++;
+        silentEvents.increment();
+        alertPublisher.publishDeviceSilent(owner[slot], seen);
+        if (forgetTicks > 0) {
+            link(slot, seen / tickMillis + forgetTicks);
+        }
+    }
+
+    /**
+     * Releases the slot of a device that has been silent for {@code forget-after}, unless a
+     * reading has just brought it back.
+     */
+    private void forget(int slot) {
+        if (!state.compareAndSet(slot, SILENT, FREE)) {
+            return;
+        }
+        slots.remove(owner[slot], slot);
+        forgottenDevices.increment();
+        release(slot);
+    }
+
+    private void arrive(int slot) {
+        int current = state.get(slot);
+        if (current == FREE || current != RESUMING && linked[slot]) {
+            return;
+        }
+        if (current == RESUMING) {
+            if (linked[slot]) {
+                // still waiting to be forgotten
+                unlink(slot);
+            }
+            if (announced[slot]) {
+                announced[slot] = false;
+                silentDevices--;
+                resumedEvents.increment();
+                alertPublisher.publishDeviceResumed(owner[slot], silentSince[slot], lastSeen.get(slot));
+            }
+            state.set(slot, ACTIVE);
+        }
+        link(slot, lastSeen.get(slot) / tickMillis + timeoutTicks);
+    }
+
+    private void release(int slot) {
+        if (linked[slot]) {
+            unlink(slot);
+        }
+        if (announced[slot]) {
+            announced[slot] = false;
+            silentDevices--;
+        }
+        state.set(slot, FREE);
+        owner[slot] = 0;
+        synchronized (freeSlots) {
+            freeSlots[freeCount++] = slot;
+        }
+    }
+
+    private void link(int slot, long tick) {
+        deadline[slot] = Math.max(tick, currentTick + 1);
+        int bucket = (int) (deadline[slot] & mask);
+        int head = buckets[bucket];
+        next[slot] = head;
+        prev[slot] = NONE;
+        if (head != NONE) {
+            prev[head] = slot;
+        }
+        buckets[bucket] = slot;
+        linked[slot] = true;
+    }
+
+    private void unlink(int slot) {
+        if (prev[slot] != NONE) {
+            next[prev[slot]] = next[slot];
+        } else {
+            buckets[(int) (deadline[slot] & mask)] = next[slot];
+        }
+        if (next[slot] != NONE) {
+            prev[next[slot]] = prev[slot];
+        }
+        linked[slot] = false;
+    }
+
+    /**
+     * Returns the slot of a device, assigning a free one on first sight, or -1 when all slots
+     * are taken. A new slot is handed to the ticker to be scheduled.
+     */
+    private int slotOf(Long deviceId) {
+        Integer slot = slots.get(deviceId);
+        if (slot != null) {
+            return slot;
+        }
+        slot = slots.computeIfAbsent(deviceId, id -> {
+            int free;
+            synchronized (freeSlots) {
+                if (freeCount == 0) {
+                    return null;
+                }
+                free = freeSlots[--freeCount];
+            }
+            owner[free] = id;
+            lastSeen.set(free, System.currentTimeMillis());
+            state.set(free, ACTIVE);
+            arrivals.add(free);
+            return free;
+        });
+        return slot != null ? slot : -1;
+    }
+}
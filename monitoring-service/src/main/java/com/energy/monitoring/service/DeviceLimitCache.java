@@ -0,0 +1,248 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.DeviceCacheStatsDTO;
+import com.energy.monitoring.entity.DeviceReference;
+import com.energy.monitoring.repository.DeviceReferenceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-process cache of device limits and owners used by the alert check.
+ * <p>
+ * Entries live in an open-addressing table keyed by primitive {@code long} device ids, sized once
+ * from {@code monitoring.device-cache.capacity}. When the table is full the CLOCK algorithm evicts
+ * an entry that has not been read since the hand last passed it. Devices unknown to the database
+ * are cached as well, for {@code monitoring.device-cache.missing-ttl}, so a stream of readings from
+ * an unregistered device costs one lookup per TTL. The table is warmed before the listeners start
+ * and kept current by {@link SyncConsumerService}, whose updates reach every replica through
+ * {@link DeviceStateBroadcaster}; the TTL covers a replica that missed such a broadcast.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceLimitCache implements SmartInitializingSingleton {
+
+    private static final DeviceLimits MISSING = new DeviceLimits(Double.NaN, null);
+
+    private final DeviceReferenceRepository referenceRepository;
+    private final IngestMetrics ingestMetrics;
+
+    @Value("${monitoring.device-cache.capacity:65536}")
+    private int capacity;
+
+    @Value("${monitoring.device-cache.missing-ttl:PT1M}")
+    private Duration missingTtl;
+
+    private final StampedLock lock = new StampedLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private long[] keys;
+    private DeviceLimits[] values;
+    private long[] missingUntil;
+    private boolean[] referenced;
+    private int mask;
+    private int size;
+    private int clockHand;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1;
+        keys = new long[tableSize];
+        values = new DeviceLimits[tableSize];
+        missingUntil = new long[tableSize];
+        referenced = new boolean[tableSize];
+        mask = tableSize - 1;
+
+        int loaded = 0;
+        for (DeviceReference reference : referenceRepository.findAll(PageRequest.of(0, capacity))) {
+            put(reference.getDeviceId(), reference.getMaxConsumption(), reference.getUserId());
+            loaded++;
+        }
+        log.info("Device limit cache warmed with {} devices (capacity {})", loaded, capacity);
+    }
+
+    /**
+     * Returns the limits of a device, loading them on a miss, or {@code null} if the device is
+     * not known to the monitoring database.
+     */
+    public DeviceLimits get(long deviceId) {
+        DeviceLimits limits = lookup(deviceId);
+        if (limits != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            long start = System.nanoTime();
+            limits = referenceRepository.findById(deviceId)
+                    .map(reference -> new DeviceLimits(reference.getMaxConsumption(), reference.getUserId()))
+                    .orElse(MISSING);
+            ingestMetrics.record(IngestMetrics.Stage.DB_READ, start);
+            store(deviceId, limits);
+        }
+        return limits == MISSING ? null : limits;
+    }
+
+    public void put(long deviceId, Double maxConsumption, Long userId) {
+        store(deviceId, maxConsumption != null ? new DeviceLimits(maxConsumption, userId) : MISSING);
+    }
+
+    public void invalidate(long deviceId) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(deviceId);
+            if (slot >= 0) {
+                delete(slot);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public DeviceCacheStatsDTO getStats() {
+        long stamp = lock.readLock();
+        try {
+            return DeviceCacheStatsDTO.builder()
+                    .capacity(capacity)
+                    .size(size)
+                    .hits(hits.sum())
+                    .misses(misses.sum())
+                    .evictions(evictions.sum())
+                    .build();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the cached limits, or {@code null} on a miss or an expired {@code MISSING} entry
+     */
+    private DeviceLimits lookup(long deviceId) {
+        long stamp = lock.tryOptimisticRead();
+        int slot = find(deviceId);
+        DeviceLimits limits = slot >= 0 ? values[slot] : null;
+        long expiry = slot >= 0 ? missingUntil[slot] : 0;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                slot = find(deviceId);
+                limits = slot >= 0 ? values[slot] : null;
+                expiry = slot >= 0 ? missingUntil[slot] : 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (slot < 0) {
+            return null;
+        }
+        if (limits == MISSING && System.nanoTime() - expiry >= 0) {
+            return null;
+        }
+        referenced[slot] = true;
+        return limits;
+    }
+
+    private void store(long deviceId, DeviceLimits limits) {
+        long stamp = lock.writeLock();
+        try {
+            long expiry = limits == MISSING ? System.nanoTime() + missingTtl.toNanos() : 0;
+            int slot = find(deviceId);
+            if (slot >= 0) {
+                values[slot] = limits;
+                missingUntil[slot] = expiry;
+                return;
+            }
+            if (size >= capacity) {
+                evictOne();
+            }
+            slot = index(deviceId);
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = deviceId;
+            values[slot] = limits;
+            missingUntil[slot] = expiry;
+            referenced[slot] = false;
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Probes for a key; safe to call under an optimistic read because it never loops forever on
+     * a table that always keeps at least half of its slots empty.
+     */
+    private int find(long deviceId) {
+        int slot = index(deviceId);
+        for (int probes = 0; probes <= mask; probes++) {
+            if (values[slot] == null) {
+                return -1;
+            }
+            if (keys[slot] == deviceId) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void evictOne() {
+        while (true) {
+            int slot = clockHand;
+            clockHand = (clockHand + 1) & mask;
+            if (values[slot] == null) {
+                continue;
+            }
+            if (referenced[slot]) {
+                referenced[slot] = false;
+                continue;
+            }
+            delete(slot);
+            evictions.increment();
+            return;
+        }
+    }
+
+    /**
+     * Backward-shift deletion: moves later entries of the probe chain into the hole so lookups
+     * never need tombstones.
+     */
+    private void delete(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (values[next] != null) {
+            int home = index(keys[next]);
+            boolean movable = hole <= next
+                    ? home <= hole || home > next
+                    : home <= hole && home > next;
+            if (movable) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                missingUntil[hole] = missingUntil[next];
+                referenced[hole] = referenced[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[hole] = null;
+        referenced[hole] = false;
+        size--;
+    }
+
+    private int index(long deviceId) {
+        long hash = deviceId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    public record DeviceLimits(double maxConsumption, Long userId) {
+    }
+}
@@ -0,0 +1,60 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.DeviceStateEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tells every replica about device changes that arrive at only one of them, such as sync events
+ * from the shared sync queue or deletes and trace switches through the REST gateway.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceStateBroadcaster {
+
+    public static final String DEVICE_CREATED = "DEVICE_CREATED";
+    public static final String DEVICE_DELETED = "DEVICE_DELETED";
+    public static final String DEVICE_TRACED = "DEVICE_TRACED";
+    public static final String DEVICE_UNTRACED = "DEVICE_UNTRACED";
+
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${rabbitmq.exchange.device-state}")
+    private String deviceStateExchange;
+
+    public void deviceCreated(Long deviceId, Double maxConsumption, Long userId) {
+        send(DeviceStateEvent.builder()
+                .eventType(DEVICE_CREATED)
+                .deviceId(deviceId)
+                .maxConsumption(maxConsumption)
+                .userId(userId)
+                .build());
+    }
+
+    public void deviceDeleted(Long deviceId) {
+        send(DeviceStateEvent.builder()
+                .eventType(DEVICE_DELETED)
+                .deviceId(deviceId)
+                .build());
+    }
+
+    public void deviceTraced(Long deviceId, boolean traced) {
+        send(DeviceStateEvent.builder()
+                .eventType(traced ? DEVICE_TRACED : DEVICE_UNTRACED)
+                .deviceId(deviceId)
+                .build());
+    }
+
+    private void send(DeviceStateEvent event) {
+        try {
+            rabbitTemplate.convertAndSend(deviceStateExchange, "", event);
+        } catch (Exception e) {
+            log.error("Failed to broadcast {} for device {}: {}", event.getEventType(), event.getDeviceId(),
+                    e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.energy.monitoring.service;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.function.IntConsumer;
+
+/**
+ * Fixed-layout, off-heap table of per-device ingest state, keyed by {@code long} device id.
+ * <p>
+ * All entries live in one {@link MemorySegment}: a 64-byte header followed by 64-byte slots
+ * found by linear probing, with backward-shift deletion so there are no tombstones. A slot holds
+ * the device's current hour, the persisted and pending totals of that hour in milliwatt-hours,
+ * the time it was last seen and its alert state, so a shard with hundreds of thousands of devices
+ * keeps no per-device objects on the heap.
+ * <pre>
+ * slot: deviceId | hour | persisted | pending | lastSeen | alertHour | lastNotifiedAt | alertState | flags
+ *       8          8      8           8         8          8           8                4            4
+ * </pre>
+ * The table can be written to a memory-mapped file with {@link #snapshot} and read back with
+ * {@link #restore}, which is a straight copy of the segment. Not thread-safe: each table is owned
+ * by one ingest pipeline shard.
+ */
+final class DeviceStateTable implements AutoCloseable {
+
+    private static final long MAGIC = 0x4445565354415445L; // "DEVSTATE"
+    private static final int VERSION = 2;
+    private static final long HEADER_BYTES = 64;
+    private static final long SLOT_BYTES = 64;
+
+    private static final long HEADER_MAGIC = 0;
+    private static final long HEADER_VERSION = 8;
+    private static final long HEADER_CAPACITY = 12;
+    private static final long HEADER_SIZE = 16;
+    private static final long HEADER_SHARD = 20;
+    private static final long HEADER_SHARDS = 24;
+    private static final long HEADER_WRITTEN_AT = 32;
+
+    private static final long DEVICE_ID = 0;
+    private static final long HOUR = 8;
+    private static final long PERSISTED = 16;
+    private static final long PENDING = 24;
+    private static final long LAST_SEEN = 32;
+    private static final long ALERT_HOUR = 40;
+    private static final long LAST_NOTIFIED_AT = 48;
+    private static final long ALERT_STATE = 56;
+    private static final long FLAGS = 60;
+
+    private static final int USED = 1;
+    private static final int DIRTY = 2;
+
+    private static final AlertStateTracker.AlertState[] ALERT_STATES = AlertStateTracker.AlertState.values();
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final int capacity;
+    private final int mask;
+    private final int maxSize;
+    private int size;
+
+    /**
+     * Sizes the table for {@code maxDevices} entries, keeping at least half of the slots free.
+     */
+    DeviceStateTable(int maxDevices) {
+        this.maxSize = Math.max(maxDevices, 1);
+        this.capacity = Integer.highestOneBit(maxSize * 2 - 1) << 1;
+        this.mask = capacity - 1;
+        this.arena = Arena.ofShared();
+        this.segment = arena.allocate(HEADER_BYTES + capacity * SLOT_BYTES, SLOT_BYTES);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int maxSize() {
+        return maxSize;
+    }
+
+    long sizeBytes() {
+        return segment.byteSize();
+    }
+
+    /**
+     * Returns the slot of a device, or {@code -1} if it has none.
+     */
+    int find(long deviceId) {
+        int slot = index(deviceId);
+        while (used(slot)) {
+            if (segment.get(ValueLayout.JAVA_LONG, offset(slot) + DEVICE_ID) == deviceId) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Claims a zeroed slot for a device that has none, or returns {@code -1} when the table holds
+     * {@code maxDevices} entries already.
+     */
+    int insert(long deviceId) {
+        if (size >= maxSize) {
+            return -1;
+        }
+        int slot = index(deviceId);
+        while (used(slot)) {
+            slot = (slot + 1) & mask;
+        }
+        long base = offset(slot);
+        segment.asSlice(base, SLOT_BYTES).fill((byte) 0);
+        segment.set(ValueLayout.JAVA_LONG, base + DEVICE_ID, deviceId);
+        segment.set(ValueLayout.JAVA_LONG, base + HOUR, AlertStateTracker.NO_HOUR);
+        segment.set(ValueLayout.JAVA_LONG, base + ALERT_HOUR, AlertStateTracker.NO_HOUR);
+        segment.set(ValueLayout.JAVA_INT, base + FLAGS, USED);
+        size++;
+        return slot;
+    }
+
+    /**
+     * Calls {@code action} with every used slot. The action must not insert or remove devices.
+     */
+    void forEachSlot(IntConsumer action) {
+        for (int slot = 0; slot < capacity; slot++) {
+            if (used(slot)) {
+                action.accept(slot);
+            }
+        }
+    }
+
+    void remove(long deviceId) {
+        int slot = find(deviceId);
+        if (slot < 0) {
+            return;
+        }
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (used(next)) {
+            int home = index(segment.get(ValueLayout.JAVA_LONG, offset(next) + DEVICE_ID));
+            boolean movable = hole <= next
+                    ? home <= hole || home > next
+                    : home <= hole && home > next;
+            if (movable) {
+                MemorySegment.copy(segment, offset(next), segment, offset(hole), SLOT_BYTES);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        segment.set(ValueLayout.JAVA_INT, offset(hole) + FLAGS, 0);
+        size--;
+    }
+
+    long deviceId(int slot) {
+        return segment.get(ValueLayout.JAVA_LONG, offset(slot) + DEVICE_ID);
+    }
+
+    long hour(int slot) {
+        return segment.get(ValueLayout.JAVA_LONG, offset(slot) + HOUR);
+    }
+
+    void hour(int slot, long hour) {
+        segment.set(ValueLayout.JAVA_LONG, offset(slot) + HOUR, hour);
+    }
+
+    long persisted(int slot) {
+        return segment.get(ValueLayout.JAVA_LONG, offset(slot) + PERSISTED);
+    }
+
+    void persisted(int slot, long persisted) {
+        segment.set(ValueLayout.JAVA_LONG, offset(slot) + PERSISTED, persisted);
+    }
+
+    long pending(int slot) {
+        return segment.get(ValueLayout.JAVA_LONG, offset(slot) + PENDING);
+    }
+
+    void pending(int slot, long pending) {
+        segment.set(ValueLayout.JAVA_LONG, offset(slot) + PENDING, pending);
+    }
+
+    long lastSeen(int slot) {
+        return segment.get(ValueLayout.JAVA_LONG, offset(slot) + LAST_SEEN);
+    }
+
+    void lastSeen(int slot, long lastSeen) {
+        segment.set(ValueLayout.JAVA_LONG, offset(slot) + LAST_SEEN, lastSeen);
+    }
+
+    boolean dirty(int slot) {
+        return (segment.get(ValueLayout.JAVA_INT, offset(slot) + FLAGS) & DIRTY) != 0;
+    }
+
+    void dirty(int slot, boolean dirty) {
+        long base = offset(slot);
+        int flags = segment.get(ValueLayout.JAVA_INT, base + FLAGS);
+        segment.set(ValueLayout.JAVA_INT, base + FLAGS, dirty ? flags | DIRTY : flags & ~DIRTY);
+    }
+
+    /**
+     * Points {@code cursor} at a slot, so the alert state machine can run on it in place.
+     */
+    AlertCursor alertSlot(AlertCursor cursor, int slot) {
+        cursor.base = offset(slot);
+        return cursor;
+    }
+
+    /**
+     * Writes the table to {@code file} through a memory-mapped temporary file that is forced to
+     * disk and then moved into place, so a crash never leaves a half-written snapshot behind.
+     */
+    void snapshot(Path file, int shard, int shards) throws IOException {
+        segment.set(ValueLayout.JAVA_LONG, HEADER_MAGIC, MAGIC);
+        segment.set(ValueLayout.JAVA_INT, HEADER_VERSION, VERSION);
+        segment.set(ValueLayout.JAVA_INT, HEADER_CAPACITY, capacity);
+        segment.set(ValueLayout.JAVA_INT, HEADER_SIZE, size);
+        segment.set(ValueLayout.JAVA_INT, HEADER_SHARD, shard);
+        segment.set(ValueLayout.JAVA_INT, HEADER_SHARDS, shards);
+        segment.set(ValueLayout.JAVA_LONG, HEADER_WRITTEN_AT, System.currentTimeMillis());
+
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Arena mapping = Arena.ofConfined()) {
+            MemorySegment mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segment.byteSize(), mapping);
+            MemorySegment.copy(segment, 0, mapped, 0, segment.byteSize());
+            mapped.force();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a snapshot written by {@link #snapshot} into this empty table and deletes the file, so
+     * it is never restored twice. Returns {@code false}, leaving the table empty, when the file is
+     * missing, older than {@code maxAge} or was written with a different layout or sharding.
+     */
+    boolean restore(Path file, int shard, int shards, Duration maxAge) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             Arena mapping = Arena.ofConfined()) {
+            if (channel.size() != segment.byteSize()) {
+                return false;
+            }
+            MemorySegment mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), mapping);
+            long age = System.currentTimeMillis() - mapped.get(ValueLayout.JAVA_LONG, HEADER_WRITTEN_AT);
+            if (mapped.get(ValueLayout.JAVA_LONG, HEADER_MAGIC) != MAGIC
+                    || mapped.get(ValueLayout.JAVA_INT, HEADER_VERSION) != VERSION
+                    || mapped.get(ValueLayout.JAVA_INT, HEADER_CAPACITY) != capacity
+                    || mapped.get(ValueLayout.JAVA_INT, HEADER_SHARD) != shard
+                    || mapped.get(ValueLayout.JAVA_INT, HEADER_SHARDS) != shards
+                    || age < 0 || age > maxAge.toMillis()) {
+                return false;
+            }
+            MemorySegment.copy(mapped, 0, segment, 0, segment.byteSize());
+            size = segment.get(ValueLayout.JAVA_INT, HEADER_SIZE);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    private boolean used(int slot) {
+        return (segment.get(ValueLayout.JAVA_INT, offset(slot) + FLAGS) & USED) != 0;
+    }
+
+    private static long offset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private int index(long deviceId) {
+        long hash = deviceId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Reusable view of one slot's alert fields.
+     */
+    final class AlertCursor implements AlertStateTracker.AlertSlot {
+
+        private long base;
+
+        @Override
+        public AlertStateTracker.AlertState getState() {
+            return ALERT_STATES[segment.get(ValueLayout.JAVA_INT, base + ALERT_STATE)];
+        }
+
+        @Override
+        public void setState(AlertStateTracker.AlertState state) {
+            segment.set(ValueLayout.JAVA_INT, base + ALERT_STATE, state.ordinal());
+        }
+
+        @Override
+        public long getHour() {
+            return segment.get(ValueLayout.JAVA_LONG, base + ALERT_HOUR);
+        }
+
+        @Override
+        public void setHour(long hour) {
+            segment.set(ValueLayout.JAVA_LONG, base + ALERT_HOUR, hour);
+        }
+
+        @Override
+        public long getLastNotifiedAt() {
+            return segment.get(ValueLayout.JAVA_LONG, base + LAST_NOTIFIED_AT);
+        }
+
+        @Override
+        public void setLastNotifiedAt(long lastNotifiedAt) {
+            segment.set(ValueLayout.JAVA_LONG, base + LAST_NOTIFIED_AT, lastNotifiedAt);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.LatenessStatsDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-device event-time watermarks, bounded by processing time.
+ * <p>
+ * The watermark of a device trails the newest timestamp it has sent by
+ * {@code monitoring.watermark.allowed-lateness}. An hour whose end is at or behind the watermark
+ * is closed: readings for it are late and go through the corrections path, which fixes the stored
+ * total without touching the alert state. An hour that ended more than
+ * {@code monitoring.watermark.max-processing-delay} before the wall clock is closed as well, so a
+ * backlog that a device replays in order after an outage is stored as corrections instead of
+ * raising alerts for hours long past.
+ * <p>
+ * Device timestamps carry no zone; they are taken as local times in
+ * {@code monitoring.watermark.device-zone}, and the wall clock is read in that zone before the
+ * two are compared. If the devices' clocks are in another zone, every reading would look hours
+ * old, so the processing-time bound is off unless {@code max-processing-delay} is set.
+ */
+@Component
+@Slf4j
+public class EventTimeWatermarks {
+
+    private static final long SECONDS_PER_HOUR = 3600;
+
+    private static final long[] LATENESS_BOUNDS = {0, 60, 600, 3600, 6 * 3600, 24 * 3600};
+    private static final String[] LATENESS_LABELS = {"in-order", "<=1m", "<=10m", "<=1h", "<=6h", "<=24h", ">24h"};
+
+    @Value("${monitoring.watermark.allowed-lateness:PT10M}")
+    private Duration allowedLateness;
+
+    @Value("${monitoring.watermark.max-processing-delay:PT0S}")
+    private Duration maxProcessingDelay;
+
+    @Value("${monitoring.watermark.device-zone:UTC}")
+    private ZoneId deviceZone;
+
+    private final Map<Long, AtomicLong> newestByDevice = new ConcurrentHashMap<>();
+    private final LongAdder onTime = new LongAdder();
+    private final LongAdder corrections = new LongAdder();
+    private final LongAdder staleCorrections = new LongAdder();
+    private final LongAdder[] lateness = new LongAdder[LATENESS_LABELS.length];
+
+    {
+        for (int i = 0; i < lateness.length; i++) {
+            lateness[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Advances the watermark of a device with a reading and tells whether the reading's hour was
+     * already closed, by the device's own newer readings or by the wall clock.
+     *
+     * @return {@code true} if the reading is late and must be handled as a correction
+     */
+    public boolean isLate(Long deviceId, LocalDateTime timestamp) {
+        long second = timestamp.toEpochSecond(ZoneOffset.UTC);
+        long previous = newestByDevice.computeIfAbsent(deviceId, id -> new AtomicLong(Long.MIN_VALUE))
+                .getAndAccumulate(second, Math::max);
+
+        long behind = previous == Long.MIN_VALUE ? 0 : previous - second;
+        lateness[latenessBucket(behind)].increment();
+
+        long watermark = Math.max(previous, second) - allowedLateness.toSeconds();
+        long hourEnd = Math.floorDiv(second, SECONDS_PER_HOUR) * SECONDS_PER_HOUR + SECONDS_PER_HOUR;
+        if (hourEnd <= watermark) {
+            corrections.increment();
+            log.debug("Late reading of device {} at {} ({}s behind its newest reading)", deviceId, timestamp, behind);
+            return true;
+        }
+        if (!maxProcessingDelay.isZero() && hourEnd <= processingWatermark()) {
+            corrections.increment();
+            staleCorrections.increment();
+            log.debug("Stale reading of device {} at {} (hour ended more than {} ago)",
+                    deviceId, timestamp, maxProcessingDelay);
+            return true;
+        }
+        onTime.increment();
+        return false;
+    }
+
+    /**
+     * The wall clock in the devices' zone, on the same zone-less scale as their timestamps, less
+     * {@code max-processing-delay}.
+     */
+    private long processingWatermark() {
+        return LocalDateTime.now(deviceZone).toEpochSecond(ZoneOffset.UTC) - maxProcessingDelay.toSeconds();
+    }
+
+    public void evictDevice(Long deviceId) {
+        newestByDevice.remove(deviceId);
+    }
+
+    public LatenessStatsDTO getStats() {
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < LATENESS_LABELS.length; i++) {
+            histogram.put(LATENESS_LABELS[i], lateness[i].sum());
+        }
+        return LatenessStatsDTO.builder()
+                .allowedLatenessSeconds(allowedLateness.toSeconds())
+                .trackedDevices(newestByDevice.size())
+                .onTime(onTime.sum())
+                .corrections(corrections.sum())
+                .staleCorrections(staleCorrections.sum())
+                .latenessHistogram(histogram)
+                .build();
+    }
+
+    private static int latenessBucket(long behind) {
+        for (int i = 0; i < LATENESS_BOUNDS.length; i++) {
+            if (behind <= LATENESS_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return LATENESS_BOUNDS.length;
+    }
+}
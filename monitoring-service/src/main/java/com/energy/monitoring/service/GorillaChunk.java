@@ -0,0 +1,213 @@
+package com.energy.monitoring.service;
+
+import java.util.Arrays;
+
+/**
+ * Append-only block of (timestamp, value) points compressed as described in Facebook's Gorilla
+ * paper: timestamps as delta-of-deltas with variable-length prefixes, values as the XOR with the
+ * previous value, storing only the meaningful bits. Regular readings with slowly changing values
+ * take a couple of bytes per point instead of sixteen.
+ * <p>
+ * Timestamps are in seconds and must not decrease. Not thread-safe.
+ */
+final class GorillaChunk {
+
+    private final long day;
+    private long[] words = new long[8];
+    private int bitLength;
+    private int count;
+
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private long lastDelta;
+    private long lastValueBits;
+    private int lastLeading = -1;
+    private int lastTrailing;
+
+    GorillaChunk(long day) {
+        this.day = day;
+    }
+
+    long day() {
+        return day;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    int sizeBytes() {
+        return (bitLength + 7) >>> 3;
+    }
+
+    int capacityBytes() {
+        return words.length * Long.BYTES;
+    }
+
+    void append(long timestamp, double value) {
+        long valueBits = Double.doubleToRawLongBits(value);
+
+        if (count == 0) {
+            firstTimestamp = timestamp;
+            lastTimestamp = timestamp;
+            writeBits(valueBits, 64);
+            lastValueBits = valueBits;
+            count = 1;
+            return;
+        }
+
+        long delta = timestamp - lastTimestamp;
+        long deltaOfDelta = delta - lastDelta;
+        if (deltaOfDelta == 0) {
+            writeBits(0b0, 1);
+        } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+            writeBits(0b10, 2);
+            writeBits(deltaOfDelta + 63, 7);
+        } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+            writeBits(0b110, 3);
+            writeBits(deltaOfDelta + 255, 9);
+        } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+            writeBits(0b1110, 4);
+            writeBits(deltaOfDelta + 2047, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(deltaOfDelta, 64);
+        }
+        lastDelta = delta;
+        lastTimestamp = timestamp;
+
+        long xor = valueBits ^ lastValueBits;
+        if (xor == 0) {
+            writeBits(0b0, 1);
+        } else {
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+                writeBits(0b10, 2);
+                writeBits(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+            } else {
+                int significant = 64 - leading - trailing;
+                writeBits(0b11, 2);
+                writeBits(leading, 5);
+                writeBits(significant - 1, 6);
+                writeBits(xor >>> trailing, significant);
+                lastLeading = leading;
+                lastTrailing = trailing;
+            }
+        }
+        lastValueBits = valueBits;
+        count++;
+    }
+
+    /**
+     * Shrinks the backing array once no more points will be appended.
+     */
+    void seal() {
+        words = Arrays.copyOf(words, (bitLength + 63) >>> 6);
+    }
+
+    /**
+     * Decodes the points with {@code from <= timestamp < to} in order.
+     */
+    void forEach(long from, long to, PointConsumer consumer) {
+        if (count == 0 || lastTimestamp < from || firstTimestamp >= to) {
+            return;
+        }
+
+        Reader reader = new Reader();
+        long timestamp = firstTimestamp;
+        long delta = 0;
+        long valueBits = reader.read(64);
+        int leading = 0;
+        int trailing = 0;
+
+        for (int i = 0; ; i++) {
+            if (timestamp >= to) {
+                return;
+            }
+            if (timestamp >= from) {
+                consumer.accept(timestamp, Double.longBitsToDouble(valueBits));
+            }
+            if (i + 1 == count) {
+                return;
+            }
+
+            long deltaOfDelta;
+            if (reader.read(1) == 0) {
+                deltaOfDelta = 0;
+            } else if (reader.read(1) == 0) {
+                deltaOfDelta = reader.read(7) - 63;
+            } else if (reader.read(1) == 0) {
+                deltaOfDelta = reader.read(9) - 255;
+            } else if (reader.read(1) == 0) {
+                deltaOfDelta = reader.read(12) - 2047;
+            } else {
+                deltaOfDelta = reader.read(64);
+            }
+            delta += deltaOfDelta;
+            timestamp += delta;
+
+            if (reader.read(1) == 1) {
+                if (reader.read(1) == 1) {
+                    leading = (int) reader.read(5);
+                    int significant = (int) reader.read(6) + 1;
+                    trailing = 64 - leading - significant;
+                }
+                valueBits ^= reader.read(64 - leading - trailing) << trailing;
+            }
+        }
+    }
+
+    private void writeBits(long value, int bits) {
+        if (bits == 0) {
+            return;
+        }
+        if (bits < 64) {
+            value &= (1L << bits) - 1;
+        }
+        int end = bitLength + bits;
+        if (((end + 63) >>> 6) > words.length) {
+            words = Arrays.copyOf(words, Math.max(words.length * 2, (end + 63) >>> 6));
+        }
+
+        int word = bitLength >>> 6;
+        int free = 64 - (bitLength & 63);
+        if (bits <= free) {
+            words[word] |= value << (free - bits);
+        } else {
+            words[word] |= value >>> (bits - free);
+            words[word + 1] |= value << (64 - (bits - free));
+        }
+        bitLength = end;
+    }
+
+    @FunctionalInterface
+    interface PointConsumer {
+        void accept(long timestamp, double value);
+    }
+
+    private final class Reader {
+        private int position;
+
+        long read(int bits) {
+            if (bits == 0) {
+                return 0;
+            }
+            int word = position >>> 6;
+            int offset = position & 63;
+            int available = 64 - offset;
+            long result;
+            if (bits <= available) {
+                result = words[word] >>> (available - bits);
+            } else {
+                result = (words[word] << (bits - available)) | (words[word + 1] >>> (64 - (bits - available)));
+            }
+            position += bits;
+            return bits == 64 ? result : result & ((1L << bits) - 1);
+        }
+    }
+}
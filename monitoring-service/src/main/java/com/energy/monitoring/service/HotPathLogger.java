@@ -0,0 +1,110 @@
+package com.energy.monitoring.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which ingest messages get per-message log lines, so logging cost stays flat as the
+ * message rate grows.
+ * <p>
+ * A device's message is logged in detail when the device is traced (switchable at runtime), or
+ * when it is every {@code sample-every}th message of that device and the token bucket still has
+ * a token for it. Everything else is only counted and reported in one summary line per
+ * {@code summary-interval-ms}. Per-device counters are striped over a fixed array, so memory does
+ * not grow with the fleet.
+ */
+@Component
+@Slf4j
+public class HotPathLogger {
+
+    private static final int COUNTER_STRIPES = 4096;
+
+    @Value("${monitoring.hot-path-log.sample-every:1000}")
+    private long sampleEvery;
+
+    @Value("${monitoring.hot-path-log.max-lines-per-second:5}")
+    private double maxLinesPerSecond;
+
+    @Value("${monitoring.hot-path-log.summary-interval-ms:10000}")
+    private long summaryIntervalMs;
+
+    private final Set<Long> tracedDevices = ConcurrentHashMap.newKeySet();
+    private final AtomicLongArray deviceCounters = new AtomicLongArray(COUNTER_STRIPES);
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder detailed = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * @return {@code true} if per-message detail should be logged for this message of the device
+     */
+    public boolean isDetailEnabled(Long deviceId) {
+        if (deviceId != null && !tracedDevices.isEmpty() && tracedDevices.contains(deviceId)) {
+            detailed.increment();
+            return true;
+        }
+        if (sampleEvery <= 0 || deviceId == null
+                || deviceCounters.incrementAndGet(stripe(deviceId)) % sampleEvery != 0
+                || !tryAcquire()) {
+            suppressed.increment();
+            return false;
+        }
+        detailed.increment();
+        return true;
+    }
+
+    public void recordProcessed(int count) {
+        processed.add(count);
+    }
+
+    public void trace(Long deviceId) {
+        tracedDevices.add(deviceId);
+        log.info("Per-message logging enabled for device {}", deviceId);
+    }
+
+    public void untrace(Long deviceId) {
+        if (tracedDevices.remove(deviceId)) {
+            log.info("Per-message logging disabled for device {}", deviceId);
+        }
+    }
+
+    public Set<Long> getTracedDevices() {
+        return Set.copyOf(tracedDevices);
+    }
+
+    @Scheduled(fixedRateString = "${monitoring.hot-path-log.summary-interval-ms:10000}")
+    public void logSummary() {
+        long count = processed.sumThenReset();
+        long detail = detailed.sumThenReset();
+        long quiet = suppressed.sumThenReset();
+        if (count > 0) {
+            log.info("{} measurements processed in last {}s ({} logged in detail, {} not logged)",
+                    count, summaryIntervalMs / 1000, detail, quiet);
+        }
+    }
+
+    private synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(maxLinesPerSecond, tokens + (now - lastRefill) / 1e9 * maxLinesPerSecond);
+        lastRefill = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    private static int stripe(long deviceId) {
+        long hash = deviceId * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 52);
+    }
+}
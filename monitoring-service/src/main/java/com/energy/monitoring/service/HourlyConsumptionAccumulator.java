@@ -0,0 +1,369 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.HourlyDelta;
+import com.energy.monitoring.entity.EnergyUnits;
+import com.energy.monitoring.repository.EnergyConsumptionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for hourly consumption totals.
+ * <p>
+ * Readings are absorbed into one in-memory bucket per (device, hour). A bucket reads its
+ * persisted total once, when it is first touched, and afterwards only accumulates deltas.
+ * Dirty buckets are written to {@code energy_consumption} on a fixed interval, when too many
+ * buckets are dirty, when a device moves on to a new hour and on shutdown, so database writes
+ * scale with the number of active device-hours instead of the number of messages. A device that
+ * stops reporting never moves on, so a bucket left untouched for {@code idle-close-after} is closed
+ * by the next scheduled flush and the device's current hour forgotten.
+ * <p>
+ * Amounts are fixed-point milliwatt-hours (see {@link EnergyUnits}), added to a bucket with
+ * atomic {@code getAndAdd}s, so listener threads never block each other on a bucket and totals
+ * stay exact however many readings they sum. The flush lock only serializes flushes.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HourlyConsumptionAccumulator {
+
+    private final EnergyConsumptionRepository consumptionRepository;
+    private final IngestMetrics ingestMetrics;
+    private final ConsumptionResponseCache responseCache;
+
+    @Value("${monitoring.accumulator.max-dirty-buckets:1000}")
+    private int maxDirtyBuckets;
+
+    @Value("${monitoring.accumulator.idle-close-after:PT1H}")
+    private Duration idleCloseAfter;
+
+    private final Map<BucketKey, HourlyBucket> buckets = new ConcurrentHashMap<>();
+    private final Map<Long, LocalDateTime> currentHourByDevice = new ConcurrentHashMap<>();
+    private final AtomicInteger dirtyBuckets = new AtomicInteger();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * Adds a reading to the bucket of its hour and returns the running total of that hour, both
+     * in milliwatt-hours.
+     */
+    public long add(Long deviceId, LocalDateTime hour, long amount) {
+        return accumulate(deviceId, hour, amount, true);
+    }
+
+    /**
+     * Records a delta that the caller already wrote to the database and returns the running
+     * total of that hour. A bucket that has to be loaded for this already contains the delta.
+     */
+    public long addPersisted(Long deviceId, LocalDateTime hour, long amount) {
+        return accumulate(deviceId, hour, amount, false);
+    }
+
+    private long accumulate(Long deviceId, LocalDateTime hour, long amount, boolean pending) {
+        BucketKey key = new BucketKey(deviceId, hour);
+        LocalDateTime previousHour = advanceCurrentHour(deviceId, hour);
+        boolean earlierHour = previousHour != null && hour.isBefore(previousHour);
+
+        long total;
+        while (true) {
+            HourlyBucket bucket = buckets.get(key);
+            boolean loaded = false;
+            if (bucket == null) {
+                HourlyBucket fresh = loadBucket(key);
+                HourlyBucket existing = buckets.putIfAbsent(key, fresh);
+                loaded = existing == null;
+                bucket = loaded ? fresh : existing;
+            }
+
+            if (pending) {
+                total = bucket.addPending(amount);
+                if (bucket.markDirty()) {
+                    dirtyBuckets.incrementAndGet();
+                }
+            } else {
+                total = loaded ? bucket.total : bucket.addPersisted(amount);
+            }
+            bucket.lastTouched = System.currentTimeMillis();
+            if (earlierHour) {
+                bucket.closed = true;
+            }
+            if (!bucket.retired || !pending) {
+                break;
+            }
+            // A flush retired the bucket after we picked it up. Whatever it did not write is
+            // taken back (possibly along with other threads' amounts) and added to a fresh bucket.
+            amount = takePending(bucket);
+            if (amount == 0) {
+                break;
+            }
+        }
+
+        if (previousHour != null && hour.isAfter(previousHour)) {
+            closeBucket(new BucketKey(deviceId, previousHour));
+        } else if (dirtyBuckets.get() >= maxDirtyBuckets && flushLock.tryLock()) {
+            try {
+                flushBuckets(buckets.keySet());
+            } finally {
+                flushLock.unlock();
+            }
+        }
+
+        return total;
+    }
+
+    @Scheduled(fixedDelayString = "${monitoring.accumulator.flush-interval-ms:5000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            closeIdleBuckets();
+            flushBuckets(buckets.keySet());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Flushing {} dirty hourly buckets before shutdown", dirtyBuckets.get());
+        flush();
+    }
+
+    /**
+     * Drops every bucket of a device without writing it, used when the device itself is deleted.
+     */
+    public void evictDevice(Long deviceId) {
+        flushLock.lock();
+        try {
+            buckets.entrySet().removeIf(entry -> {
+                if (!entry.getKey().deviceId().equals(deviceId)) {
+                    return false;
+                }
+                entry.getValue().retired = true;
+                takePending(entry.getValue());
+                return true;
+            });
+            currentHourByDevice.remove(deviceId);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int getDirtyBucketCount() {
+        return dirtyBuckets.get();
+    }
+
+    int getBucketCount() {
+        return buckets.size();
+    }
+
+    /**
+     * Must be called with {@link #flushLock} held. Marks the buckets of devices that went silent
+     * as closed, so the flush that follows writes and retires them.
+     */
+    private void closeIdleBuckets() {
+        if (idleCloseAfter.isZero()) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - idleCloseAfter.toMillis();
+        buckets.forEach((key, bucket) -> {
+            if (!bucket.closed && bucket.lastTouched < cutoff) {
+                log.debug("No reading of device {} for {}, closing its hour {}",
+                        key.deviceId(), idleCloseAfter, key.hour());
+                bucket.closed = true;
+                currentHourByDevice.remove(key.deviceId(), key.hour());
+            }
+        });
+    }
+
+
+    private LocalDateTime advanceCurrentHour(Long deviceId, LocalDateTime hour) {
+        LocalDateTime previous = currentHourByDevice.get(deviceId);
+        if (previous == null || hour.isAfter(previous)) {
+            currentHourByDevice.put(deviceId, hour);
+        }
+        return previous;
+    }
+
+    private void closeBucket(BucketKey key) {
+        HourlyBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            return;
+        }
+        bucket.closed = true;
+
+        log.debug("Hour {} closed for device {}, flushing its bucket", key.hour(), key.deviceId());
+        flushLock.lock();
+        try {
+            flushBuckets(List.of(key));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with {@link #flushLock} held. Closed buckets are retired (removed from the
+     * map) before their last amounts are taken, so nothing added to them afterwards is lost.
+     */
+    private void flushBuckets(Collection<BucketKey> keys) {
+        List<PendingWrite> writes = new ArrayList<>();
+        for (BucketKey key : keys) {
+            HourlyBucket bucket = buckets.get(key);
+            if (bucket == null) {
+                continue;
+            }
+            boolean retire = bucket.closed;
+            if (retire) {
+                bucket.retired = true;
+                buckets.remove(key, bucket);
+            } else if (!bucket.dirty) {
+                continue;
+            }
+            long delta = takePending(bucket);
+            if (delta != 0) {
+                writes.add(new PendingWrite(key, bucket, delta, retire));
+            }
+        }
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<HourlyDelta> deltas = writes.stream()
+                .map(write -> new HourlyDelta(write.key().deviceId(), write.key().hour(), write.delta()))
+                .toList();
+        try {
+            consumptionRepository.applyHourlyDeltas(deltas);
+            ingestMetrics.record(IngestMetrics.Stage.DB_WRITE, start);
+            log.debug("Flushed {} hourly buckets", writes.size());
+        } catch (RuntimeException e) {
+            ingestMetrics.error(IngestMetrics.Stage.DB_WRITE);
+            log.error("Failed to flush {} hourly buckets, keeping them for the next attempt: {}",
+                    writes.size(), e.getMessage(), e);
+            writes.forEach(this::restore);
+            return;
+        }
+        responseCache.invalidateClosedDays(deltas);
+    }
+
+    /**
+     * Clears the dirty flag before taking the pending amount; {@link #accumulate} adds before it
+     * sets the flag, so an amount is always either taken here or flagged for the next flush.
+     */
+    private long takePending(HourlyBucket bucket) {
+        if (bucket.clearDirty()) {
+            dirtyBuckets.decrementAndGet();
+        }
+        return bucket.takePending();
+    }
+
+    private void restore(PendingWrite write) {
+        HourlyBucket bucket = write.bucket();
+        if (write.retired()) {
+            // The retired bucket's total still counts the failed delta; carry it over unless a
+            // reading already started a new bucket, whose total was loaded without the delta
+            HourlyBucket copy = new HourlyBucket();
+            copy.total = bucket.total - write.delta();
+            copy.closed = true;
+            HourlyBucket existing = buckets.putIfAbsent(write.key(), copy);
+            bucket = existing != null ? existing : copy;
+            bucket.addPending(write.delta());
+        } else {
+            bucket.restorePending(write.delta());
+        }
+        if (bucket.markDirty()) {
+            dirtyBuckets.incrementAndGet();
+        }
+    }
+
+    private HourlyBucket loadBucket(BucketKey key) {
+        long start = System.nanoTime();
+        HourlyBucket bucket = new HourlyBucket();
+        bucket.total = consumptionRepository
+                .findByDeviceIdAndTimestamp(key.deviceId(), key.hour())
+                .map(consumption -> EnergyUnits.toMilliwattHours(consumption.getTotalConsumption()))
+                .orElse(0L);
+        ingestMetrics.record(IngestMetrics.Stage.DB_READ, start);
+        return bucket;
+    }
+
+    private record BucketKey(Long deviceId, LocalDateTime hour) {
+    }
+
+    private record PendingWrite(BucketKey key, HourlyBucket bucket, long delta, boolean retired) {
+    }
+
+    /**
+     * Running total of one (device, hour) in milliwatt-hours: {@code total} is the persisted total
+     * plus every amount added since it was loaded, {@code pending} the part not yet written.
+     */
+    private static final class HourlyBucket {
+
+        private static final VarHandle TOTAL;
+        private static final VarHandle PENDING;
+        private static final VarHandle DIRTY;
+
+        static {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                TOTAL = lookup.findVarHandle(HourlyBucket.class, "total", long.class);
+                PENDING = lookup.findVarHandle(HourlyBucket.class, "pending", long.class);
+                DIRTY = lookup.findVarHandle(HourlyBucket.class, "dirty", boolean.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private volatile long total;
+        private volatile long pending;
+        private volatile boolean dirty;
+        private volatile boolean closed;
+        private volatile boolean retired;
+        /** Wall-clock millis of the last amount added, for closing the buckets of silent devices. */
+        private volatile long lastTouched = System.currentTimeMillis();
+
+        long addPending(long amount) {
+            PENDING.getAndAdd(this, amount);
+            return (long) TOTAL.getAndAdd(this, amount) + amount;
+        }
+
+        long addPersisted(long amount) {
+            return (long) TOTAL.getAndAdd(this, amount) + amount;
+        }
+
+        void restorePending(long amount) {
+            PENDING.getAndAdd(this, amount);
+        }
+
+        long takePending() {
+            return (long) PENDING.getAndSet(this, 0L);
+        }
+
+        /**
+         * @return {@code true} if this call turned the flag on
+         */
+        boolean markDirty() {
+            return !dirty && DIRTY.compareAndSet(this, false, true);
+        }
+
+        /**
+         * @return {@code true} if this call turned the flag off
+         */
+        boolean clearDirty() {
+            return dirty && DIRTY.compareAndSet(this, true, false);
+        }
+    }
+}
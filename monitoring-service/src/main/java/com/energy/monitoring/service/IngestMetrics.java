@@ -0,0 +1,100 @@
+package com.energy.monitoring.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micrometer meters of the ingest pipeline. Tags are limited to the pipeline stage or outcome
+ * (plus the common {@code replica} tag), never the device, so the series count stays fixed
+ * however large the fleet gets.
+ */
+@Component
+public class IngestMetrics {
+
+    public enum Stage {
+        DECODE, JOURNAL, DB_READ, DB_WRITE, ALERT_PUBLISH, PROCESS
+    }
+
+    public enum Outcome {
+        ACCEPTED, DUPLICATE, LATE, INVALID
+    }
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<Stage, Counter> stageErrors = new EnumMap<>(Stage.class);
+    private final Map<Outcome, Counter> measurements = new EnumMap<>(Outcome.class);
+    private final Counter alertsPublished;
+    private final DistributionSummary lagSummary;
+    private final AtomicLong lastLagMillis = new AtomicLong();
+
+    public IngestMetrics(MeterRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            String tag = stage.name().toLowerCase(Locale.ROOT);
+            stageTimers.put(stage, Timer.builder("monitoring.ingest.stage")
+                    .description("Time spent in one stage of measurement processing")
+                    .tag("stage", tag)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry));
+            stageErrors.put(stage, Counter.builder("monitoring.ingest.errors")
+                    .description("Failures per ingest stage")
+                    .tag("stage", tag)
+                    .register(registry));
+        }
+        for (Outcome outcome : Outcome.values()) {
+            measurements.put(outcome, Counter.builder("monitoring.ingest.measurements")
+                    .description("Measurements received, by what happened to them")
+                    .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                    .register(registry));
+        }
+        alertsPublished = Counter.builder("monitoring.alerts.published")
+                .description("Overconsumption alerts published")
+                .register(registry);
+        lagSummary = DistributionSummary.builder("monitoring.ingest.lag")
+                .description("Processing time minus measurement timestamp")
+                .baseUnit("seconds")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry);
+        Gauge.builder("monitoring.ingest.lag.last", lastLagMillis, lag -> lag.get() / 1000.0)
+                .description("End-to-end lag of the most recently processed measurement")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    public void record(Stage stage, long startNanos) {
+        stageTimers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void error(Stage stage) {
+        stageErrors.get(stage).increment();
+    }
+
+    public void measurement(Outcome outcome) {
+        measurements.get(outcome).increment();
+    }
+
+    public void alertPublished() {
+        alertsPublished.increment();
+    }
+
+    /**
+     * Records how far behind the wall clock a measurement is when it gets processed.
+     */
+    public void lag(LocalDateTime measuredAt) {
+        long millis = Duration.between(measuredAt, LocalDateTime.now()).toMillis();
+        lastLagMillis.set(millis);
+        lagSummary.record(millis / 1000.0);
+    }
+}
@@ -0,0 +1,1072 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.DeviceMeasurement;
+import com.energy.monitoring.dto.HourlyDelta;
+import com.energy.monitoring.dto.PipelineStageStatsDTO;
+import com.energy.monitoring.dto.PipelineStatsDTO;
+import com.energy.monitoring.entity.EnergyUnits;
+import com.energy.monitoring.repository.EnergyConsumptionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Staged ingest pipeline, enabled with {@code monitoring.ingest.pipeline.enabled=true}.
+ * <pre>
+ * listener threads          shard workers (1 per shard)        alert worker
+ *  decode -> validate --&gt; [ring] aggregate ------------------&gt; [ring] alert
+ *                                  |
+ *                                  +------------------------------&gt; [ring] persist worker
+ * </pre>
+ * Measurements are sharded by device id, so every reading of a device is handled by the same
+ * shard thread, in order. Each shard keeps the running hourly total, last-seen time and alert
+ * state of its devices in an off-heap {@link DeviceStateTable} owned by that thread, so the state
+ * is never locked and costs the garbage collector nothing. Alert publishing and database writes
+ * run on their own threads behind ring buffers, so a slow broker or database does not stall
+ * aggregation until the rings fill up. A full ring makes the stage before it wait, which pushes
+ * back on the RabbitMQ listeners.
+ * <p>
+ * With {@code monitoring.ingest.pipeline.state-table.snapshot-dir} set, each shard writes its
+ * table to a memory-mapped file after its final flush on shutdown and the next start loads it
+ * back, instead of reading every device's current hour from the database again.
+ * <p>
+ * A device silent for {@code state-table.forget-after} is flushed and gives its slot back. While a
+ * shard's table is still full, new devices get their running total on the heap instead and their
+ * limits are checked through {@link AlertPublisher#checkConsumption}, on the shard thread.
+ * <p>
+ * As with the write-behind accumulator, readings are acknowledged once they are in a ring, so
+ * totals not yet written are lost if the process dies. While the database is unreachable the
+ * persist worker keeps the failed deltas and retries them every {@code persist-retry-interval-ms};
+ * its ring then fills up and the shards and listeners wait behind it, so readings stay with the
+ * broker instead of being dropped. A shard counts an hourly total as persisted only once the
+ * persist worker reports it written; until then it stays in flight and still counts towards the
+ * device's alerts. Deltas still unwritten on shutdown go back into the state snapshot, if one is
+ * configured, and are written by the next start.
+ */
+@Component
+@ConditionalOnProperty(name = "monitoring.ingest.pipeline.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class IngestPipeline implements SmartLifecycle {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    /** Returned by a shard's {@code add} for a device that does not fit in its state table. */
+    private static final int OVERFLOW = -2;
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    /** How often a shard whose table is full looks for silent devices to make room. */
+    private static final long FULL_SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final EnergyConsumptionRepository consumptionRepository;
+    private final DeviceLimitCache deviceLimitCache;
+    private final AlertStateTracker alertStateTracker;
+    private final MeasurementDeduplicator deduplicator;
+    private final EventTimeWatermarks watermarks;
+    private final RecentReadingsStore recentReadingsStore;
+    private final ConsumptionBaselines baselines;
+    private final DeviceHeartbeatMonitor heartbeats;
+    private final ConsumptionResponseCache responseCache;
+    private final AlertPublisher alertPublisher;
+    private final HotPathLogger hotPathLogger;
+    private final IngestMetrics ingestMetrics;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${monitoring.ingest.pipeline.shards:4}")
+    private int shardCount;
+
+    @Value("${monitoring.ingest.pipeline.shard-ring-size:4096}")
+    private int shardRingSize;
+
+    @Value("${monitoring.ingest.pipeline.alert-ring-size:4096}")
+    private int alertRingSize;
+
+    @Value("${monitoring.ingest.pipeline.persist-ring-size:16384}")
+    private int persistRingSize;
+
+    @Value("${monitoring.ingest.pipeline.persist-batch-size:500}")
+    private int persistBatchSize;
+
+    @Value("${monitoring.ingest.pipeline.persist-retry-interval-ms:1000}")
+    private long persistRetryIntervalMs;
+
+    @Value("${monitoring.ingest.pipeline.wait-strategy:SLEEPING}")
+    private WaitStrategy waitStrategy;
+
+    @Value("${monitoring.ingest.pipeline.state-table.devices-per-shard:65536}")
+    private int devicesPerShard;
+
+    @Value("${monitoring.ingest.pipeline.state-table.snapshot-dir:}")
+    private String snapshotDir;
+
+    @Value("${monitoring.ingest.pipeline.state-table.snapshot-max-age:PT10M}")
+    private Duration snapshotMaxAge;
+
+    @Value("${monitoring.ingest.pipeline.state-table.forget-after:PT24H}")
+    private Duration forgetAfter;
+
+    @Value("${monitoring.accumulator.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    @Value("${monitoring.accumulator.max-dirty-buckets:1000}")
+    private int maxDirtyBuckets;
+
+    private final Stage decodeStage = new Stage("decode");
+    private final Stage validateStage = new Stage("validate");
+    private final Stage aggregateStage = new Stage("aggregate");
+    private final Stage alertStage = new Stage("alert");
+    private final Stage persistStage = new Stage("persist");
+
+    private DeviceStateTable[] stateTables;
+    private ShardHandler[] shardHandlers;
+    private List<RingBuffer<MeasurementEvent>> shardRings;
+    private RingBuffer<AlertEvent> alertRing;
+    private RingBuffer<PersistEvent> persistRing;
+    private List<Worker<MeasurementEvent>> shardWorkers;
+    private Worker<AlertEvent> alertWorker;
+    private Worker<PersistEvent> persistWorker;
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        stateTables = new DeviceStateTable[shardCount];
+        shardHandlers = new ShardHandler[shardCount];
+        shardRings = new ArrayList<>(shardCount);
+        shardWorkers = new ArrayList<>(shardCount);
+        alertRing = new RingBuffer<>(alertRingSize, AlertEvent::new, waitStrategy);
+        persistRing = new RingBuffer<>(persistRingSize, PersistEvent::new, waitStrategy);
+
+        alertWorker = new Worker<>("ingest-alert", alertRing, new AlertHandler(), alertStage);
+        persistWorker = new Worker<>("ingest-persist", persistRing, new PersistHandler(), persistStage);
+        for (int i = 0; i < shardCount; i++) {
+            shardRings.add(new RingBuffer<>(shardRingSize, MeasurementEvent::new, waitStrategy));
+            stateTables[i] = new DeviceStateTable(devicesPerShard);
+            restoreSnapshot(i);
+            shardHandlers[i] = new ShardHandler(i);
+            shardWorkers.add(new Worker<>("ingest-shard-" + i, shardRings.get(i), shardHandlers[i], aggregateStage));
+        }
+
+        registerMeters();
+        alertWorker.start();
+        persistWorker.start();
+        for (Worker<?> worker : shardWorkers) {
+            worker.start();
+        }
+        running = true;
+        log.info("Ingest pipeline started: {} shards, {} wait strategy, rings {}/{}/{} (shard/alert/persist), "
+                        + "{} MiB of device state per shard",
+                shardCount, waitStrategy, shardRings.get(0).capacity(), alertRing.capacity(), persistRing.capacity(),
+                stateTables[0].sizeBytes() >> 20);
+    }
+
+    /**
+     * Drains the pipeline front to back: the shards flush their totals once their rings are
+     * empty, then the persist and alert workers finish what the shards handed them. Only then
+     * are the state tables, which no worker touches any more, written to their snapshots.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        for (Worker<?> worker : shardWorkers) {
+            worker.stopAndJoin();
+        }
+        persistWorker.stopAndJoin();
+        alertWorker.stopAndJoin();
+        for (ShardHandler handler : shardHandlers) {
+            handler.finish();
+        }
+        for (DeviceStateTable table : stateTables) {
+            table.close();
+        }
+        log.info("Ingest pipeline stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before and stops after the RabbitMQ listener containers, so no message is handed to
+     * a pipeline that is not running.
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 1024;
+    }
+
+    /**
+     * Decodes and validates a message on the calling listener thread and hands it to the shard
+     * of its device, waiting if that shard's ring is full.
+     */
+    public void publish(byte[] body) {
+        if (!running) {
+            throw new IllegalStateException("Ingest pipeline is not running");
+        }
+
+        long start = System.nanoTime();
+        DeviceMeasurement measurement;
+        try {
+            measurement = objectMapper.readValue(body, DeviceMeasurement.class);
+            ingestMetrics.record(IngestMetrics.Stage.DECODE, start);
+            decodeStage.processed(1, System.nanoTime() - start);
+        } catch (Exception e) {
+            ingestMetrics.error(IngestMetrics.Stage.DECODE);
+            decodeStage.errors.increment();
+            log.error("Dropping undecodable device measurement: {}", e.getMessage());
+            return;
+        }
+
+        long validateStart = System.nanoTime();
+        if (measurement.getDeviceId() == null || measurement.getTimestamp() == null
+                || measurement.getMeasurementValue() == null
+                || !Double.isFinite(measurement.getMeasurementValue())) {
+            ingestMetrics.measurement(IngestMetrics.Outcome.INVALID);
+            validateStage.errors.increment();
+            log.warn("Skipping invalid measurement: {}", measurement);
+            return;
+        }
+        validateStage.processed(1, System.nanoTime() - validateStart);
+
+        RingBuffer<MeasurementEvent> ring = shardRings.get(shardOf(measurement.getDeviceId()));
+        long sequence = ring.next();
+        MeasurementEvent event = ring.get(sequence);
+        event.evict = false;
+        event.deviceId = measurement.getDeviceId();
+        event.timestamp = measurement.getTimestamp();
+        event.value = measurement.getMeasurementValue();
+        ring.publish(sequence);
+    }
+
+    /**
+     * Drops the running totals and alert state of a device without writing them. Goes through the
+     * device's shard so it is ordered with the readings already queued there.
+     */
+    public void evictDevice(Long deviceId) {
+        if (!running) {
+            return;
+        }
+        RingBuffer<MeasurementEvent> ring = shardRings.get(shardOf(deviceId));
+        long sequence = ring.next();
+        MeasurementEvent event = ring.get(sequence);
+        event.evict = true;
+        event.deviceId = deviceId;
+        event.timestamp = null;
+        ring.publish(sequence);
+    }
+
+    public PipelineStatsDTO getStats() {
+        return PipelineStatsDTO.builder()
+                .waitStrategy(waitStrategy.name())
+                .shards(shardCount)
+                .trackedDevices(trackedDevices())
+                .stateTableBytes(stateTables[0].sizeBytes() * shardCount)
+                .stages(List.of(
+                        decodeStage.toDTO(0, 0),
+                        validateStage.toDTO(0, 0),
+                        aggregateStage.toDTO(shardBacklog(), shardRings.get(0).capacity() * shardCount),
+                        alertStage.toDTO(alertRing.backlog(), alertRing.capacity()),
+                        persistStage.toDTO(persistRing.backlog(), persistRing.capacity())))
+                .build();
+    }
+
+    /**
+     * Samples the per-stage event counters so the stats report a recent rate.
+     */
+    @Scheduled(fixedRateString = "${monitoring.ingest.pipeline.rate-interval-ms:10000}")
+    public void sampleRates() {
+        long now = System.nanoTime();
+        for (Stage stage : List.of(decodeStage, validateStage, aggregateStage, alertStage, persistStage)) {
+            stage.sampleRate(now);
+        }
+    }
+
+    private long shardBacklog() {
+        long backlog = 0;
+        for (RingBuffer<MeasurementEvent> ring : shardRings) {
+            backlog += ring.backlog();
+        }
+        return backlog;
+    }
+
+    /**
+     * Sum of the shard tables' sizes, read without synchronization, so it may lag slightly.
+     */
+    private long trackedDevices() {
+        long devices = 0;
+        for (DeviceStateTable table : stateTables) {
+            devices += table.size();
+        }
+        return devices;
+    }
+
+    private int shardOf(long deviceId) {
+        long hash = deviceId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(hash ^ (hash >>> 32), (long) shardCount);
+    }
+
+    private void registerMeters() {
+        for (Stage stage : List.of(decodeStage, validateStage, aggregateStage, alertStage, persistStage)) {
+            FunctionCounter.builder("monitoring.ingest.pipeline.events", stage.events, LongAdder::sum)
+                    .description("Events processed by an ingest pipeline stage")
+                    .tag("stage", stage.name)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("monitoring.ingest.pipeline.backlog", this, IngestPipeline::shardBacklog)
+                .description("Events waiting in the ring buffers of a pipeline stage")
+                .tag("stage", aggregateStage.name)
+                .register(meterRegistry);
+        Gauge.builder("monitoring.ingest.pipeline.backlog", this, pipeline -> pipeline.alertRing.backlog())
+                .tag("stage", alertStage.name)
+                .register(meterRegistry);
+        Gauge.builder("monitoring.ingest.pipeline.backlog", this, pipeline -> pipeline.persistRing.backlog())
+                .tag("stage", persistStage.name)
+                .register(meterRegistry);
+    }
+
+    private void restoreSnapshot(int shard) {
+        if (snapshotDir.isBlank()) {
+            return;
+        }
+        Path file = snapshotFile(shard);
+        try {
+            long start = System.nanoTime();
+            if (stateTables[shard].restore(file, shard, shardCount, snapshotMaxAge)) {
+                log.info("Restored {} devices of shard {} from {} in {} ms", stateTables[shard].size(), shard, file,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable state snapshot {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path snapshotFile(int shard) {
+        return Path.of(snapshotDir, "shard-" + shard + ".bin");
+    }
+
+    private void publishAlert(AlertType type, long deviceId, LocalDateTime timestamp, double value,
+                              double projected, DeviceLimitCache.DeviceLimits limits,
+                              ConsumptionBaselines.Anomaly anomaly) {
+        long sequence = alertRing.next();
+        AlertEvent event = alertRing.get(sequence);
+        event.type = type;
+        event.deviceId = deviceId;
+        event.timestamp = timestamp;
+        event.value = value;
+        event.projected = projected;
+        event.limits = limits;
+        event.anomaly = anomaly;
+        alertRing.publish(sequence);
+    }
+
+    /**
+     * @param tracked whether the delta is part of a shard's running total, which then waits for
+     *                the persist worker to report it written
+     */
+    private void publishDelta(long deviceId, LocalDateTime hour, long delta, boolean tracked) {
+        long sequence = persistRing.next();
+        PersistEvent event = persistRing.get(sequence);
+        event.deviceId = deviceId;
+        event.hour = hour;
+        event.delta = delta;
+        event.tracked = tracked;
+        persistRing.publish(sequence);
+    }
+
+    /**
+     * Aggregate stage of one shard. Only ever called from that shard's thread, which is the only
+     * one touching the shard's state table.
+     */
+    private final class ShardHandler implements Handler<MeasurementEvent> {
+
+        private final int shard;
+        private final DeviceStateTable table;
+        private final DeviceStateTable.AlertCursor alertCursor;
+        /** Flushed amounts the persist worker has not reported written yet, per (device, hour). */
+        private final Map<DeviceHour, Long> inFlight = new HashMap<>();
+        private final Queue<WrittenDelta> written = new ConcurrentLinkedQueue<>();
+        private long[] dirty = new long[64];
+        private int dirtyCount;
+        private long lastFlush = System.nanoTime();
+        /** Running totals of devices that found the table full. */
+        private final Map<Long, OverflowTotal> overflow = new HashMap<>();
+        private int processed;
+        private boolean full;
+        private long lastSweep = System.nanoTime();
+
+        ShardHandler(int shard) {
+            this.shard = shard;
+            this.table = stateTables[shard];
+            this.alertCursor = table.new AlertCursor();
+            // totals a previous run could not write came back from its snapshot as pending
+            table.forEachSlot(slot -> {
+                if (table.dirty(slot)) {
+                    markDirty(table.deviceId(slot));
+                }
+            });
+        }
+
+        @Override
+        public void onEvent(MeasurementEvent event) {
+            long deviceId = event.deviceId;
+            if (event.evict) {
+                table.remove(deviceId);
+                overflow.remove(deviceId);
+                return;
+            }
+
+            heartbeats.recordSeen(deviceId);
+            LocalDateTime timestamp = event.timestamp;
+            double value = event.value;
+            boolean detail = hotPathLogger.isDetailEnabled(deviceId);
+            if (detail) {
+                log.info("Received device measurement: deviceId={}, value={}, timestamp={}", deviceId, value, timestamp);
+            }
+            if (deduplicator.isDuplicate(deviceId, timestamp)) {
+                ingestMetrics.measurement(IngestMetrics.Outcome.DUPLICATE);
+                return;
+            }
+            ingestMetrics.lag(timestamp);
+            recentReadingsStore.append(deviceId, timestamp, value);
+
+            LocalDateTime hour = timestamp.truncatedTo(ChronoUnit.HOURS);
+            long amount = EnergyUnits.toMilliwattHours(value);
+            if (watermarks.isLate(deviceId, timestamp)) {
+                publishDelta(deviceId, hour, amount, false);
+                ingestMetrics.measurement(IngestMetrics.Outcome.LATE);
+                return;
+            }
+
+            ConsumptionBaselines.Anomaly anomaly = baselines.observe(deviceId, timestamp, value);
+            int slot = add(deviceId, hour, amount);
+            if (slot >= 0) {
+                double total = EnergyUnits.toKilowattHours(total(slot));
+                if (detail) {
+                    log.info("Updated hourly consumption for device {} at {}: {} kWh", deviceId, hour, total);
+                }
+                checkConsumption(slot, deviceId, hour, total);
+            } else if (slot == OVERFLOW) {
+                double total = EnergyUnits.toKilowattHours(addOverflow(deviceId, hour, amount));
+                if (detail) {
+                    log.info("Updated hourly consumption for device {} at {}: {} kWh (outside the state table)",
+                            deviceId, hour, total);
+                }
+                alertPublisher.checkConsumption(deviceId, total, hour);
+            }
+            if (anomaly != null) {
+                publishAlert(AlertType.ANOMALY, deviceId, timestamp, value, Double.NaN, null, anomaly);
+            }
+            ingestMetrics.measurement(IngestMetrics.Outcome.ACCEPTED);
+            processed++;
+        }
+
+        @Override
+        public void onBatchEnd() {
+            if (processed > 0) {
+                hotPathLogger.recordProcessed(processed);
+                processed = 0;
+            }
+            applyWritten();
+            if (System.nanoTime() - lastSweep >= SWEEP_INTERVAL_NANOS) {
+                forgetSilent();
+            }
+            if (dirtyCount >= maxDirtyBuckets
+                    || System.nanoTime() - lastFlush >= TimeUnit.MILLISECONDS.toNanos(flushIntervalMs)) {
+                flush();
+            }
+        }
+
+        @Override
+        public void onShutdown() {
+            flush();
+        }
+
+        /**
+         * Called by any thread, by the persist worker once it has written a tracked delta or given
+         * up on it.
+         */
+        void written(long deviceId, LocalDateTime hour, long amount, boolean stored) {
+            written.add(new WrittenDelta(deviceId, hour, amount, stored));
+        }
+
+        /**
+         * Runs on the stopping thread after every worker has finished. Totals the persist worker
+         * could not write are put back as pending into the snapshot, so the next start writes
+         * them; without a snapshot they are lost.
+         */
+        void finish() {
+            applyWritten();
+            if (snapshotDir.isBlank()) {
+                return;
+            }
+            int restored = 0;
+            for (Map.Entry<DeviceHour, Long> entry : inFlight.entrySet()) {
+                int slot = table.find(entry.getKey().deviceId());
+                if (slot >= 0 && table.hour(slot) == entry.getKey().hour().toEpochSecond(ZoneOffset.UTC)) {
+                    table.pending(slot, table.pending(slot) + entry.getValue());
+                    table.dirty(slot, true);
+                    restored++;
+                }
+            }
+            if (restored > 0) {
+                log.warn("Keeping {} unwritten hourly totals of shard {} in its state snapshot", restored, shard);
+            }
+            Path file = snapshotFile(shard);
+            try {
+                table.snapshot(file, shard, shardCount);
+                log.info("Wrote state snapshot of shard {} ({} devices) to {}", shard, table.size(), file);
+            } catch (IOException e) {
+                log.warn("Failed to write state snapshot of shard {} to {}: {}", shard, file, e.getMessage());
+            }
+        }
+
+        /**
+         * Hourly total of the device's current hour: written, in flight to the database and
+         * pending in the table.
+         */
+        private long total(int slot) {
+            long total = table.persisted(slot) + table.pending(slot);
+            if (!inFlight.isEmpty()) {
+                LocalDateTime hour = LocalDateTime.ofEpochSecond(table.hour(slot), 0, ZoneOffset.UTC);
+                total += inFlight.getOrDefault(new DeviceHour(table.deviceId(slot), hour), 0L);
+            }
+            return total;
+        }
+
+        /**
+         * Moves what the persist worker reported written from in flight to persisted, unless the
+         * device has moved on to another hour (whose persisted total was read from the database)
+         * or left the table. Deltas it gave up on are only taken out of flight.
+         */
+        private void applyWritten() {
+            for (WrittenDelta delta = written.poll(); delta != null; delta = written.poll()) {
+                long done = delta.amount();
+                inFlight.computeIfPresent(new DeviceHour(delta.deviceId(), delta.hour()),
+                        (key, amount) -> amount == done ? null : amount - done);
+                if (!delta.stored()) {
+                    continue;
+                }
+                int slot = table.find(delta.deviceId());
+                if (slot >= 0 && table.hour(slot) == delta.hour().toEpochSecond(ZoneOffset.UTC)) {
+                    table.persisted(slot, table.persisted(slot) + delta.amount());
+                }
+            }
+        }
+
+        /**
+         * Adds a reading to the device's current hour and returns the device's slot, {@code -1}
+         * for a reading of an earlier hour, which is written straight through without a running
+         * total, or {@link #OVERFLOW} for a device that does not fit in the table.
+         */
+        private int add(long deviceId, LocalDateTime hour, long amount) {
+            long hourSecond = hour.toEpochSecond(ZoneOffset.UTC);
+            int slot = table.find(deviceId);
+            if (slot < 0) {
+                slot = insert(deviceId);
+                if (slot < 0) {
+                    return OVERFLOW;
+                }
+            }
+
+            long current = table.hour(slot);
+            if (current != AlertStateTracker.NO_HOUR && hourSecond < current) {
+                publishDelta(deviceId, hour, amount, false);
+                return -1;
+            }
+            if (hourSecond != current) {
+                flush(slot);
+                table.hour(slot, hourSecond);
+                table.persisted(slot, load(deviceId, hour));
+            }
+
+            if (!table.dirty(slot)) {
+                table.dirty(slot, true);
+                markDirty(deviceId);
+            }
+            table.pending(slot, table.pending(slot) + amount);
+            table.lastSeen(slot, System.currentTimeMillis());
+            return slot;
+        }
+
+        /**
+         * Claims a slot for a new device, first forgetting silent devices if the table is full. A
+         * device that had an overflow total brings it along.
+         */
+        private int insert(long deviceId) {
+            int slot = table.insert(deviceId);
+            if (slot < 0 && System.nanoTime() - lastSweep >= FULL_SWEEP_INTERVAL_NANOS) {
+                forgetSilent();
+                slot = table.insert(deviceId);
+            }
+            if (slot < 0) {
+                if (!full) {
+                    full = true;
+                    log.warn("State table of shard {} is full ({} devices), keeping the totals of new devices "
+                            + "on the heap", shard, table.maxSize());
+                }
+                return -1;
+            }
+            OverflowTotal moved = overflow.remove(deviceId);
+            if (moved != null) {
+                // its deltas went out untracked, so the whole total counts as persisted
+                table.hour(slot, moved.hour);
+                table.persisted(slot, moved.total);
+            }
+            return slot;
+        }
+
+        /**
+         * Adds a reading of a device outside the table to its heap total and writes it straight
+         * through.
+         */
+        private long addOverflow(long deviceId, LocalDateTime hour, long amount) {
+            long hourSecond = hour.toEpochSecond(ZoneOffset.UTC);
+            OverflowTotal total = overflow.computeIfAbsent(deviceId, id -> new OverflowTotal());
+            if (total.hour != hourSecond) {
+                total.hour = hourSecond;
+                total.total = load(deviceId, hour);
+            }
+            total.total += amount;
+            total.lastSeen = System.currentTimeMillis();
+            publishDelta(deviceId, hour, amount, false);
+            return total.total;
+        }
+
+        /**
+         * Flushes and drops the devices not seen for {@code forget-after}, like the heartbeat
+         * monitor forgets its silent devices, so a churning fleet does not fill the table for good.
+         */
+        private void forgetSilent() {
+            lastSweep = System.nanoTime();
+            if (forgetAfter.isZero()) {
+                return;
+            }
+            long cutoff = System.currentTimeMillis() - forgetAfter.toMillis();
+            List<Long> silent = new ArrayList<>();
+            table.forEachSlot(slot -> {
+                if (table.lastSeen(slot) < cutoff) {
+                    silent.add(table.deviceId(slot));
+                }
+            });
+            for (long deviceId : silent) {
+                flush(table.find(deviceId));
+                table.remove(deviceId);
+            }
+            overflow.values().removeIf(total -> total.lastSeen < cutoff);
+            if (!silent.isEmpty()) {
+                full = false;
+                log.info("Forgot {} devices of shard {} silent for more than {}", silent.size(), shard, forgetAfter);
+            }
+        }
+
+        private void markDirty(long deviceId) {
+            if (dirtyCount == dirty.length) {
+                dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+            }
+            dirty[dirtyCount++] = deviceId;
+        }
+
+        private void checkConsumption(int slot, long deviceId, LocalDateTime hour, double total) {
+            DeviceLimitCache.DeviceLimits limits;
+            try {
+                limits = deviceLimitCache.get(deviceId);
+            } catch (RuntimeException e) {
+                ingestMetrics.error(IngestMetrics.Stage.ALERT_PUBLISH);
+                log.error("Failed to load the limits of device {}: {}", deviceId, e.getMessage());
+                return;
+            }
+            if (limits == null) {
+                return;
+            }
+
+            long hourSecond = hour.toEpochSecond(ZoneOffset.UTC);
+            if (alertStateTracker.advance(deviceId, table.alertSlot(alertCursor, slot), hourSecond, total,
+                    limits.maxConsumption())) {
+                publishAlert(AlertType.OVERCONSUMPTION, deviceId, hour, total, Double.NaN, limits, null);
+                return;
+            }
+            double projected = baselines.projectOverrun(deviceId, hour, total, limits.maxConsumption());
+            if (!Double.isNaN(projected)) {
+                publishAlert(AlertType.PROJECTED_OVERRUN, deviceId, hour, total, projected, limits, null);
+            }
+        }
+
+        private long load(long deviceId, LocalDateTime hour) {
+            long start = System.nanoTime();
+            long persisted = consumptionRepository.findByDeviceIdAndTimestamp(deviceId, hour)
+                    .map(consumption -> EnergyUnits.toMilliwattHours(consumption.getTotalConsumption()))
+                    .orElse(0L);
+            ingestMetrics.record(IngestMetrics.Stage.DB_READ, start);
+            return persisted;
+        }
+
+        /**
+         * Hands every dirty total to the persist stage; devices evicted since they became dirty
+         * are no longer in the table and are skipped.
+         */
+        private void flush() {
+            for (int i = 0; i < dirtyCount; i++) {
+                int slot = table.find(dirty[i]);
+                if (slot >= 0) {
+                    flush(slot);
+                }
+            }
+            dirtyCount = 0;
+            lastFlush = System.nanoTime();
+        }
+
+        /**
+         * Hands the pending amount to the persist worker; it stays in flight until reported written.
+         */
+        private void flush(int slot) {
+            if (!table.dirty(slot)) {
+                return;
+            }
+            long pending = table.pending(slot);
+            if (pending != 0) {
+                long deviceId = table.deviceId(slot);
+                LocalDateTime hour = LocalDateTime.ofEpochSecond(table.hour(slot), 0, ZoneOffset.UTC);
+                publishDelta(deviceId, hour, pending, true);
+                inFlight.merge(new DeviceHour(deviceId, hour), pending, Long::sum);
+            }
+            table.pending(slot, 0);
+            table.dirty(slot, false);
+        }
+    }
+
+    private final class AlertHandler implements Handler<AlertEvent> {
+
+        @Override
+        public void onEvent(AlertEvent event) {
+            switch (event.type) {
+                case OVERCONSUMPTION -> alertPublisher.publishOverconsumption(
+                        event.deviceId, event.timestamp, event.value, event.limits);
+                case PROJECTED_OVERRUN -> alertPublisher.publishProjectedOverrun(
+                        event.deviceId, event.timestamp, event.value, event.projected, event.limits);
+                case ANOMALY -> alertPublisher.publishAnomaly(
+                        event.deviceId, event.timestamp, event.value, event.anomaly);
+            }
+            event.limits = null;
+            event.anomaly = null;
+        }
+    }
+
+    /**
+     * Sums deltas per (device, hour) and writes them with one multi-row upsert per drained batch
+     * (at most {@code persist-batch-size} rows). A batch can hold several deltas of one hour
+     * (corrections, readings of an earlier hour, devices that do not fit the state table), and one
+     * upsert statement may touch a row only once.
+     * <p>
+     * If the database is unreachable the deltas are kept and the write is retried until it
+     * succeeds, holding up this worker and, once its ring is full, everything in front of it. Any
+     * other failure is blamed on a row: the batch is retried row by row and only the rows that
+     * fail on their own are dropped.
+     */
+    private final class PersistHandler implements Handler<PersistEvent> {
+
+        private final Map<DeviceHour, PendingDelta> deltas = new LinkedHashMap<>();
+
+        @Override
+        public void onEvent(PersistEvent event) {
+            PendingDelta pending = deltas.computeIfAbsent(new DeviceHour(event.deviceId, event.hour),
+                    key -> new PendingDelta());
+            pending.amount += event.delta;
+            if (event.tracked) {
+                pending.tracked += event.delta;
+            }
+            if (deltas.size() >= persistBatchSize) {
+                writeUntilDone();
+            }
+        }
+
+        @Override
+        public void onBatchEnd() {
+            writeUntilDone();
+        }
+
+        @Override
+        public void onShutdown() {
+            if (!write()) {
+                long amount = deltas.values().stream().mapToLong(pending -> pending.amount).sum();
+                log.error("Could not write {} hourly deltas ({} kWh) before shutdown; they are lost unless kept in "
+                        + "a state snapshot", deltas.size(), EnergyUnits.toKilowattHours(amount));
+            }
+        }
+
+        /**
+         * Retries while the pipeline is running. Once it is stopping, failed deltas are only kept
+         * for the next batch, so the shards can drain into the ring.
+         */
+        private void writeUntilDone() {
+            while (!write() && running) {
+                try {
+                    Thread.sleep(persistRetryIntervalMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return {@code true} if nothing is left to write
+         */
+        private boolean write() {
+            if (deltas.isEmpty()) {
+                return true;
+            }
+            List<HourlyDelta> batch = new ArrayList<>(deltas.size());
+            deltas.forEach((key, pending) -> batch.add(new HourlyDelta(key.deviceId(), key.hour(), pending.amount)));
+            long start = System.nanoTime();
+            try {
+                consumptionRepository.applyHourlyDeltas(batch);
+                ingestMetrics.record(IngestMetrics.Stage.DB_WRITE, start);
+                deltas.forEach((key, pending) -> written(key, pending, true));
+                responseCache.invalidateClosedDays(batch);
+                deltas.clear();
+                return true;
+            } catch (RuntimeException e) {
+                ingestMetrics.error(IngestMetrics.Stage.DB_WRITE);
+                if (DataAccessFailures.isTransient(e)) {
+                    log.warn("Writing {} hourly deltas failed, retrying in {} ms: {}",
+                            batch.size(), persistRetryIntervalMs, e.getMessage());
+                    return false;
+                }
+                log.warn("Batch write of {} hourly deltas failed, retrying them one by one: {}",
+                        batch.size(), e.getMessage());
+            }
+
+            List<HourlyDelta> stored = new ArrayList<>();
+            for (Iterator<Map.Entry<DeviceHour, PendingDelta>> it = deltas.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<DeviceHour, PendingDelta> entry = it.next();
+                HourlyDelta delta = new HourlyDelta(entry.getKey().deviceId(), entry.getKey().hour(),
+                        entry.getValue().amount);
+                try {
+                    consumptionRepository.upsertHourlyConsumption(
+                            delta.getDeviceId(), delta.getTimestamp(), EnergyUnits.toDecimal(delta.getDelta()));
+                    stored.add(delta);
+                    written(entry.getKey(), entry.getValue(), true);
+                } catch (RuntimeException deltaError) {
+                    ingestMetrics.error(IngestMetrics.Stage.DB_WRITE);
+                    if (DataAccessFailures.isTransient(deltaError)) {
+                        log.warn("Writing hourly deltas failed, keeping {} for the next attempt: {}",
+                                deltas.size() - stored.size(), deltaError.getMessage());
+                        break;
+                    }
+                    log.error("Dropping hourly delta {}: {}", delta, deltaError.getMessage());
+                    written(entry.getKey(), entry.getValue(), false);
+                }
+                it.remove();
+            }
+            responseCache.invalidateClosedDays(stored);
+            return deltas.isEmpty();
+        }
+
+        private void written(DeviceHour key, PendingDelta pending, boolean stored) {
+            if (pending.tracked != 0) {
+                shardHandlers[shardOf(key.deviceId())].written(key.deviceId(), key.hour(), pending.tracked, stored);
+            }
+        }
+    }
+
+    private interface Handler<E> {
+
+        void onEvent(E event);
+
+        default void onBatchEnd() {
+        }
+
+        default void onShutdown() {
+            onBatchEnd();
+        }
+    }
+
+    /**
+     * Single consumer thread of one ring buffer.
+     */
+    private static final class Worker<E> implements Runnable {
+
+        private final String name;
+        private final RingBuffer<E> ring;
+        private final Handler<E> handler;
+        private final Stage stage;
+        private volatile boolean stopping;
+        private Thread thread;
+
+        Worker(String name, RingBuffer<E> ring, Handler<E> handler, Stage stage) {
+            this.name = name;
+            this.ring = ring;
+            this.handler = handler;
+            this.stage = stage;
+        }
+
+        void start() {
+            thread = Thread.ofPlatform().name(name).start(this);
+        }
+
+        void stopAndJoin() {
+            stopping = true;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            long next = 0;
+            while (true) {
+                long available = ring.waitFor(next, TICK_NANOS);
+                if (available >= next) {
+                    long start = System.nanoTime();
+                    for (long sequence = next; sequence <= available; sequence++) {
+                        try {
+                            handler.onEvent(ring.get(sequence));
+                        } catch (RuntimeException e) {
+                            stage.errors.increment();
+                            log.error("{} failed to process an event: {}", name, e.getMessage(), e);
+                        }
+                    }
+                    runBatchEnd();
+                    stage.processed(available - next + 1, System.nanoTime() - start);
+                    ring.release(available);
+                    next = available + 1;
+                } else if (stopping) {
+                    try {
+                        handler.onShutdown();
+                    } catch (RuntimeException e) {
+                        log.error("{} failed to drain: {}", name, e.getMessage(), e);
+                    }
+                    return;
+                } else {
+                    runBatchEnd();
+                }
+            }
+        }
+
+        private void runBatchEnd() {
+            try {
+                handler.onBatchEnd();
+            } catch (RuntimeException e) {
+                stage.errors.increment();
+                log.error("{} failed to finish a batch: {}", name, e.getMessage(), e);
+            }
+        }
+    }
+
+    private static final class Stage {
+
+        private final String name;
+        private final LongAdder events = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private long sampledAt = System.nanoTime();
+        private long sampledEvents;
+        private volatile double eventsPerSecond;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        void processed(long count, long nanos) {
+            events.add(count);
+            busyNanos.add(nanos);
+        }
+
+        synchronized void sampleRate(long now) {
+            long total = events.sum();
+            eventsPerSecond = (total - sampledEvents) * 1e9 / Math.max(now - sampledAt, 1);
+            sampledEvents = total;
+            sampledAt = now;
+        }
+
+        PipelineStageStatsDTO toDTO(long backlog, int ringCapacity) {
+            long count = events.sum();
+            return PipelineStageStatsDTO.builder()
+                    .stage(name.toUpperCase(Locale.ROOT))
+                    .events(count)
+                    .errors(errors.sum())
+                    .eventsPerSecond(eventsPerSecond)
+                    .averageNanos(count > 0 ? busyNanos.sum() / count : 0)
+                    .backlog(backlog)
+                    .ringCapacity(ringCapacity)
+                    .build();
+        }
+    }
+
+    private static final class MeasurementEvent {
+        private boolean evict;
+        private long deviceId;
+        private LocalDateTime timestamp;
+        private double value;
+    }
+
+    private enum AlertType {
+        OVERCONSUMPTION, PROJECTED_OVERRUN, ANOMALY
+    }
+
+    private static final class AlertEvent {
+        private AlertType type;
+        private long deviceId;
+        private LocalDateTime timestamp;
+        private double value;
+        private double projected;
+        private DeviceLimitCache.DeviceLimits limits;
+        private ConsumptionBaselines.Anomaly anomaly;
+    }
+
+    private record DeviceHour(long deviceId, LocalDateTime hour) {
+    }
+
+    private static final class PersistEvent {
+        private long deviceId;
+        private LocalDateTime hour;
+        private long delta;
+        private boolean tracked;
+    }
+
+    /**
+     * Sum of the deltas of one (device, hour) waiting to be written; {@code tracked} is the part a
+     * shard holds in flight.
+     */
+    private static final class PendingDelta {
+        private long amount;
+        private long tracked;
+    }
+
+    private static final class OverflowTotal {
+        private long hour = AlertStateTracker.NO_HOUR;
+        private long total;
+        private long lastSeen;
+    }
+
+    private record WrittenDelta(long deviceId, LocalDateTime hour, long amount, boolean stored) {
+    }
+}
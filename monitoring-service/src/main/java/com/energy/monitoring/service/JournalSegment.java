@@ -0,0 +1,225 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.DeviceMeasurement;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * One file of the {@link MeasurementJournal}: fixed-size records, numbered from the journal
+ * position of the first record, which is also part of the file name.
+ * <pre>
+ * record: deviceId | epochSecond | nano | value | crc
+ *         8          8             4      8       4
+ * </pre>
+ * The CRC-32C covers the record and its position, so a torn write at the tail of the file, or a
+ * record read at the wrong position, is recognised when the file is opened again. Appends are
+ * positional writes from the journal's append lock; reads come from the applier thread and may
+ * run concurrently with them.
+ */
+final class JournalSegment implements AutoCloseable {
+
+    static final int RECORD_BYTES = 32;
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long first;
+    private final int capacity;
+    private volatile int count;
+
+    private JournalSegment(Path file, FileChannel channel, long first, int capacity, int count) {
+        this.file = file;
+        this.channel = channel;
+        this.first = first;
+        this.capacity = capacity;
+        this.count = count;
+    }
+
+    /**
+     * Creates an empty segment whose first record will be at {@code first}.
+     */
+    static JournalSegment create(Path dir, long first, int capacity) throws IOException {
+        Path file = dir.resolve(fileName(first));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new JournalSegment(file, channel, first, capacity, 0);
+    }
+
+    /**
+     * Opens a segment written by an earlier run and cuts it at the first record that does not
+     * check out, which is where the last write before a crash was torn.
+     */
+    static JournalSegment recover(Path file) throws IOException {
+        long first = firstPosition(file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 1024);
+        int count = 0;
+        long offset = 0;
+        while (size - offset >= RECORD_BYTES) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), (size - offset) / RECORD_BYTES * RECORD_BYTES));
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+                // keep reading until the buffer is full
+            }
+            buffer.flip();
+            while (buffer.remaining() >= RECORD_BYTES && valid(buffer, buffer.position(), first + count)) {
+                buffer.position(buffer.position() + RECORD_BYTES);
+                count++;
+            }
+            if (buffer.hasRemaining() || buffer.limit() == 0) {
+                break;
+            }
+            offset += buffer.limit();
+        }
+        if (channel.size() > (long) count * RECORD_BYTES) {
+            channel.truncate((long) count * RECORD_BYTES);
+            channel.force(true);
+        }
+        return new JournalSegment(file, channel, first, count, count);
+    }
+
+    static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    static long firstPosition(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    long first() {
+        return first;
+    }
+
+    /**
+     * Position after the last record written to this segment.
+     */
+    long end() {
+        return first + count;
+    }
+
+    int free() {
+        return capacity - count;
+    }
+
+    /**
+     * Appends {@code measurements[from, to)}, which must fit into {@link #free()}, through
+     * {@code buffer}. Not durable until {@link #force()}.
+     */
+    void append(List<DeviceMeasurement> measurements, int from, int to, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        long position = end();
+        for (int i = from; i < to; i++) {
+            encode(measurements.get(i), position++, buffer);
+        }
+        buffer.flip();
+        long offset = (long) count * RECORD_BYTES;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+        count += to - from;
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Drops the records from position {@code end} on and syncs the shorter file.
+     */
+    void truncate(long end) throws IOException {
+        count = (int) Math.max(0, end - first);
+        channel.truncate((long) count * RECORD_BYTES);
+        channel.force(true);
+    }
+
+    /**
+     * Reads the records from {@code from} (inclusive) to {@code to} (exclusive) into {@code out}.
+     */
+    void read(long from, long to, ByteBuffer buffer, List<DeviceMeasurement> out) throws IOException {
+        long offset = (from - first) * RECORD_BYTES;
+        long remaining = (to - from) * RECORD_BYTES;
+        long position = from;
+        while (remaining > 0) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), remaining));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Journal segment " + file + " ends before position " + to);
+                }
+            }
+            buffer.flip();
+            offset += buffer.limit();
+            remaining -= buffer.limit();
+            while (buffer.hasRemaining()) {
+                out.add(decode(buffer, position++));
+            }
+        }
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static void encode(DeviceMeasurement measurement, long position, ByteBuffer buffer) {
+        int start = buffer.position();
+        LocalDateTime timestamp = measurement.getTimestamp();
+        buffer.putLong(measurement.getDeviceId());
+        buffer.putLong(timestamp.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(timestamp.getNano());
+        buffer.putDouble(measurement.getMeasurementValue());
+        buffer.putInt(checksum(buffer, start, position));
+    }
+
+    private static DeviceMeasurement decode(ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        if (!valid(buffer, start, position)) {
+            throw new IOException("Corrupt journal record at position " + position);
+        }
+        long deviceId = buffer.getLong();
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+        double value = buffer.getDouble();
+        buffer.getInt();
+        return DeviceMeasurement.builder()
+                .deviceId(deviceId)
+                .timestamp(timestamp)
+                .measurementValue(value)
+                .build();
+    }
+
+    private static boolean valid(ByteBuffer buffer, int start, long position) {
+        return buffer.getInt(start + RECORD_BYTES - 4) == checksum(buffer, start, position);
+    }
+
+    private static int checksum(ByteBuffer buffer, int start, long position) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(start, RECORD_BYTES - 4));
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (position >>> shift));
+        }
+        return (int) crc.getValue();
+    }
+
+    private static String fileName(long first) {
+        return PREFIX + String.format("%020d", first) + SUFFIX;
+    }
+}
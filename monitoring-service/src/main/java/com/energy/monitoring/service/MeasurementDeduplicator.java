@@ -0,0 +1,270 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.DedupStatsDTO;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drops redelivered and re-published measurements before they are added to an hourly total.
+ * <p>
+ * A measurement is identified by its device id and timestamp (the simulator sends at most one
+ * reading per device per second). The last {@code ring-size} timestamps of every device are kept
+ * in a small ring, which catches the usual broker redelivery exactly. Timestamps older than the
+ * ring are checked against a two-generation bloom filter shared by all devices, so a duplicate
+ * that shows up much later is still caught with bounded memory. A bloom filter can report false
+ * positives, so {@code bloom-bits} should be sized for the readings expected in one generation.
+ * <p>
+ * Every check is constant time and never touches the database.
+ */
+@Component
+@Slf4j
+public class MeasurementDeduplicator {
+
+    private static final int HASHES = 4;
+
+    @Value("${monitoring.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${monitoring.dedup.ring-size:16}")
+    private int ringSize;
+
+    private final Map<Long, DeviceWindow> windows = new ConcurrentHashMap<>();
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder ringDuplicates = new LongAdder();
+    private final LongAdder bloomDuplicates = new LongAdder();
+    private final LongAdder bloomRotations = new LongAdder();
+
+    @Value("${monitoring.dedup.bloom-bits:16777216}")
+    private int bloomBits;
+
+    private long bloomCapacity;
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    @PostConstruct
+    void init() {
+        bloomBits = Integer.highestOneBit(Math.max(bloomBits, 64));
+        // about 1% false positives with HASHES = 4 once a generation is full
+        bloomCapacity = bloomBits / 10;
+        current = new Generation(bloomBits);
+        previous = new Generation(bloomBits);
+    }
+
+    /**
+     * Records the measurement and tells whether it has been seen before.
+     *
+     * @return {@code true} if the measurement is a duplicate and must be dropped
+     */
+    public boolean isDuplicate(Long deviceId, LocalDateTime timestamp) {
+        if (!enabled) {
+            return false;
+        }
+        checked.increment();
+        long second = timestamp.toEpochSecond(ZoneOffset.UTC);
+
+        DeviceWindow window = windows.computeIfAbsent(deviceId, id -> new DeviceWindow(ringSize));
+        boolean mayBeOld;
+        synchronized (window) {
+            if (window.contains(second)) {
+                ringDuplicates.increment();
+                return true;
+            }
+            // a not-yet-full ring holds every timestamp seen, and anything newer is new; a
+            // forgotten timestamp is still in the bloom filter, so it must skip the check once
+            boolean redelivered = window.unforget(second);
+            mayBeOld = !redelivered && window.isFull() && second < window.newest;
+            window.add(second);
+        }
+
+        long hash = mix(deviceId, second);
+        if (mayBeOld && mightContain(hash)) {
+            bloomDuplicates.increment();
+            log.debug("Dropping late duplicate of device {} at {}", deviceId, timestamp);
+            return true;
+        }
+        remember(hash);
+        return false;
+    }
+
+    /**
+     * Undoes {@link #isDuplicate} for a measurement that could not be stored and will be
+     * delivered again, so the redelivery is not dropped.
+     */
+    public void forget(Long deviceId, LocalDateTime timestamp) {
+        if (!enabled) {
+            return;
+        }
+        DeviceWindow window = windows.get(deviceId);
+        if (window == null) {
+            return;
+        }
+        synchronized (window) {
+            window.forget(timestamp.toEpochSecond(ZoneOffset.UTC));
+        }
+    }
+
+    public void evictDevice(Long deviceId) {
+        windows.remove(deviceId);
+    }
+
+    public DedupStatsDTO getStats() {
+        long ring = ringDuplicates.sum();
+        long bloom = bloomDuplicates.sum();
+        return DedupStatsDTO.builder()
+                .trackedDevices(windows.size())
+                .checked(checked.sum())
+                .duplicates(ring + bloom)
+                .ringDuplicates(ring)
+                .bloomDuplicates(bloom)
+                .bloomRotations(bloomRotations.sum())
+                .build();
+    }
+
+    private boolean mightContain(long hash) {
+        return current.mightContain(hash) || previous.mightContain(hash);
+    }
+
+    private void remember(long hash) {
+        Generation generation = current;
+        if (generation.add(hash) >= bloomCapacity) {
+            synchronized (this) {
+                if (current == generation) {
+                    previous = generation;
+                    current = new Generation(bloomBits);
+                    bloomRotations.increment();
+                }
+            }
+        }
+    }
+
+    private static long mix(long deviceId, long second) {
+        long hash = deviceId * 0x9E3779B97F4A7C15L ^ second;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static final class DeviceWindow {
+        private final long[] seconds;
+        private int size;
+        private int next;
+        private long newest = Long.MIN_VALUE;
+        /** Forgotten timestamps not seen again yet; {@code null} while there are none. */
+        private Set<Long> forgotten;
+
+        DeviceWindow(int capacity) {
+            this.seconds = new long[Math.max(capacity, 1)];
+        }
+
+        boolean contains(long second) {
+            for (int i = 0; i < size; i++) {
+                if (seconds[i] == second) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isFull() {
+            return size == seconds.length;
+        }
+
+        /**
+         * Takes the timestamp out of the ring, keeping the order of the rest.
+         */
+        void forget(long second) {
+            int kept = 0;
+            long[] ordered = new long[seconds.length];
+            int oldest = size < seconds.length ? 0 : next;
+            for (int i = 0; i < size; i++) {
+                long seen = seconds[(oldest + i) % seconds.length];
+                if (seen != second) {
+                    ordered[kept++] = seen;
+                }
+            }
+            if (kept == size) {
+                return;
+            }
+            System.arraycopy(ordered, 0, seconds, 0, kept);
+            size = kept;
+            next = kept % seconds.length;
+            newest = Long.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                newest = Math.max(newest, seconds[i]);
+            }
+            if (forgotten == null) {
+                forgotten = new HashSet<>();
+            }
+            forgotten.add(second);
+        }
+
+        boolean unforget(long second) {
+            if (forgotten == null || !forgotten.remove(second)) {
+                return false;
+            }
+            if (forgotten.isEmpty()) {
+                forgotten = null;
+            }
+            return true;
+        }
+
+        void add(long second) {
+            newest = Math.max(newest, second);
+            seconds[next] = second;
+            next = (next + 1) % seconds.length;
+            if (size < seconds.length) {
+                size++;
+            }
+        }
+    }
+
+    private static final class Generation {
+        private final AtomicLongArray words;
+        private final int mask;
+        private final AtomicLong insertions = new AtomicLong();
+
+        Generation(int bits) {
+            this.words = new AtomicLongArray(bits >>> 6);
+            this.mask = bits - 1;
+        }
+
+        boolean mightContain(long hash) {
+            for (int i = 0; i < HASHES; i++) {
+                int bit = bitIndex(hash, i);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long add(long hash) {
+            for (int i = 0; i < HASHES; i++) {
+                int bit = bitIndex(hash, i);
+                words.getAndAccumulate(bit >>> 6, 1L << bit, (word, b) -> word | b);
+            }
+            return insertions.incrementAndGet();
+        }
+
+        private int bitIndex(long hash, int i) {
+            // Kirsch-Mitzenmacher: derive the i-th probe from the two halves of one 64-bit hash
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            return (h1 + i * h2) & mask;
+        }
+    }
+}
@@ -0,0 +1,538 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.DeviceMeasurement;
+import com.energy.monitoring.dto.HourlyDelta;
+import com.energy.monitoring.dto.JournalStatsDTO;
+import com.energy.monitoring.repository.EnergyConsumptionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Local write-ahead journal of incoming readings, enabled with
+ * {@code monitoring.ingest.journal.enabled=true}. Listener threads append their readings and
+ * return, so the broker gets its acknowledgement, as soon as the readings are on disk; the
+ * database is updated behind the journal.
+ * <p>
+ * Readings are appended to fixed-record {@link JournalSegment} files. One sync thread forces the
+ * file to disk for everything appended so far and wakes every waiting listener, so concurrent
+ * listeners and whole listener batches share a single fsync (group commit). One apply thread reads
+ * durable readings back in batches, folds them like batch mode does and writes the resulting
+ * hourly deltas together with the journal position they cover in one transaction, retrying until
+ * it commits. On start the journal is replayed from that checkpoint, so readings acknowledged
+ * before a crash are applied exactly once; segments wholly behind the checkpoint are deleted.
+ */
+@Component
+@ConditionalOnExpression("${monitoring.ingest.journal.enabled:false} and !${monitoring.ingest.pipeline.enabled:false}")
+@RequiredArgsConstructor
+@Slf4j
+public class MeasurementJournal implements SmartLifecycle {
+
+    private static final long APPLY_IDLE_MILLIS = 100;
+
+    private final MonitoringService monitoringService;
+    private final EnergyConsumptionRepository consumptionRepository;
+    private final HotPathLogger hotPathLogger;
+    private final IngestMetrics ingestMetrics;
+
+    @Value("${monitoring.ingest.journal.dir:/var/lib/monitoring/journal}")
+    private String dir;
+
+    @Value("${monitoring.ingest.journal.id:${rabbitmq.queue.ingest}}")
+    private String journalId;
+
+    @Value("${monitoring.ingest.journal.segment-records:1048576}")
+    private int segmentRecords;
+
+    @Value("${monitoring.ingest.journal.max-unapplied:4194304}")
+    private long maxUnapplied;
+
+    @Value("${monitoring.ingest.journal.sync-timeout-ms:5000}")
+    private long syncTimeoutMs;
+
+    @Value("${monitoring.ingest.journal.apply-batch-size:500}")
+    private int applyBatchSize;
+
+    @Value("${monitoring.ingest.journal.retry-interval-ms:1000}")
+    private long retryIntervalMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+    private final NavigableMap<Long, JournalSegment> segments = new ConcurrentSkipListMap<>();
+    private final List<JournalSegment> unsynced = new ArrayList<>();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong syncedRecords = new AtomicLong();
+    private final AtomicLong syncNanos = new AtomicLong();
+    private final AtomicLong applyRetries = new AtomicLong();
+
+    // guarded by lock
+    private ByteBuffer appendBuffer;
+    private long written;
+    private volatile JournalSegment current;
+
+    private volatile long durable;
+    private volatile long applied;
+    private volatile long replayedUntil;
+    private volatile Exception failure;
+    private volatile boolean running;
+    private Path directory;
+    private Thread syncThread;
+    private Thread applyThread;
+
+    /**
+     * Opens the journal, cutting a torn tail left by a crash, and starts replaying from the
+     * checkpoint stored in the database.
+     */
+    @Override
+    public void start() {
+        try {
+            directory = Path.of(dir);
+            Files.createDirectories(directory);
+            long checkpoint = consumptionRepository.findJournalCheckpoint(journalId);
+            long end = recover(checkpoint);
+            written = Math.max(end, checkpoint);
+            durable = written;
+            applied = segments.isEmpty() ? written : Math.max(checkpoint, segments.firstKey());
+            if (applied > checkpoint) {
+                log.warn("Ingest journal {} has no readings between checkpoint {} and position {}",
+                        journalId, checkpoint, applied);
+            }
+            replayedUntil = written;
+            current = JournalSegment.create(directory, written, segmentRecords);
+            segments.put(written, current);
+            appendBuffer = ByteBuffer.allocateDirect(JournalSegment.RECORD_BYTES * 1024);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open ingest journal in " + dir, e);
+        }
+
+        running = true;
+        syncThread = Thread.ofPlatform().name("ingest-journal-sync").start(this::syncLoop);
+        applyThread = Thread.ofPlatform().name("ingest-journal-apply").start(this::applyLoop);
+        log.info("Ingest journal {} opened in {}: replaying {} readings from position {}",
+                journalId, directory, written - applied, applied);
+    }
+
+    /**
+     * Syncs what the listeners appended and applies what is durable, unless the database is
+     * failing; whatever is left is replayed on the next start.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        lock.lock();
+        try {
+            appended.signalAll();
+            synced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        join(syncThread);
+        join(applyThread);
+        for (JournalSegment segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.warn("Failed to close ingest journal segment at {}: {}", segment.first(), e.getMessage());
+            }
+        }
+        log.info("Ingest journal {} closed at position {}, {} readings left to apply",
+                journalId, durable, durable - applied);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before and stops after the RabbitMQ listener containers, so no reading is appended
+     * to a journal that is not running.
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 1024;
+    }
+
+    /**
+     * Appends readings and waits until they are durable. Throws, so that the caller's messages
+     * are requeued, when the journal is not running, holds {@code max-unapplied} readings the
+     * database has not caught up with, or cannot be synced within {@code sync-timeout-ms}.
+     */
+    public void append(List<DeviceMeasurement> measurements) {
+        if (measurements.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long end;
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Ingest journal is not running");
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Ingest journal failed", failure);
+            }
+            if (written - applied + measurements.size() > maxUnapplied) {
+                throw new IllegalStateException("Ingest journal holds " + (written - applied)
+                        + " readings not yet applied to the database");
+            }
+            write(measurements);
+            end = written;
+            appended.signal();
+            awaitDurable(end, start);
+        } catch (IOException e) {
+            // The segment only counts records once they are fully written, so the next append
+            // simply overwrites whatever part of this one reached the file
+            throw new UncheckedIOException("Ingest journal write failed", e);
+        } finally {
+            lock.unlock();
+        }
+        ingestMetrics.record(IngestMetrics.Stage.JOURNAL, start);
+    }
+
+    public JournalStatsDTO getStats() {
+        long syncCount = syncs.get();
+        return JournalStatsDTO.builder()
+                .journalId(journalId)
+                .directory(dir)
+                .failed(failure != null)
+                .durablePosition(durable)
+                .appliedPosition(applied)
+                .unapplied(durable - applied)
+                .segments(segments.size())
+                .syncs(syncCount)
+                .avgReadingsPerSync(syncCount == 0 ? 0 : (double) syncedRecords.get() / syncCount)
+                .avgSyncMicros(syncCount == 0 ? 0 : syncNanos.get() / syncCount / 1000)
+                .applyRetries(applyRetries.get())
+                .build();
+    }
+
+    private void write(List<DeviceMeasurement> measurements) throws IOException {
+        int from = 0;
+        while (from < measurements.size()) {
+            if (current.free() == 0) {
+                unsynced.add(current);
+                current = JournalSegment.create(directory, written, segmentRecords);
+                segments.put(written, current);
+            }
+            int to = Math.min(measurements.size(), from + current.free());
+            int bytes = (to - from) * JournalSegment.RECORD_BYTES;
+            if (appendBuffer.capacity() < bytes) {
+                appendBuffer = ByteBuffer.allocateDirect(Integer.highestOneBit(bytes) << 1);
+            }
+            current.append(measurements, from, to, appendBuffer);
+            written += to - from;
+            from = to;
+        }
+    }
+
+    private void awaitDurable(long end, long start) {
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(syncTimeoutMs);
+        try {
+            while (durable < end) {
+                if (failure != null) {
+                    throw new IllegalStateException("Ingest journal failed", failure);
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Ingest journal was not synced within " + syncTimeoutMs + " ms");
+                }
+                synced.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the ingest journal", e);
+        }
+    }
+
+    /**
+     * Forces everything appended since the last round in one go. Readings appended while a
+     * round is running make up the next one.
+     */
+    private void syncLoop() {
+        List<JournalSegment> toForce = new ArrayList<>();
+        while (true) {
+            long target;
+            lock.lock();
+            try {
+                while (durable == written && running) {
+                    appended.awaitUninterruptibly();
+                }
+                if (durable == written) {
+                    return;
+                }
+                target = written;
+                toForce.addAll(unsynced);
+                toForce.add(current);
+                unsynced.clear();
+            } finally {
+                lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            try {
+                for (JournalSegment segment : toForce) {
+                    segment.force();
+                }
+            } catch (IOException e) {
+                // Whether the pages reached the disk is unknown after a failed fsync, so nothing is
+                // acknowledged from here on, and the broker requeues the readings not acknowledged.
+                // They are cut from the journal as well, or a restart would replay them a second time.
+                log.error("Ingest journal sync failed, rejecting readings from now on", e);
+                lock.lock();
+                try {
+                    fail(e);
+                    discardUnsynced();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            toForce.clear();
+            syncNanos.addAndGet(System.nanoTime() - start);
+            syncedRecords.addAndGet(target - durable);
+            syncs.incrementAndGet();
+
+            lock.lock();
+            try {
+                durable = target;
+                synced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void applyLoop() {
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(applyBatchSize * JournalSegment.RECORD_BYTES);
+        List<DeviceMeasurement> batch = new ArrayList<>(applyBatchSize);
+        while (true) {
+            long from = applied;
+            long to = Math.min(durable, from + applyBatchSize);
+            if (to == from) {
+                if (!running) {
+                    return;
+                }
+                awaitSynced();
+                continue;
+            }
+            batch.clear();
+            try {
+                read(from, to, readBuffer, batch);
+            } catch (IOException e) {
+                log.error("Cannot read the ingest journal at position {}, stopping the apply thread", from, e);
+                failLocked(e);
+                return;
+            }
+            if (!apply(batch, to)) {
+                return;
+            }
+            applied = to;
+            if (from < replayedUntil && to >= replayedUntil) {
+                log.info("Ingest journal {} replayed up to position {}", journalId, replayedUntil);
+            }
+            deleteApplied();
+        }
+    }
+
+    private void awaitSynced() {
+        lock.lock();
+        try {
+            if (applied == durable && running) {
+                synced.await(APPLY_IDLE_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void read(long from, long to, ByteBuffer buffer, List<DeviceMeasurement> out) throws IOException {
+        long position = from;
+        while (position < to) {
+            Map.Entry<Long, JournalSegment> entry = segments.floorEntry(position);
+            if (entry == null || entry.getValue().end() <= position) {
+                throw new IOException("No journal segment holds position " + position);
+            }
+            long until = Math.min(to, entry.getValue().end());
+            entry.getValue().read(position, until, buffer, out);
+            position = until;
+        }
+    }
+
+    /**
+     * Applies one batch, retrying the database write until it commits. Returns {@code false} if
+     * the journal stopped before it could, leaving the batch to be replayed.
+     */
+    private boolean apply(List<DeviceMeasurement> batch, long checkpoint) {
+        try {
+            int accepted = monitoringService.applyJournaledBatch(batch, deltas -> writeDeltas(deltas, checkpoint));
+            hotPathLogger.recordProcessed(accepted);
+            return true;
+        } catch (StoppedException e) {
+            log.warn("Ingest journal stopped while the database was failing, {} readings left to replay from "
+                    + "position {}", durable - applied, applied);
+            return false;
+        } catch (RuntimeException e) {
+            log.error("Applying journaled readings up to position {} failed, stopping the apply thread", checkpoint, e);
+            failLocked(e);
+            return false;
+        }
+    }
+
+    /**
+     * Stops acknowledging readings once the journal cannot make progress: without the apply
+     * thread nothing reaches the database until a restart replays the journal, and without the
+     * sync thread nothing becomes durable. Caller must hold the lock.
+     */
+    private void fail(Exception e) {
+        if (failure == null) {
+            failure = e;
+        }
+        synced.signalAll();
+    }
+
+    private void failLocked(Exception e) {
+        lock.lock();
+        try {
+            fail(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cuts every segment back to the durable position after a failed fsync, so readings that
+     * were never acknowledged are not replayed on top of their redelivery. If the truncation
+     * itself cannot be synced, those readings may still be replayed after a restart and counted
+     * twice. Caller must hold the lock.
+     */
+    private void discardUnsynced() {
+        unsynced.clear();
+        for (JournalSegment segment : List.copyOf(segments.values())) {
+            if (segment.end() <= durable) {
+                continue;
+            }
+            try {
+                if (segment.first() >= durable && segment != current) {
+                    segments.remove(segment.first());
+                    segment.delete();
+                } else {
+                    segment.truncate(durable);
+                }
+            } catch (IOException e) {
+                log.error("Cannot cut ingest journal segment at {} back to durable position {}; readings after it "
+                        + "may be replayed on restart in addition to their redelivery", segment.first(), durable, e);
+            }
+        }
+        written = durable;
+    }
+
+    private void writeDeltas(List<HourlyDelta> deltas, long checkpoint) {
+        while (true) {
+            long start = System.nanoTime();
+            try {
+                consumptionRepository.applyJournaledDeltas(deltas, journalId, checkpoint);
+                ingestMetrics.record(IngestMetrics.Stage.DB_WRITE, start);
+                return;
+            } catch (RuntimeException e) {
+                ingestMetrics.error(IngestMetrics.Stage.DB_WRITE);
+                if (!running) {
+                    throw new StoppedException();
+                }
+                applyRetries.incrementAndGet();
+                log.warn("Writing {} journaled hourly deltas up to position {} failed, retrying in {} ms: {}",
+                        deltas.size(), checkpoint, retryIntervalMs, e.getMessage());
+                try {
+                    Thread.sleep(retryIntervalMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new StoppedException();
+                }
+            }
+        }
+    }
+
+    private void deleteApplied() {
+        Map.Entry<Long, JournalSegment> oldest;
+        while ((oldest = segments.firstEntry()) != null
+                && oldest.getValue() != current
+                && oldest.getValue().end() <= applied) {
+            segments.remove(oldest.getKey());
+            try {
+                oldest.getValue().delete();
+            } catch (IOException e) {
+                log.warn("Failed to delete applied ingest journal segment at {}: {}", oldest.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Opens the segments left by the previous run in order and returns the position after the
+     * last intact reading. Empty segments, segments wholly behind the checkpoint and segments that
+     * do not continue where the previous one ends (written after a torn tail) are deleted.
+     */
+    private long recover(long checkpoint) throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(JournalSegment::isSegment)
+                    .sorted(Comparator.comparingLong(JournalSegment::firstPosition))
+                    .toList();
+        }
+        long end = -1;
+        for (Path file : files) {
+            JournalSegment segment = JournalSegment.recover(file);
+            if (segment.end() == segment.first()) {
+                segment.delete();
+            } else if (end >= 0 && segment.first() != end) {
+                log.warn("Discarding ingest journal segment {}, it does not continue at position {}", file, end);
+                segment.delete();
+            } else {
+                end = segment.end();
+                if (end <= checkpoint) {
+                    segment.delete();
+                } else {
+                    segments.put(segment.first(), segment);
+                }
+            }
+        }
+        return end;
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Thrown out of a retried database write when the journal is stopping.
+     */
+    private static final class StoppedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -1,25 +1,48 @@
 package com.energy.monitoring.service;
 
+import com.energy.monitoring.dto.BaselineStatsDTO;
+import com.energy.monitoring.dto.ConsumptionTotalDTO;
+import com.energy.monitoring.dto.DedupStatsDTO;
+import com.energy.monitoring.dto.DeviceCacheStatsDTO;
+import com.energy.monitoring.dto.DeviceConsumptionSeriesDTO;
 import com.energy.monitoring.dto.DeviceMeasurement;
+import com.energy.monitoring.dto.HeartbeatStatsDTO;
 import com.energy.monitoring.dto.HourlyConsumptionDTO;
-import com.energy.monitoring.entity.DeviceReference;
+import com.energy.monitoring.dto.HourlyConsumptionView;
+import com.energy.monitoring.dto.HourlyDelta;
+import com.energy.monitoring.dto.JournalStatsDTO;
+import com.energy.monitoring.dto.LatenessStatsDTO;
+import com.energy.monitoring.dto.PipelineStatsDTO;
+import com.energy.monitoring.dto.RecentReadingsStatsDTO;
 import com.energy.monitoring.entity.EnergyConsumption;
+import com.energy.monitoring.entity.EnergyUnits;
+import com.energy.monitoring.entity.MonthlyConsumption;
+import com.energy.monitoring.exception.InvalidRequestException;
+import com.energy.monitoring.repository.DailyConsumptionRepository;
 import com.energy.monitoring.repository.DeviceReferenceRepository;
 import com.energy.monitoring.repository.EnergyConsumptionRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.energy.monitoring.repository.MonthlyConsumptionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,72 +52,300 @@ public class MonitoringService {
 
     private final EnergyConsumptionRepository consumptionRepository;
     private final DeviceReferenceRepository  referenceRepository;
-    private final RabbitTemplate rabbitTemplate;
-    private final ObjectMapper objectMapper;
+    private final DailyConsumptionRepository dailyConsumptionRepository;
+    private final MonthlyConsumptionRepository monthlyConsumptionRepository;
+    private final HourlyConsumptionAccumulator consumptionAccumulator;
+    private final DeviceLimitCache deviceLimitCache;
+    private final AlertStateTracker alertStateTracker;
+    private final AlertPublisher alertPublisher;
+    private final RecentReadingsStore recentReadingsStore;
+    private final RecentReadingsPeers recentReadingsPeers;
+    private final MeasurementDeduplicator deduplicator;
+    private final EventTimeWatermarks watermarks;
+    private final ConsumptionBaselines baselines;
+    private final DeviceHeartbeatMonitor heartbeats;
+    private final ConsumptionResponseCache responseCache;
+    private final DeviceStateBroadcaster deviceStateBroadcaster;
+    private final HotPathLogger hotPathLogger;
+    private final IngestMetrics ingestMetrics;
+    private final ObjectProvider<IngestPipeline> ingestPipeline;
+    private final ObjectProvider<MeasurementJournal> measurementJournal;
+    @Value("${monitoring.query.max-daily-range-days:366}")
+    private int maxDailyRangeDays;
 
-    @Value("${rabbitmq.exchange.alerts}")
-    private String alertExchange;
+    @Value("${monitoring.query.max-bulk-devices:50}")
+    private int maxBulkDevices;
 
-    @Value("${rabbitmq.routing-key.alert}")
-    private String alertRoutingKey;
+    @Value("${monitoring.query.max-bulk-range-days:31}")
+    private int maxBulkRangeDays;
 
-    @Transactional
     public void processDeviceMeasurement(DeviceMeasurement measurement) {
+        long start = System.nanoTime();
+        if (!isValid(measurement)) {
+            ingestMetrics.measurement(IngestMetrics.Outcome.INVALID);
+            log.warn("Skipping invalid measurement: {}", measurement);
+            return;
+        }
+        heartbeats.recordSeen(measurement.getDeviceId());
+        boolean detail = hotPathLogger.isDetailEnabled(measurement.getDeviceId());
+        if (detail) {
+            log.info("Received device measurement: deviceId={}, value={}, timestamp={}",
+                    measurement.getDeviceId(), measurement.getMeasurementValue(), measurement.getTimestamp());
+        }
+        if (deduplicator.isDuplicate(measurement.getDeviceId(), measurement.getTimestamp())) {
+            ingestMetrics.measurement(IngestMetrics.Outcome.DUPLICATE);
+            if (detail) {
+                log.info("Dropping duplicate measurement: {}", measurement);
+            }
+            return;
+        }
+        ingestMetrics.lag(measurement.getTimestamp());
+
+        recentReadingsStore.append(measurement.getDeviceId(), measurement.getTimestamp(),
+                measurement.getMeasurementValue());
+
         LocalDateTime hourlyTimestamp = measurement.getTimestamp()
                 .truncatedTo(ChronoUnit.HOURS);
 
-        log.info("Processing measurement for device {} at hour {}",
-                measurement.getDeviceId(), hourlyTimestamp);
-
-        EnergyConsumption consumption = consumptionRepository
-                .findByDeviceIdAndTimestamp(measurement.getDeviceId(), hourlyTimestamp)
-                .orElse(EnergyConsumption.builder()
-                        .deviceId(measurement.getDeviceId())
-                        .timestamp(hourlyTimestamp)
-                        .totalConsumption(0.0)
-                        .build());
+        if (watermarks.isLate(measurement.getDeviceId(), measurement.getTimestamp())) {
+            applyCorrection(new HourlyDelta(measurement.getDeviceId(), hourlyTimestamp,
+                    EnergyUnits.toMilliwattHours(measurement.getMeasurementValue())), detail);
+            ingestMetrics.measurement(IngestMetrics.Outcome.LATE);
+            ingestMetrics.record(IngestMetrics.Stage.PROCESS, start);
+            return;
+        }
 
-        double newTotal = consumption.getTotalConsumption() + measurement.getMeasurementValue();
-        consumption.setTotalConsumption(newTotal);
-        consumptionRepository.save(consumption);
+        ConsumptionBaselines.Anomaly anomaly = baselines.observe(
+                measurement.getDeviceId(), measurement.getTimestamp(), measurement.getMeasurementValue());
+        double newTotal = EnergyUnits.toKilowattHours(consumptionAccumulator.add(measurement.getDeviceId(),
+                hourlyTimestamp, EnergyUnits.toMilliwattHours(measurement.getMeasurementValue())));
 
-        log.info("Updated hourly consumption for device {} at {}: {} kWh",
-                measurement.getDeviceId(), hourlyTimestamp, newTotal);
+        if (detail) {
+            log.info("Updated hourly consumption for device {} at {}: {} kWh",
+                    measurement.getDeviceId(), hourlyTimestamp, newTotal);
+        }
 
-        checkAndSendAlert(measurement.getDeviceId(), newTotal, hourlyTimestamp);
+        alertPublisher.checkConsumption(measurement.getDeviceId(), newTotal, hourlyTimestamp);
+        if (anomaly != null) {
+            alertPublisher.publishAnomaly(measurement.getDeviceId(), measurement.getTimestamp(),
+                    measurement.getMeasurementValue(), anomaly);
+        }
+        ingestMetrics.measurement(IngestMetrics.Outcome.ACCEPTED);
+        ingestMetrics.record(IngestMetrics.Stage.PROCESS, start);
     }
 
-    private void checkAndSendAlert(Long deviceId, double currentConsumption, LocalDateTime timestamp) {
-        try {
-            DeviceReference deviceRef = referenceRepository.findById(deviceId).orElse(null);
+    /**
+     * Folds a batch of readings into one delta per (device, hour) and writes them with a single
+     * multi-row upsert. Invalid readings are skipped. Late readings are folded into the same rows
+     * but handled as corrections once stored, without alert checks.
+     * <p>
+     * If the database cannot be reached the failure is rethrown, so the listener leaves the batch
+     * to the broker, and the readings of every row not written are forgotten by the deduplicator,
+     * so the redelivered batch is not dropped as a duplicate. Any other batch failure is blamed on
+     * a row: every delta is retried on its own so one bad row does not take the rest of the batch
+     * down with it.
+     *
+     * @return the number of readings accepted from the batch
+     */
+    public int processMeasurementBatch(List<DeviceMeasurement> measurements) {
+        long start = System.nanoTime();
+        FoldedBatch batch = fold(measurements);
+        writeFolded(batch.hours());
 
-            if (deviceRef != null && currentConsumption > deviceRef.getMaxConsumption()) {
-                log.warn("OVERCONSUMPTION DETECTED! Device: {}, Limit: {}, Current: {}",
-                        deviceId, deviceRef.getMaxConsumption(), currentConsumption);
+        if (batch.accepted() > 0) {
+            ingestMetrics.record(IngestMetrics.Stage.PROCESS, start);
+        }
+        return batch.accepted();
+    }
 
-                Map<String, Object> alert = new HashMap<>();
-                alert.put("deviceId", deviceId);
+    /**
+     * Journal counterpart of {@link #processMeasurementBatch}: folds readings read back from the
+     * {@link MeasurementJournal} the same way, but hands all deltas of the batch, corrections
+     * included, to {@code write} in one call, so they can be stored in one transaction with the
+     * journal checkpoint. If {@code write} throws, nothing of the batch counts as persisted.
+     *
+     * @return the number of readings accepted from the batch
+     */
+    public int applyJournaledBatch(List<DeviceMeasurement> measurements, Consumer<List<HourlyDelta>> write) {
+        long start = System.nanoTime();
+        FoldedBatch batch = fold(measurements);
+        write.accept(toDeltas(batch.hours()));
 
-                if (deviceRef.getUserId() != null) {
-                    alert.put("userId", deviceRef.getUserId());
-                } else {
-                    log.error("Device {} has no user assigned in monitoring DB! Cannot send alert.", deviceId);
-                    return; // Nu putem trimite alerta fără destinatar
+        batch.hours().forEach(this::onHourPersisted);
+        if (batch.accepted() > 0) {
+            ingestMetrics.record(IngestMetrics.Stage.PROCESS, start);
+        }
+        return batch.accepted();
+    }
+
+    /**
+     * Validates and deduplicates a batch of readings and sums them into one delta per
+     * (device, hour), keeping apart the part made of late readings and the readings themselves,
+     * which are only stored for charts and observed for anomalies once their hour is written.
+     */
+    private FoldedBatch fold(List<DeviceMeasurement> measurements) {
+        Map<DeviceHour, FoldedHour> hours = new LinkedHashMap<>();
+        int accepted = 0;
+        for (DeviceMeasurement measurement : measurements) {
+            if (!isValid(measurement)) {
+                ingestMetrics.measurement(IngestMetrics.Outcome.INVALID);
+                log.warn("Skipping invalid measurement: {}", measurement);
+                continue;
+            }
+            heartbeats.recordSeen(measurement.getDeviceId());
+            boolean detail = hotPathLogger.isDetailEnabled(measurement.getDeviceId());
+            if (detail) {
+                log.info("Received device measurement: deviceId={}, value={}, timestamp={}",
+                        measurement.getDeviceId(), measurement.getMeasurementValue(), measurement.getTimestamp());
+            }
+            if (deduplicator.isDuplicate(measurement.getDeviceId(), measurement.getTimestamp())) {
+                ingestMetrics.measurement(IngestMetrics.Outcome.DUPLICATE);
+                if (detail) {
+                    log.info("Dropping duplicate measurement: {}", measurement);
                 }
+                continue;
+            }
+            ingestMetrics.lag(measurement.getTimestamp());
+            DeviceHour key = new DeviceHour(measurement.getDeviceId(),
+                    measurement.getTimestamp().truncatedTo(ChronoUnit.HOURS));
+            boolean late = watermarks.isLate(measurement.getDeviceId(), measurement.getTimestamp());
+            FoldedHour hour = hours.computeIfAbsent(key, k -> new FoldedHour());
+            hour.add(measurement, late);
+            if (detail) {
+                log.info("Folded {} measurement into device {} at {}: {} kWh in this batch",
+                        late ? "late" : "current", measurement.getDeviceId(), key.hour(),
+                        EnergyUnits.toKilowattHours(late ? hour.correction : hour.total));
+            }
+            ingestMetrics.measurement(late ? IngestMetrics.Outcome.LATE : IngestMetrics.Outcome.ACCEPTED);
+            accepted++;
+        }
+        return new FoldedBatch(hours, accepted);
+    }
 
-                alert.put("timestamp", timestamp.toString());
-                alert.put("measurementValue", currentConsumption);
-                alert.put("limit", deviceRef.getMaxConsumption());
-                alert.put("message", "High energy consumption detected!");
+    private void writeFolded(Map<DeviceHour, FoldedHour> hours) {
+        if (hours.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            consumptionRepository.applyHourlyDeltas(toDeltas(hours));
+            ingestMetrics.record(IngestMetrics.Stage.DB_WRITE, start);
+            hours.forEach(this::onHourPersisted);
+            return;
+        } catch (RuntimeException e) {
+            ingestMetrics.error(IngestMetrics.Stage.DB_WRITE);
+            if (DataAccessFailures.isTransient(e)) {
+                forgetReadings(hours.values());
+                throw e;
+            }
+            log.warn("Batch write of {} hourly deltas failed, retrying them one by one: {}",
+                    hours.size(), e.getMessage());
+        }
 
-                String jsonAlert = objectMapper.writeValueAsString(alert);
-                rabbitTemplate.convertAndSend(alertExchange, alertRoutingKey, jsonAlert);
+        Map<DeviceHour, FoldedHour> unwritten = new LinkedHashMap<>(hours);
+        for (Iterator<Map.Entry<DeviceHour, FoldedHour>> it = unwritten.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<DeviceHour, FoldedHour> entry = it.next();
+            HourlyDelta delta = toDelta(entry.getKey(), entry.getValue());
+            try {
+                consumptionRepository.upsertHourlyConsumption(
+                        delta.getDeviceId(), delta.getTimestamp(), EnergyUnits.toDecimal(delta.getDelta()));
+            } catch (RuntimeException deltaError) {
+                ingestMetrics.error(IngestMetrics.Stage.DB_WRITE);
+                if (DataAccessFailures.isTransient(deltaError)) {
+                    forgetReadings(unwritten.values());
+                    throw deltaError;
+                }
+                log.error("Dropping hourly delta {}: {}", delta, deltaError.getMessage());
+                it.remove();
+                continue;
+            }
+            it.remove();
+            onHourPersisted(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void forgetReadings(Collection<FoldedHour> hours) {
+        for (FoldedHour hour : hours) {
+            for (FoldedReading reading : hour.readings) {
+                deduplicator.forget(reading.measurement().getDeviceId(), reading.measurement().getTimestamp());
+            }
+        }
+    }
 
-                log.info("Alert sent to RabbitMQ for User {}: {}", deviceRef.getUserId(), jsonAlert);
+    /**
+     * Stores the readings of a written hour for charts and, once its current part is counted,
+     * publishes the limit and anomaly alerts, so a failed write raises no alert.
+     */
+    private void onHourPersisted(DeviceHour key, FoldedHour hour) {
+        if (hour.onTime > 0) {
+            onDeltaPersisted(new HourlyDelta(key.deviceId(), key.hour(), hour.total));
+        }
+        for (FoldedReading reading : hour.readings) {
+            DeviceMeasurement measurement = reading.measurement();
+            recentReadingsStore.append(measurement.getDeviceId(), measurement.getTimestamp(),
+                    measurement.getMeasurementValue());
+            if (reading.late()) {
+                continue;
+            }
+            ConsumptionBaselines.Anomaly anomaly = baselines.observe(
+                    measurement.getDeviceId(), measurement.getTimestamp(), measurement.getMeasurementValue());
+            if (anomaly != null) {
+                alertPublisher.publishAnomaly(measurement.getDeviceId(), measurement.getTimestamp(),
+                        measurement.getMeasurementValue(), anomaly);
             }
-        } catch (Exception e) {
-            log.error("Failed to process alert logic", e);
         }
+        if (hour.onTime < hour.readings.size()) {
+            onCorrectionPersisted(new HourlyDelta(key.deviceId(), key.hour(), hour.correction),
+                    hotPathLogger.isDetailEnabled(key.deviceId()));
+        }
+    }
+
+    private List<HourlyDelta> toDeltas(Map<DeviceHour, FoldedHour> hours) {
+        return hours.entrySet().stream()
+                .map(entry -> toDelta(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    private static HourlyDelta toDelta(DeviceHour key, FoldedHour hour) {
+        return new HourlyDelta(key.deviceId(), key.hour(), hour.total + hour.correction);
+    }
+
+    /**
+     * Adds a late reading straight to the stored total of its (closed) hour. The write-behind
+     * buffer and the alert state are left alone, since they only follow the current hour.
+     */
+    private void applyCorrection(HourlyDelta delta, boolean detail) {
+        long start = System.nanoTime();
+        try {
+            consumptionRepository.upsertHourlyConsumption(
+                    delta.getDeviceId(), delta.getTimestamp(), EnergyUnits.toDecimal(delta.getDelta()));
+            ingestMetrics.record(IngestMetrics.Stage.DB_WRITE, start);
+            onCorrectionPersisted(delta, detail);
+        } catch (RuntimeException e) {
+            ingestMetrics.error(IngestMetrics.Stage.DB_WRITE);
+            log.error("Dropping late correction {}: {}", delta, e.getMessage());
+        }
+    }
+
+    private void onDeltaPersisted(HourlyDelta delta) {
+        double newTotal = EnergyUnits.toKilowattHours(consumptionAccumulator.addPersisted(
+                delta.getDeviceId(), delta.getTimestamp(), delta.getDelta()));
+        alertPublisher.checkConsumption(delta.getDeviceId(), newTotal, delta.getTimestamp());
+        responseCache.invalidateClosedDays(List.of(delta));
+    }
+
+    private void onCorrectionPersisted(HourlyDelta delta, boolean detail) {
+        if (detail) {
+            log.info("Applied late correction {}", delta);
+        }
+        responseCache.invalidateClosedDays(List.of(delta));
+    }
+
+    public boolean isValid(DeviceMeasurement measurement) {
+        return measurement.getDeviceId() != null
+                && measurement.getTimestamp() != null
+                && measurement.getMeasurementValue() != null
+                && Double.isFinite(measurement.getMeasurementValue());
     }
 
     @Transactional(readOnly = true)
@@ -113,12 +364,141 @@ public class MonitoringService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Hourly consumption of one day together with its ETag. Closed days are answered from the
+     * response cache when possible, so browsing history does not reach the database.
+     */
+    public ConsumptionResponseCache.Entry getHourlyConsumptionResponse(Long deviceId, LocalDate date) {
+        boolean closed = responseCache.isClosed(date);
+        if (closed) {
+            ConsumptionResponseCache.Entry cached = responseCache.get(deviceId, date);
+            if (cached != null) {
+                log.debug("Serving hourly consumption of device {} on {} from cache", deviceId, date);
+                return cached;
+            }
+        }
+
+        long generation = responseCache.generation();
+        List<HourlyConsumptionDTO> body = getHourlyConsumptionByDeviceAndDate(deviceId, date);
+        ConsumptionResponseCache.Entry entry = new ConsumptionResponseCache.Entry(
+                body, ConsumptionResponseCache.etagOf(deviceId, date, body), closed);
+        if (closed) {
+            responseCache.put(deviceId, date, entry, generation);
+        }
+        return entry;
+    }
+
+    /**
+     * Hourly totals of several devices over whole days {@code from..to} (inclusive), read with a
+     * single query and grouped per device.
+     */
+    @Transactional(readOnly = true)
+    public List<DeviceConsumptionSeriesDTO> getHourlyConsumptionForDevices(
+            Set<Long> deviceIds, LocalDate from, LocalDate to) {
+        if (deviceIds.isEmpty()) {
+            throw new InvalidRequestException("At least one deviceId is required");
+        }
+        if (deviceIds.size() > maxBulkDevices) {
+            throw new InvalidRequestException("At most " + maxBulkDevices + " devices can be queried at once");
+        }
+        if (to.isBefore(from)) {
+            throw new InvalidRequestException("'to' must not be before 'from'");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxBulkRangeDays) {
+            throw new InvalidRequestException("Hourly range is limited to " + maxBulkRangeDays + " days");
+        }
+
+        log.info("Fetching hourly consumption for {} devices from {} to {}", deviceIds.size(), from, to);
+
+        List<HourlyConsumptionView> rows = consumptionRepository.findHourlyConsumption(
+                deviceIds, from.atStartOfDay(), to.plusDays(1).atStartOfDay());
+
+        List<DeviceConsumptionSeriesDTO> series = new ArrayList<>();
+        DeviceConsumptionSeriesDTO current = null;
+        for (HourlyConsumptionView row : rows) {
+            if (current == null || !current.getDeviceId().equals(row.getDeviceId())) {
+                current = new DeviceConsumptionSeriesDTO(row.getDeviceId(), new ArrayList<>(), new ArrayList<>());
+                series.add(current);
+            }
+            current.getTimestamps().add(row.getTimestamp());
+            current.getValues().add(row.getTotalConsumption().doubleValue());
+        }
+        return series;
+    }
+
+    @Transactional(readOnly = true)
+    public List<ConsumptionTotalDTO> getDailyConsumption(Long deviceId, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new InvalidRequestException("'to' must not be before 'from'");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxDailyRangeDays) {
+            throw new InvalidRequestException("Daily range is limited to " + maxDailyRangeDays + " days");
+        }
+
+        log.info("Fetching daily consumption for device {} from {} to {}", deviceId, from, to);
+
+        return dailyConsumptionRepository.findByDeviceIdAndDayBetweenOrderByDayAsc(deviceId, from, to)
+                .stream()
+                .map(daily -> new ConsumptionTotalDTO(
+                        daily.getDeviceId(), daily.getDay(), daily.getTotalConsumption().doubleValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    public List<ConsumptionTotalDTO> getMonthlyConsumption(Long deviceId, int year) {
+        log.info("Fetching monthly consumption for device {} in {}", deviceId, year);
+
+        return monthlyConsumptionRepository.findByDeviceIdAndMonthBetweenOrderByMonthAsc(
+                        deviceId, LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 1))
+                .stream()
+                .map(monthly -> new ConsumptionTotalDTO(
+                        monthly.getDeviceId(), monthly.getMonth(), monthly.getTotalConsumption().doubleValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    public List<ConsumptionTotalDTO> getYearlyConsumption(Long deviceId) {
+        log.info("Fetching yearly consumption for device {}", deviceId);
+
+        Map<Integer, BigDecimal> totals = new TreeMap<>();
+        for (MonthlyConsumption monthly : monthlyConsumptionRepository.findByDeviceIdOrderByMonthAsc(deviceId)) {
+            totals.merge(monthly.getMonth().getYear(), monthly.getTotalConsumption(), BigDecimal::add);
+        }
+
+        return totals.entrySet().stream()
+                .map(entry -> new ConsumptionTotalDTO(
+                        deviceId, LocalDate.of(entry.getKey(), 1, 1), entry.getValue().doubleValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Raw readings of a device from the in-memory recent window of every replica; anything older
+     * than the retention period is only available as hourly totals.
+     */
+    public RecentReadingsPeers.Result getRecentReadings(Long deviceId, LocalDateTime from, LocalDateTime to) {
+        DeviceConsumptionSeriesDTO local = getLocalRecentReadings(deviceId, from, to);
+        return recentReadingsPeers.collect(local, from, to);
+    }
+
+    /**
+     * Raw readings of a device ingested by this replica only.
+     */
+    public DeviceConsumptionSeriesDTO getLocalRecentReadings(Long deviceId, LocalDateTime from, LocalDateTime to) {
+        if (!to.isAfter(from)) {
+            throw new InvalidRequestException("'to' must be after 'from'");
+        }
+
+        log.info("Fetching raw readings for device {} from {} to {}", deviceId, from, to);
+
+        return recentReadingsStore.query(deviceId, from, to);
+    }
+
     private HourlyConsumptionDTO toDTO(EnergyConsumption consumption) {
         return HourlyConsumptionDTO.builder()
                 .id(consumption.getId())
                 .deviceId(consumption.getDeviceId())
                 .timestamp(consumption.getTimestamp())
-                .totalConsumption(consumption.getTotalConsumption())
+                .totalConsumption(consumption.getTotalConsumption().doubleValue())
                 .build();
     }
 
@@ -126,10 +506,119 @@ public class MonitoringService {
     public void deleteDeviceCredentials(Long deviceId) {
         log.info("Attempting to delete all data for device ID: {}", deviceId);
 
-        consumptionRepository.deleteByDeviceId(deviceId);
-        log.info("Deleted energy consumption records for device ID: {}", deviceId);
+        evictDevice(deviceId);
+        deleteConsumption(deviceId);
 
         referenceRepository.deleteById(deviceId);
+        responseCache.invalidate(deviceId, null);
+        deviceStateBroadcaster.deviceDeleted(deviceId);
         log.info("Successfully deleted device reference for device ID: {}", deviceId);
     }
+
+    /**
+     * Applies a device delete made on another replica: drops the device's in-memory state, so
+     * this replica neither flushes its buffered totals nor reports it silent, and then deletes
+     * the rows again, in case a flush from here recreated some before the eviction.
+     */
+    @Transactional
+    public void onDeviceDeleted(Long deviceId) {
+        evictDevice(deviceId);
+        deleteConsumption(deviceId);
+    }
+
+    private void evictDevice(Long deviceId) {
+        consumptionAccumulator.evictDevice(deviceId);
+        recentReadingsStore.evictDevice(deviceId);
+        deduplicator.evictDevice(deviceId);
+        watermarks.evictDevice(deviceId);
+        baselines.evictDevice(deviceId);
+        heartbeats.evictDevice(deviceId);
+        ingestPipeline.ifAvailable(pipeline -> pipeline.evictDevice(deviceId));
+        deviceLimitCache.invalidate(deviceId);
+        alertStateTracker.forget(deviceId);
+    }
+
+    private void deleteConsumption(Long deviceId) {
+        consumptionRepository.deleteByDeviceId(deviceId);
+        dailyConsumptionRepository.deleteByDeviceId(deviceId);
+        monthlyConsumptionRepository.deleteByDeviceId(deviceId);
+        log.info("Deleted energy consumption records for device ID: {}", deviceId);
+    }
+
+    public DeviceCacheStatsDTO getDeviceCacheStats() {
+        return deviceLimitCache.getStats();
+    }
+
+    public Optional<PipelineStatsDTO> getPipelineStats() {
+        return Optional.ofNullable(ingestPipeline.getIfAvailable()).map(IngestPipeline::getStats);
+    }
+
+    public Optional<JournalStatsDTO> getJournalStats() {
+        return Optional.ofNullable(measurementJournal.getIfAvailable()).map(MeasurementJournal::getStats);
+    }
+
+    public BaselineStatsDTO getBaselineStats() {
+        return baselines.getStats();
+    }
+
+    public HeartbeatStatsDTO getHeartbeatStats() {
+        return heartbeats.getStats();
+    }
+
+    public RecentReadingsStatsDTO getRecentReadingsStats() {
+        return recentReadingsStore.getStats();
+    }
+
+    public DedupStatsDTO getDedupStats() {
+        return deduplicator.getStats();
+    }
+
+    public LatenessStatsDTO getLatenessStats() {
+        return watermarks.getStats();
+    }
+
+    /**
+     * Switches per-message logging for a device here and, through the device-state exchange, on
+     * every other replica, since the request reaches only one of them.
+     */
+    public Set<Long> traceDevice(Long deviceId, boolean enabled) {
+        if (enabled) {
+            hotPathLogger.trace(deviceId);
+        } else {
+            hotPathLogger.untrace(deviceId);
+        }
+        deviceStateBroadcaster.deviceTraced(deviceId, enabled);
+        return hotPathLogger.getTracedDevices();
+    }
+
+    private record DeviceHour(Long deviceId, LocalDateTime hour) {
+    }
+
+    private record FoldedReading(DeviceMeasurement measurement, boolean late) {
+    }
+
+    /**
+     * Readings of one (device, hour) in a batch: the sum of the on-time ones, which counts towards
+     * the hour's alerts, and of the late ones, which only corrects the stored total.
+     */
+    private static final class FoldedHour {
+        private final List<FoldedReading> readings = new ArrayList<>();
+        private long total;
+        private long correction;
+        private int onTime;
+
+        void add(DeviceMeasurement measurement, boolean late) {
+            readings.add(new FoldedReading(measurement, late));
+            long amount = EnergyUnits.toMilliwattHours(measurement.getMeasurementValue());
+            if (late) {
+                correction += amount;
+            } else {
+                total += amount;
+                onTime++;
+            }
+        }
+    }
+
+    private record FoldedBatch(Map<DeviceHour, FoldedHour> hours, int accepted) {
+    }
 }
\ No newline at end of file
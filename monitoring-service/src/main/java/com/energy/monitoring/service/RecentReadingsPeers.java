@@ -0,0 +1,95 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.DeviceConsumptionSeriesDTO;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Collects a device's recent readings from the other replicas.
+ * <p>
+ * A {@link RecentReadingsStore} only holds the readings its replica ingested, and the REST
+ * gateway spreads requests over all replicas, so the replica answering a query is usually not the
+ * one that owns the device. It asks every peer in {@code monitoring.recent-readings.peers} for
+ * its local part and merges the answers; peers that do not answer are reported, so the response
+ * can say that it is incomplete.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RecentReadingsPeers {
+
+    private final RestTemplateBuilder restTemplateBuilder;
+
+    @Value("${monitoring.recent-readings.peers:}")
+    private List<String> peers;
+
+    @Value("${monitoring.recent-readings.peer-timeout:PT2S}")
+    private Duration peerTimeout;
+
+    private RestTemplate restTemplate;
+
+    @PostConstruct
+    void init() {
+        restTemplate = restTemplateBuilder
+                .connectTimeout(peerTimeout)
+                .readTimeout(peerTimeout)
+                .build();
+    }
+
+    /**
+     * Merges {@code local} with the local readings of every peer, oldest first.
+     */
+    public Result collect(DeviceConsumptionSeriesDTO local, LocalDateTime from, LocalDateTime to) {
+        List<DeviceConsumptionSeriesDTO> parts = new ArrayList<>();
+        parts.add(local);
+        List<String> unreachable = new ArrayList<>();
+        for (String peer : peers) {
+            try {
+                DeviceConsumptionSeriesDTO part = restTemplate.getForObject(
+                        peer + "/monitoring/internal/readings/local/{deviceId}?from={from}&to={to}",
+                        DeviceConsumptionSeriesDTO.class, local.getDeviceId(), from, to);
+                if (part != null) {
+                    parts.add(part);
+                }
+            } catch (RestClientException e) {
+                log.warn("Replica {} did not return readings of device {}: {}", peer, local.getDeviceId(),
+                        e.getMessage());
+                unreachable.add(peer);
+            }
+        }
+        return new Result(merge(local.getDeviceId(), parts), unreachable);
+    }
+
+    private static DeviceConsumptionSeriesDTO merge(Long deviceId, List<DeviceConsumptionSeriesDTO> parts) {
+        record Reading(LocalDateTime timestamp, Double value) {
+        }
+        List<Reading> readings = parts.stream()
+                .flatMap(part -> IntStream.range(0, part.getTimestamps().size())
+                        .mapToObj(i -> new Reading(part.getTimestamps().get(i), part.getValues().get(i))))
+                .sorted(Comparator.comparing(Reading::timestamp))
+                .toList();
+        return new DeviceConsumptionSeriesDTO(deviceId,
+                new ArrayList<>(readings.stream().map(Reading::timestamp).toList()),
+                new ArrayList<>(readings.stream().map(Reading::value).toList()));
+    }
+
+    /**
+     * @param series      readings of every replica that answered
+     * @param unreachable peers whose readings are missing from {@code series}
+     */
+    public record Result(DeviceConsumptionSeriesDTO series, List<String> unreachable) {
+    }
+}
@@ -0,0 +1,164 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.DeviceConsumptionSeriesDTO;
+import com.energy.monitoring.dto.RecentReadingsStatsDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the raw readings of the last {@code monitoring.recent-readings.retention-days} days in
+ * memory, so sub-hourly charts do not need a raw table in the database.
+ * <p>
+ * Each device has one {@link GorillaChunk} per day; a chunk is sealed when the device moves on to
+ * the next day and dropped once it falls out of the retention window. Readings older than the
+ * newest one already stored for the device are counted and dropped, since the chunks are
+ * append-only.
+ */
+@Component
+@Slf4j
+public class RecentReadingsStore {
+
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    @Value("${monitoring.recent-readings.enabled:true}")
+    private boolean enabled;
+
+    @Value("${monitoring.recent-readings.retention-days:7}")
+    private int retentionDays;
+
+    private final Map<Long, DeviceSeries> series = new ConcurrentHashMap<>();
+    private final LongAdder outOfOrderDropped = new LongAdder();
+
+    public void append(Long deviceId, LocalDateTime timestamp, double value) {
+        if (!enabled) {
+            return;
+        }
+        long second = timestamp.toEpochSecond(ZoneOffset.UTC);
+        long day = Math.floorDiv(second, SECONDS_PER_DAY);
+
+        while (true) {
+            DeviceSeries device = series.computeIfAbsent(deviceId, id -> new DeviceSeries());
+            synchronized (device) {
+                // purgeExpired may have unlinked this series after we looked it up
+                if (series.get(deviceId) == device) {
+                    appendTo(device, second, day, value);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void appendTo(DeviceSeries device, long second, long day, double value) {
+        GorillaChunk last = device.chunks.peekLast();
+        if (last != null && second < last.lastTimestamp()) {
+            outOfOrderDropped.increment();
+            return;
+        }
+        if (last == null || last.day() != day) {
+            if (last != null) {
+                last.seal();
+            }
+            last = new GorillaChunk(day);
+            device.chunks.addLast(last);
+            while (device.chunks.size() > 1 && device.chunks.peekFirst().day() <= day - retentionDays) {
+                device.chunks.removeFirst();
+            }
+        }
+        last.append(second, value);
+    }
+
+    /**
+     * Raw readings of a device with {@code from <= timestamp < to}, oldest first.
+     */
+    public DeviceConsumptionSeriesDTO query(Long deviceId, LocalDateTime from, LocalDateTime to) {
+        DeviceConsumptionSeriesDTO result = new DeviceConsumptionSeriesDTO(deviceId, new ArrayList<>(), new ArrayList<>());
+        DeviceSeries device = series.get(deviceId);
+        if (device == null) {
+            return result;
+        }
+
+        long fromSecond = from.toEpochSecond(ZoneOffset.UTC);
+        long toSecond = to.toEpochSecond(ZoneOffset.UTC);
+        synchronized (device) {
+            for (GorillaChunk chunk : device.chunks) {
+                chunk.forEach(fromSecond, toSecond, (second, value) -> {
+                    result.getTimestamps().add(LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC));
+                    result.getValues().add(value);
+                });
+            }
+        }
+        return result;
+    }
+
+    public void evictDevice(Long deviceId) {
+        series.remove(deviceId);
+    }
+
+    /**
+     * Drops days past the retention window for devices that stopped reporting, which
+     * {@link #append} never gets a chance to trim.
+     */
+    @Scheduled(fixedDelayString = "${monitoring.recent-readings.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        long oldestKept = Math.floorDiv(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC), SECONDS_PER_DAY)
+                - retentionDays + 1;
+        int removed = 0;
+        for (Map.Entry<Long, DeviceSeries> entry : series.entrySet()) {
+            DeviceSeries device = entry.getValue();
+            synchronized (device) {
+                while (!device.chunks.isEmpty() && device.chunks.peekFirst().day() < oldestKept) {
+                    device.chunks.removeFirst();
+                }
+                if (device.chunks.isEmpty() && series.remove(entry.getKey(), device)) {
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            log.info("Dropped recent readings of {} devices with no data in the last {} days", removed, retentionDays);
+        }
+    }
+
+    public RecentReadingsStatsDTO getStats() {
+        int devices = 0;
+        int chunks = 0;
+        long points = 0;
+        long compressed = 0;
+        long allocated = 0;
+        for (DeviceSeries device : series.values()) {
+            synchronized (device) {
+                devices++;
+                for (GorillaChunk chunk : device.chunks) {
+                    chunks++;
+                    points += chunk.count();
+                    compressed += chunk.sizeBytes();
+                    allocated += chunk.capacityBytes();
+                }
+            }
+        }
+        return RecentReadingsStatsDTO.builder()
+                .retentionDays(retentionDays)
+                .devices(devices)
+                .chunks(chunks)
+                .points(points)
+                .compressedBytes(compressed)
+                .allocatedBytes(allocated)
+                .bytesPerPoint(points > 0 ? (double) compressed / points : 0)
+                .outOfOrderDropped(outOfOrderDropped.sum())
+                .build();
+    }
+
+    private static final class DeviceSeries {
+        private final ArrayDeque<GorillaChunk> chunks = new ArrayDeque<>();
+    }
+}
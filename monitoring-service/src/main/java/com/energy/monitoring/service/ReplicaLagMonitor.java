@@ -0,0 +1,74 @@
+package com.energy.monitoring.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Polls the read replica for its replay lag. Reads fall back to the primary while the lag is
+ * above {@code monitoring.datasource.replica.max-lag} or the replica cannot be queried.
+ * <p>
+ * A replica that has replayed everything it received counts as zero lag, so an idle primary
+ * does not make the replica look stale. A plain (non-recovering) server, such as a second local
+ * Postgres used in tests, always counts as caught up.
+ */
+@Component
+@ConditionalOnProperty(name = "monitoring.datasource.replica.enabled", havingValue = "true")
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private static final String LAG_SQL =
+            "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 " +
+            "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private final JdbcTemplate replicaJdbcTemplate;
+
+    @Value("${monitoring.datasource.replica.max-lag:PT5S}")
+    private Duration maxLag;
+
+    private volatile boolean replicaUsable;
+    private volatile double lastLagSeconds = Double.NaN;
+
+    public ReplicaLagMonitor(@Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        this.replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+        this.replicaJdbcTemplate.setQueryTimeout(2);
+    }
+
+    @Scheduled(fixedDelayString = "${monitoring.datasource.replica.check-interval-ms:2000}")
+    public void checkLag() {
+        boolean usable;
+        try {
+            Double lag = replicaJdbcTemplate.queryForObject(LAG_SQL, Double.class);
+            lastLagSeconds = lag != null ? lag : Double.NaN;
+            usable = lag != null && lag * 1000 <= maxLag.toMillis();
+        } catch (RuntimeException e) {
+            lastLagSeconds = Double.NaN;
+            usable = false;
+            if (replicaUsable) {
+                log.warn("Read replica check failed: {}", e.getMessage());
+            }
+        }
+
+        if (usable != replicaUsable) {
+            log.warn("Read replica {} (lag {}s, max {}s)", usable ? "back in use" : "bypassed, reading from primary",
+                    lastLagSeconds, maxLag.toSeconds());
+        }
+        replicaUsable = usable;
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    public double getLastLagSeconds() {
+        return lastLagSeconds;
+    }
+}
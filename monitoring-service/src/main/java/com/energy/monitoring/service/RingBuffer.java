@@ -0,0 +1,120 @@
+package com.energy.monitoring.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Bounded multi-producer, single-consumer ring of preallocated events, in the style of the LMAX
+ * Disruptor. Producers claim a sequence with {@link #next()}, fill {@link #get(long)} in place and
+ * make it visible with {@link #publish(long)}; a full ring makes producers wait, which pushes back
+ * on the RabbitMQ listeners. The consumer takes every contiguous published event in one go
+ * ({@link #waitFor(long, long)}), processes them and hands the slots back with
+ * {@link #release(long)}.
+ */
+final class RingBuffer<E> {
+
+    private static final long PRODUCER_PARK_NANOS = 100_000;
+
+    private final Object[] entries;
+    private final int mask;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final AtomicLong consumed = new AtomicLong(-1);
+    private final WaitStrategy waitStrategy;
+
+    private volatile Thread consumer;
+    private volatile boolean consumerParked;
+
+    RingBuffer(int size, Supplier<E> factory, WaitStrategy waitStrategy) {
+        int capacity = Integer.highestOneBit(Math.max(size, 2) * 2 - 1);
+        this.entries = new Object[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = factory.get();
+            published.set(i, -1);
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    int capacity() {
+        return entries.length;
+    }
+
+    /**
+     * Claims the next sequence, waiting while the ring is full. Producers are listener threads
+     * (often virtual), so they back off to parking whatever the consumer's wait strategy is.
+     */
+    long next() {
+        long sequence = claimed.incrementAndGet();
+        long wrapPoint = sequence - entries.length;
+        for (int attempt = 0; wrapPoint > consumed.get(); attempt++) {
+            WaitStrategy.SLEEPING.idle(attempt, PRODUCER_PARK_NANOS);
+        }
+        return sequence;
+    }
+
+    @SuppressWarnings("unchecked")
+    E get(long sequence) {
+        return (E) entries[(int) sequence & mask];
+    }
+
+    void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Waits up to {@code timeoutNanos} for {@code sequence} to be published.
+     *
+     * @return the highest sequence such that it and all before it are published, or
+     *         {@code sequence - 1} if none arrived in time
+     */
+    long waitFor(long sequence, long timeoutNanos) {
+        if (!isPublished(sequence)) {
+            consumer = Thread.currentThread();
+            long deadline = System.nanoTime() + timeoutNanos;
+            for (int attempt = 0; !isPublished(sequence); attempt++) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return sequence - 1;
+                }
+                if (waitStrategy == WaitStrategy.BLOCKING) {
+                    consumerParked = true;
+                    if (!isPublished(sequence)) {
+                        LockSupport.parkNanos(remaining);
+                    }
+                    consumerParked = false;
+                } else {
+                    waitStrategy.idle(attempt, remaining);
+                }
+            }
+        }
+
+        long available = sequence;
+        long limit = claimed.get();
+        while (available < limit && isPublished(available + 1)) {
+            available++;
+        }
+        return available;
+    }
+
+    void release(long sequence) {
+        consumed.set(sequence);
+    }
+
+    /**
+     * Claimed events not yet released by the consumer.
+     */
+    long backlog() {
+        return Math.max(claimed.get() - consumed.get(), 0);
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == sequence;
+    }
+}
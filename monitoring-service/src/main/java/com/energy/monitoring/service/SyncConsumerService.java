@@ -17,6 +17,8 @@ public class SyncConsumerService {
 
     private final UserReferenceRepository userReferenceRepository;
     private final DeviceReferenceRepository deviceReferenceRepository;
+    private final DeviceLimitCache deviceLimitCache;
+    private final DeviceStateBroadcaster deviceStateBroadcaster;
 
     @Transactional
     public void handleSyncEvent(SyncEvent event) {
@@ -56,6 +58,10 @@ public class SyncConsumerService {
                 .build();
 
         deviceReferenceRepository.save(deviceRef);
+        deviceLimitCache.put(deviceRef.getDeviceId(), deviceRef.getMaxConsumption(), deviceRef.getUserId());
+        // Only this replica gets the sync event; the others may have cached the device as unknown
+        deviceStateBroadcaster.deviceCreated(deviceRef.getDeviceId(), deviceRef.getMaxConsumption(),
+                deviceRef.getUserId());
         log.info("Device reference saved successfully in monitoring-service");
     }
 }
\ No newline at end of file
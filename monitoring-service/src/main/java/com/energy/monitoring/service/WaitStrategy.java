@@ -0,0 +1,49 @@
+package com.energy.monitoring.service;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How the ingest pipeline's threads wait for a ring buffer, trading CPU for latency:
+ * <ul>
+ *   <li>{@code BUSY_SPIN}: never gives up the core; lowest latency, one core per thread.</li>
+ *   <li>{@code YIELDING}: spins briefly, then yields to other runnable threads.</li>
+ *   <li>{@code SLEEPING}: spins, yields, then parks for 100 microseconds; near-idle CPU when
+ *       there is no traffic.</li>
+ *   <li>{@code BLOCKING}: parks until a producer wakes the consumer up; least CPU, highest
+ *       latency.</li>
+ * </ul>
+ */
+public enum WaitStrategy {
+
+    BUSY_SPIN, YIELDING, SLEEPING, BLOCKING;
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long SLEEP_NANOS = 100_000;
+
+    /**
+     * Waits once; {@code attempt} counts the unsuccessful checks so far.
+     */
+    void idle(int attempt, long maxParkNanos) {
+        switch (this) {
+            case BUSY_SPIN -> Thread.onSpinWait();
+            case YIELDING -> {
+                if (attempt < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            case SLEEPING -> {
+                if (attempt < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else if (attempt < YIELD_TRIES) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(Math.min(SLEEP_NANOS, maxParkNanos));
+                }
+            }
+            case BLOCKING -> LockSupport.parkNanos(maxParkNanos);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+-- Runs after Hibernate has updated the schema (spring.jpa.defer-datasource-initialization=true).
+-- Statements are separated by "^;" so that PL/pgSQL bodies can contain plain semicolons.
+
+-- Hourly rows are unique per (device_id, timestamp). Databases created before the key existed may
+-- contain duplicates from concurrent find-then-save writes; fold them into the oldest row first.
+DO $$
+BEGIN
+    IF to_regclass('uk_energy_consumption_device_hour') IS NULL THEN
+        UPDATE energy_consumption e
+        SET total_consumption = d.total
+        FROM (SELECT MIN(id) AS keep_id, SUM(total_consumption) AS total
+              FROM energy_consumption
+              GROUP BY device_id, timestamp
+              HAVING COUNT(*) > 1) d
+        WHERE e.id = d.keep_id;
+
+        DELETE FROM energy_consumption e
+        USING energy_consumption k
+        WHERE e.device_id = k.device_id
+          AND e.timestamp = k.timestamp
+          AND e.id > k.id;
+
+        CREATE UNIQUE INDEX uk_energy_consumption_device_hour
+            ON energy_consumption (device_id, timestamp);
+    END IF;
+END $$^;
+
+-- Creates the monthly partition of energy_consumption that starts at month_start, if missing.
+-- The unique key of the parent gives every partition its own (device_id, timestamp) index.
+-- Rows of that month already in the DEFAULT partition (written while the partition was missing)
+-- would make the creation fail, so they are taken out first and inserted again afterwards; the
+-- rollup trigger sees a delete and an insert of the same amount, leaving the rollups unchanged.
+CREATE OR REPLACE FUNCTION create_energy_consumption_partition(month_start date) RETURNS void AS $$
+DECLARE
+    partition_name text := 'energy_consumption_' || to_char(month_start, 'YYYY_MM');
+    range_start    date := date_trunc('month', month_start)::date;
+    range_end      date := (date_trunc('month', month_start) + interval '1 month')::date;
+    moved          bigint := 0;
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN;
+    END IF;
+
+    IF to_regclass('energy_consumption_default') IS NOT NULL THEN
+        CREATE TEMP TABLE energy_consumption_moved (LIKE energy_consumption) ON COMMIT DROP;
+        WITH taken AS (
+            DELETE FROM energy_consumption_default
+            WHERE timestamp >= range_start AND timestamp < range_end
+            RETURNING id, device_id, timestamp, total_consumption, created_at
+        )
+        INSERT INTO energy_consumption_moved (id, device_id, timestamp, total_consumption, created_at)
+        SELECT id, device_id, timestamp, total_consumption, created_at FROM taken;
+        GET DIAGNOSTICS moved = ROW_COUNT;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I PARTITION OF energy_consumption FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, range_start, range_end);
+
+    IF moved > 0 THEN
+        INSERT INTO energy_consumption (id, device_id, timestamp, total_consumption, created_at)
+        SELECT id, device_id, timestamp, total_consumption, created_at FROM energy_consumption_moved;
+        RAISE NOTICE 'Moved % rows from energy_consumption_default to %', moved, partition_name;
+    END IF;
+    DROP TABLE IF EXISTS energy_consumption_moved;
+END
+$$ LANGUAGE plpgsql^;
+
+-- energy_consumption is range-partitioned by month on timestamp. A plain table left behind by
+-- Hibernate (fresh database) or by an older version is converted once, copying its rows.
+DO $$
+DECLARE
+    month_start date;
+    last_month date;
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = 'energy_consumption'::regclass) = 'r' THEN
+        ALTER TABLE energy_consumption RENAME TO energy_consumption_legacy;
+        ALTER INDEX uk_energy_consumption_device_hour RENAME TO uk_energy_consumption_legacy_device_hour;
+
+        CREATE SEQUENCE IF NOT EXISTS energy_consumption_partitioned_id_seq;
+        PERFORM setval('energy_consumption_partitioned_id_seq',
+                       COALESCE((SELECT MAX(id) FROM energy_consumption_legacy), 0) + 1, false);
+
+        CREATE TABLE energy_consumption (
+            id                bigint       NOT NULL DEFAULT nextval('energy_consumption_partitioned_id_seq'),
+            device_id         bigint       NOT NULL,
+            timestamp         timestamp(6) NOT NULL,
+            total_consumption numeric(20, 6) NOT NULL,
+            created_at        timestamp(6) NOT NULL,
+            CONSTRAINT pk_energy_consumption PRIMARY KEY (id, timestamp),
+            CONSTRAINT uk_energy_consumption_device_hour UNIQUE (device_id, timestamp)
+        ) PARTITION BY RANGE (timestamp);
+        ALTER SEQUENCE energy_consumption_partitioned_id_seq OWNED BY energy_consumption.id;
+
+        -- Catches rows outside every monthly partition instead of rejecting the write
+        CREATE TABLE energy_consumption_default PARTITION OF energy_consumption DEFAULT;
+
+        SELECT date_trunc('month', MIN(timestamp))::date, date_trunc('month', MAX(timestamp))::date
+        INTO month_start, last_month
+        FROM energy_consumption_legacy;
+        WHILE month_start IS NOT NULL AND month_start <= last_month LOOP
+            PERFORM create_energy_consumption_partition(month_start);
+            month_start := (month_start + interval '1 month')::date;
+        END LOOP;
+
+        INSERT INTO energy_consumption (id, device_id, timestamp, total_consumption, created_at)
+        SELECT id, device_id, timestamp, total_consumption, created_at
+        FROM energy_consumption_legacy;
+
+        DROP TABLE energy_consumption_legacy;
+    END IF;
+
+    PERFORM create_energy_consumption_partition(CURRENT_DATE);
+    PERFORM create_energy_consumption_partition((CURRENT_DATE + interval '1 month')::date);
+END $$^;
+
+-- Daily and monthly rollups are kept in step with every change of an hourly total by a trigger,
+-- so long-range charts read a few dozen rows instead of every hour. Dropping a partition for
+-- retention does not fire it, so rollups outlive the hourly data they were built from.
+CREATE UNIQUE INDEX IF NOT EXISTS uk_energy_consumption_daily_device_day
+    ON energy_consumption_daily (device_id, day)^;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_energy_consumption_monthly_device_month
+    ON energy_consumption_monthly (device_id, month)^;
+
+CREATE OR REPLACE FUNCTION energy_consumption_rollup() RETURNS trigger AS $$
+DECLARE
+    delta     numeric;
+    device    bigint;
+    hour_slot timestamp;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        delta := -OLD.total_consumption;
+        device := OLD.device_id;
+        hour_slot := OLD.timestamp;
+    ELSIF TG_OP = 'UPDATE' THEN
+        delta := NEW.total_consumption - OLD.total_consumption;
+        device := NEW.device_id;
+        hour_slot := NEW.timestamp;
+    ELSE
+        delta := NEW.total_consumption;
+        device := NEW.device_id;
+        hour_slot := NEW.timestamp;
+    END IF;
+
+    IF delta = 0 THEN
+        RETURN NULL;
+    END IF;
+
+    INSERT INTO energy_consumption_daily (device_id, day, total_consumption)
+    VALUES (device, hour_slot::date, delta)
+    ON CONFLICT (device_id, day)
+    DO UPDATE SET total_consumption = energy_consumption_daily.total_consumption + excluded.total_consumption;
+
+    INSERT INTO energy_consumption_monthly (device_id, month, total_consumption)
+    VALUES (device, date_trunc('month', hour_slot)::date, delta)
+    ON CONFLICT (device_id, month)
+    DO UPDATE SET total_consumption = energy_consumption_monthly.total_consumption + excluded.total_consumption;
+
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql^;
+
+-- Consumption is stored in kWh as numeric(20, 6), i.e. exact milliwatt-hours, so long sums do not
+-- drift. Databases from before that used double precision and are converted once (rewriting the
+-- tables). The rollup trigger names the column and has to be dropped for the conversion, so it is
+-- recreated in the same transaction.
+DO $$
+DECLARE
+    had_trigger boolean := EXISTS (SELECT 1 FROM pg_trigger WHERE tgname = 'energy_consumption_rollup');
+    rollup      text;
+BEGIN
+    IF (SELECT data_type FROM information_schema.columns
+        WHERE table_schema = current_schema() AND table_name = 'energy_consumption'
+          AND column_name = 'total_consumption') = 'double precision' THEN
+        DROP TRIGGER IF EXISTS energy_consumption_rollup ON energy_consumption;
+        ALTER TABLE energy_consumption
+            ALTER COLUMN total_consumption TYPE numeric(20, 6) USING round(total_consumption::numeric, 6);
+        IF had_trigger THEN
+            CREATE TRIGGER energy_consumption_rollup
+                AFTER INSERT OR UPDATE OF total_consumption OR DELETE ON energy_consumption
+                FOR EACH ROW EXECUTE FUNCTION energy_consumption_rollup();
+        END IF;
+    END IF;
+
+    FOREACH rollup IN ARRAY ARRAY['energy_consumption_daily', 'energy_consumption_monthly'] LOOP
+        IF (SELECT data_type FROM information_schema.columns
+            WHERE table_schema = current_schema() AND table_name = rollup
+              AND column_name = 'total_consumption') = 'double precision' THEN
+            EXECUTE format('ALTER TABLE %I ALTER COLUMN total_consumption TYPE numeric(20, 6) '
+                           || 'USING round(total_consumption::numeric, 6)', rollup);
+        END IF;
+    END LOOP;
+END $$^;
+
+-- One-time backfill when the rollups are introduced on a database that already has hourly data.
+-- Runs before the trigger exists so rows are not counted twice.
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_trigger WHERE tgname = 'energy_consumption_rollup') THEN
+        INSERT INTO energy_consumption_daily (device_id, day, total_consumption)
+        SELECT device_id, timestamp::date, SUM(total_consumption)
+        FROM energy_consumption
+        GROUP BY device_id, timestamp::date
+        ON CONFLICT (device_id, day) DO NOTHING;
+
+        INSERT INTO energy_consumption_monthly (device_id, month, total_consumption)
+        SELECT device_id, date_trunc('month', timestamp)::date, SUM(total_consumption)
+        FROM energy_consumption
+        GROUP BY device_id, date_trunc('month', timestamp)::date
+        ON CONFLICT (device_id, month) DO NOTHING;
+
+        CREATE TRIGGER energy_consumption_rollup
+            AFTER INSERT OR UPDATE OF total_consumption OR DELETE ON energy_consumption
+            FOR EACH ROW EXECUTE FUNCTION energy_consumption_rollup();
+    END IF;
+END $$^;
+
+-- Position up to which each replica's ingest journal has been applied. Written in the same
+-- transaction as the hourly deltas it covers, so a restarted replica replays exactly the rest.
+CREATE TABLE IF NOT EXISTS ingest_journal_checkpoint (
+    journal_id varchar(255) PRIMARY KEY,
+    position   bigint       NOT NULL,
+    updated_at timestamp(6) NOT NULL
+)^;
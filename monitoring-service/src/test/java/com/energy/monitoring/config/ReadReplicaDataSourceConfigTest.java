@@ -0,0 +1,95 @@
+package com.energy.monitoring.config;
+
+import com.energy.monitoring.service.ReplicaLagMonitor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReadReplicaDataSourceConfigTest {
+
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replica = mock(DataSource.class);
+    private final ReplicaLagMonitor replicaLagMonitor = mock(ReplicaLagMonitor.class);
+    private DataSource dataSource;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        Connection primaryConnection = mock(Connection.class);
+        when(primaryConnection.getAutoCommit()).thenReturn(true);
+        when(primaryConnection.getTransactionIsolation()).thenReturn(Connection.TRANSACTION_READ_COMMITTED);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(mock(Connection.class));
+
+        dataSource = new ReadReplicaDataSourceConfig().dataSource(primary, replica, replicaLagMonitor);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        // the lazy proxy reads the connection defaults from the primary on its first connection
+        dataSource.getConnection().close();
+        clearInvocations(primary, replica);
+    }
+
+    @Test
+    void readOnlyTransactionGoesToReplica() throws SQLException {
+        when(replicaLagMonitor.isReplicaUsable()).thenReturn(true);
+
+        runStatement(true);
+
+        verify(replica).getConnection();
+        verify(primary, never()).getConnection();
+    }
+
+    @Test
+    void readWriteTransactionGoesToPrimary() throws SQLException {
+        when(replicaLagMonitor.isReplicaUsable()).thenReturn(true);
+
+        runStatement(false);
+
+        verify(primary).getConnection();
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    void readOnlyTransactionFallsBackToPrimaryWhileReplicaLags() throws SQLException {
+        when(replicaLagMonitor.isReplicaUsable()).thenReturn(false);
+
+        runStatement(true);
+
+        verify(primary).getConnection();
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    void transactionWithoutStatementsFetchesNoConnection() throws SQLException {
+        when(replicaLagMonitor.isReplicaUsable()).thenReturn(true);
+
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(status -> {
+        });
+
+        verify(primary, never()).getConnection();
+        verify(replica, never()).getConnection();
+    }
+
+    private void runStatement(boolean readOnly) {
+        transactionTemplate.setReadOnly(readOnly);
+        transactionTemplate.executeWithoutResult(status -> {
+            try {
+                DataSourceUtils.getConnection(dataSource).createStatement();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
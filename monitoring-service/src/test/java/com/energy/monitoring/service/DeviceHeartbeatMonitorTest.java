@@ -0,0 +1,81 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.HeartbeatStatsDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class DeviceHeartbeatMonitorTest {
+
+    private final AlertPublisher alertPublisher = mock(AlertPublisher.class);
+    private DeviceHeartbeatMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        monitor = new DeviceHeartbeatMonitor(alertPublisher);
+        ReflectionTestUtils.setField(monitor, "enabled", true);
+        ReflectionTestUtils.setField(monitor, "maxDevices", 2);
+        ReflectionTestUtils.setField(monitor, "expectedInterval", Duration.ofMillis(30));
+        ReflectionTestUtils.setField(monitor, "missedIntervals", 1);
+        ReflectionTestUtils.setField(monitor, "tickMillis", 10L);
+        ReflectionTestUtils.setField(monitor, "wheelSize", 8);
+        ReflectionTestUtils.setField(monitor, "forgetAfter", Duration.ofMillis(150));
+        monitor.init();
+    }
+
+    @Test
+    void silentDeviceIsAnnouncedAndResumes() throws InterruptedException {
+        monitor.recordSeen(1L);
+        monitor.recordSeen(2L);
+        runFor(80, 2L);
+        verify(alertPublisher).publishDeviceSilent(eq(1L), anyLong());
+        assertThat(monitor.getStats().getSilentDevices()).isEqualTo(1);
+
+        monitor.recordSeen(1L);
+        monitor.tick();
+        verify(alertPublisher).publishDeviceResumed(eq(1L), anyLong(), anyLong());
+        assertThat(monitor.getStats().getSilentDevices()).isZero();
+    }
+
+    @Test
+    void deviceSilentPastForgetHorizonFreesItsSlot() throws InterruptedException {
+        monitor.recordSeen(1L);
+        monitor.recordSeen(2L);
+        runFor(300, 2L);
+
+        HeartbeatStatsDTO stats = monitor.getStats();
+        assertThat(stats.getForgottenDevices()).isEqualTo(1);
+        assertThat(stats.getTrackedDevices()).isEqualTo(1);
+        assertThat(stats.getSilentDevices()).isZero();
+
+        // the freed slot goes to a new device, and the forgotten one is tracked anew when it returns
+        monitor.recordSeen(3L);
+        monitor.tick();
+        assertThat(monitor.getStats().getTrackedDevices()).isEqualTo(2);
+        assertThat(monitor.getStats().getUntrackedReadings()).isZero();
+        verify(alertPublisher, times(1)).publishDeviceSilent(eq(1L), anyLong());
+        verify(alertPublisher, never()).publishDeviceResumed(eq(1L), anyLong(), anyLong());
+    }
+
+    /**
+     * Ticks the wheel while {@code activeDevice} keeps reporting, so the replica counts as receiving.
+     */
+    private void runFor(long millis, long activeDevice) throws InterruptedException {
+        long end = System.currentTimeMillis() + millis;
+        while (System.currentTimeMillis() < end) {
+            monitor.recordSeen(activeDevice);
+            monitor.tick();
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.entity.DeviceReference;
+import com.energy.monitoring.repository.DeviceReferenceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DeviceLimitCacheTest {
+
+    private final DeviceReferenceRepository referenceRepository = mock(DeviceReferenceRepository.class);
+
+    @Test
+    void randomPutsAndInvalidationsKeepEveryProbeChainReachable() {
+        // up to 32 of 64 slots are used, so probe chains get long and wrap around the table end
+        DeviceLimitCache cache = cache(32, Duration.ofMinutes(1));
+        Map<Long, Double> expected = new HashMap<>();
+        Random random = new Random(11);
+
+        for (int op = 0; op < 5000; op++) {
+            long deviceId = random.nextInt(32);
+            if (random.nextInt(3) == 0) {
+                cache.invalidate(deviceId);
+                expected.remove(deviceId);
+            } else {
+                double limit = random.nextInt(1000);
+                cache.put(deviceId, limit, deviceId + 100);
+                expected.put(deviceId, limit);
+            }
+            if (op % 50 == 0) {
+                assertContains(cache, expected);
+            }
+        }
+        assertContains(cache, expected);
+        assertThat(cache.getStats().getSize()).isEqualTo(expected.size());
+        assertThat(cache.getStats().getEvictions()).isZero();
+        verify(referenceRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void clockEvictsAnEntryNotReadSinceTheHandPassed() {
+        DeviceLimitCache cache = cache(4, Duration.ofMinutes(1));
+        for (long deviceId = 1; deviceId <= 4; deviceId++) {
+            cache.put(deviceId, 10.0 * deviceId, deviceId);
+        }
+        cache.get(1);
+        cache.get(2);
+
+        cache.put(5, 50.0, 5L);
+
+        assertThat(cache.getStats().getEvictions()).isEqualTo(1);
+        assertThat(cache.getStats().getSize()).isEqualTo(4);
+        assertThat(cache.get(1)).isEqualTo(new DeviceLimitCache.DeviceLimits(10.0, 1L));
+        assertThat(cache.get(2)).isEqualTo(new DeviceLimitCache.DeviceLimits(20.0, 2L));
+        assertThat(cache.get(5)).isEqualTo(new DeviceLimitCache.DeviceLimits(50.0, 5L));
+        verify(referenceRepository, never()).findById(anyLong());
+
+        // exactly one of the unread devices is gone and is loaded again on its next read, into the
+        // slot freed here rather than by evicting another
+        cache.invalidate(5);
+        cache.get(3);
+        cache.get(4);
+        verify(referenceRepository, times(1)).findById(anyLong());
+    }
+
+    @Test
+    void unknownDeviceIsCachedUntilMissingTtlExpires() {
+        DeviceLimitCache cache = cache(16, Duration.ofMinutes(1));
+        when(referenceRepository.findById(7L)).thenReturn(Optional.empty());
+
+        assertThat(cache.get(7)).isNull();
+        assertThat(cache.get(7)).isNull();
+        verify(referenceRepository, times(1)).findById(7L);
+
+        DeviceLimitCache expiring = cache(16, Duration.ZERO);
+        assertThat(expiring.get(7)).isNull();
+        when(referenceRepository.findById(7L)).thenReturn(Optional.of(reference(7L, 70.0)));
+        assertThat(expiring.get(7)).isEqualTo(new DeviceLimitCache.DeviceLimits(70.0, 1L));
+        assertThat(expiring.get(7)).isEqualTo(new DeviceLimitCache.DeviceLimits(70.0, 1L));
+        verify(referenceRepository, times(3)).findById(7L);
+    }
+
+    @Test
+    void putOfDeviceWithoutLimitCachesItAsMissing() {
+        DeviceLimitCache cache = cache(16, Duration.ofMinutes(1));
+        cache.put(3, 30.0, 1L);
+        cache.put(3, null, null);
+
+        assertThat(cache.get(3)).isNull();
+        assertThat(cache.getStats().getSize()).isEqualTo(1);
+        verify(referenceRepository, never()).findById(anyLong());
+    }
+
+    private DeviceLimitCache cache(int capacity, Duration missingTtl) {
+        when(referenceRepository.findAll(any(Pageable.class))).thenReturn(Page.empty());
+        DeviceLimitCache cache = new DeviceLimitCache(referenceRepository, new IngestMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(cache, "capacity", capacity);
+        ReflectionTestUtils.setField(cache, "missingTtl", missingTtl);
+        cache.afterSingletonsInstantiated();
+        return cache;
+    }
+
+    private void assertContains(DeviceLimitCache cache, Map<Long, Double> expected) {
+        expected.forEach((deviceId, limit) -> assertThat(cache.get(deviceId))
+                .as("device %d", deviceId)
+                .isEqualTo(new DeviceLimitCache.DeviceLimits(limit, deviceId + 100)));
+    }
+
+    private static DeviceReference reference(Long deviceId, double maxConsumption) {
+        return DeviceReference.builder()
+                .deviceId(deviceId)
+                .deviceName("device-" + deviceId)
+                .maxConsumption(maxConsumption)
+                .userId(1L)
+                .build();
+    }
+}
@@ -0,0 +1,155 @@
+package com.energy.monitoring.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeviceStateTableTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void randomInsertsAndRemovesKeepEveryProbeChainReachable() {
+        try (DeviceStateTable table = new DeviceStateTable(32)) {
+            Map<Long, Long> expected = new HashMap<>();
+            Random random = new Random(3);
+
+            for (int op = 0; op < 5000; op++) {
+                long deviceId = random.nextInt(32);
+                if (random.nextInt(3) == 0) {
+                    table.remove(deviceId);
+                    expected.remove(deviceId);
+                } else {
+                    int slot = table.find(deviceId);
+                    if (slot < 0) {
+                        slot = table.insert(deviceId);
+                    }
+                    long persisted = random.nextLong();
+                    table.persisted(slot, persisted);
+                    expected.put(deviceId, persisted);
+                }
+                assertThat(table.size()).isEqualTo(expected.size());
+            }
+            expected.forEach((deviceId, persisted) -> {
+                int slot = table.find(deviceId);
+                assertThat(slot).as("device %d", deviceId).isNotNegative();
+                assertThat(table.deviceId(slot)).isEqualTo(deviceId);
+                assertThat(table.persisted(slot)).isEqualTo(persisted);
+            });
+            for (long deviceId = 0; deviceId < 32; deviceId++) {
+                if (!expected.containsKey(deviceId)) {
+                    assertThat(table.find(deviceId)).isNegative();
+                }
+            }
+        }
+    }
+
+    @Test
+    void insertStartsFromZeroedSlotAndStopsAtMaxDevices() {
+        try (DeviceStateTable table = new DeviceStateTable(2)) {
+            int slot = table.insert(1L);
+            table.pending(slot, 5);
+            table.dirty(slot, true);
+            table.remove(1L);
+
+            slot = table.insert(1L);
+            assertThat(table.pending(slot)).isZero();
+            assertThat(table.dirty(slot)).isFalse();
+            assertThat(table.hour(slot)).isEqualTo(AlertStateTracker.NO_HOUR);
+
+            assertThat(table.insert(2L)).isNotNegative();
+            assertThat(table.insert(3L)).isEqualTo(-1);
+            assertThat(table.size()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void snapshotRestoresEveryFieldAndIsConsumed() throws IOException {
+        Path file = dir.resolve("shard-1.state");
+        try (DeviceStateTable table = new DeviceStateTable(100)) {
+            for (long deviceId = 1; deviceId <= 50; deviceId++) {
+                int slot = table.insert(deviceId);
+                table.hour(slot, deviceId * 3600);
+                table.persisted(slot, deviceId * 10);
+                table.pending(slot, deviceId);
+                table.lastSeen(slot, deviceId * 1000);
+                table.dirty(slot, deviceId % 2 == 0);
+                DeviceStateTable.AlertCursor cursor = table.alertSlot(table.new AlertCursor(), slot);
+                cursor.setState(AlertStateTracker.AlertState.values()[(int) deviceId % AlertStateTracker.AlertState.values().length]);
+                cursor.setHour(deviceId * 7200);
+                cursor.setLastNotifiedAt(deviceId * 99);
+            }
+            table.snapshot(file, 1, 4);
+        }
+
+        try (DeviceStateTable restored = new DeviceStateTable(100)) {
+            assertThat(restored.restore(file, 1, 4, Duration.ofMinutes(1))).isTrue();
+            assertThat(Files.exists(file)).isFalse();
+            assertThat(restored.size()).isEqualTo(50);
+
+            DeviceStateTable.AlertCursor cursor = restored.new AlertCursor();
+            for (long deviceId = 1; deviceId <= 50; deviceId++) {
+                int slot = restored.find(deviceId);
+                assertThat(restored.hour(slot)).isEqualTo(deviceId * 3600);
+                assertThat(restored.persisted(slot)).isEqualTo(deviceId * 10);
+                assertThat(restored.pending(slot)).isEqualTo(deviceId);
+                assertThat(restored.lastSeen(slot)).isEqualTo(deviceId * 1000);
+                assertThat(restored.dirty(slot)).isEqualTo(deviceId % 2 == 0);
+                restored.alertSlot(cursor, slot);
+                assertThat(cursor.getState()).isEqualTo(
+                        AlertStateTracker.AlertState.values()[(int) deviceId % AlertStateTracker.AlertState.values().length]);
+                assertThat(cursor.getHour()).isEqualTo(deviceId * 7200);
+                assertThat(cursor.getLastNotifiedAt()).isEqualTo(deviceId * 99);
+            }
+            assertThat(restored.find(51)).isNegative();
+        }
+    }
+
+    @Test
+    void restoreRejectsMissingMismatchedAndStaleSnapshots() throws IOException {
+        Path file = dir.resolve("shard-0.state");
+        try (DeviceStateTable restored = new DeviceStateTable(100)) {
+            assertThat(restored.restore(file, 0, 4, Duration.ofMinutes(1))).isFalse();
+        }
+
+        writeSnapshot(file, 100);
+        try (DeviceStateTable restored = new DeviceStateTable(100)) {
+            assertThat(restored.restore(file, 1, 4, Duration.ofMinutes(1))).isFalse();
+            assertThat(Files.exists(file)).isFalse();
+        }
+
+        writeSnapshot(file, 100);
+        try (DeviceStateTable restored = new DeviceStateTable(100)) {
+            assertThat(restored.restore(file, 0, 2, Duration.ofMinutes(1))).isFalse();
+        }
+
+        writeSnapshot(file, 1000);
+        try (DeviceStateTable restored = new DeviceStateTable(100)) {
+            assertThat(restored.restore(file, 0, 4, Duration.ofMinutes(1))).isFalse();
+        }
+
+        writeSnapshot(file, 100);
+        try (DeviceStateTable restored = new DeviceStateTable(100)) {
+            assertThat(restored.restore(file, 0, 4, Duration.ofMillis(-1))).isFalse();
+            assertThat(restored.size()).isZero();
+            assertThat(restored.find(1)).isNegative();
+        }
+    }
+
+    private static void writeSnapshot(Path file, int maxDevices) throws IOException {
+        try (DeviceStateTable table = new DeviceStateTable(maxDevices)) {
+            table.insert(1L);
+            table.snapshot(file, 0, 4);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.energy.monitoring.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventTimeWatermarksTest {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2025, 3, 1, 10, 0);
+
+    private final EventTimeWatermarks watermarks = new EventTimeWatermarks();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(watermarks, "allowedLateness", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(watermarks, "maxProcessingDelay", Duration.ZERO);
+        ReflectionTestUtils.setField(watermarks, "deviceZone", ZoneOffset.UTC);
+    }
+
+    @Test
+    void hourIsClosedOnceTheDeviceIsPastItsEndByTheAllowedLateness() {
+        assertThat(watermarks.isLate(1L, HOUR.plusMinutes(50))).isFalse();
+        assertThat(watermarks.isLate(1L, HOUR.plusMinutes(65))).isFalse();
+        // the watermark is at 10:55, so a straggler for 10:xx is still on time
+        assertThat(watermarks.isLate(1L, HOUR.plusMinutes(30))).isFalse();
+
+        assertThat(watermarks.isLate(1L, HOUR.plusMinutes(70))).isFalse();
+        assertThat(watermarks.isLate(1L, HOUR.plusMinutes(30))).isTrue();
+        // other devices keep their own watermark
+        assertThat(watermarks.isLate(2L, HOUR.plusMinutes(30))).isFalse();
+        assertThat(watermarks.getStats().getCorrections()).isEqualTo(1);
+    }
+
+    @Test
+    void oldReadingsAreOnTimeWithoutProcessingBound() {
+        // a device replaying last year's readings in order is not closed by the wall clock
+        assertThat(watermarks.isLate(1L, HOUR.minusYears(1))).isFalse();
+        assertThat(watermarks.isLate(1L, HOUR.minusYears(1).plusHours(1))).isFalse();
+        assertThat(watermarks.getStats().getStaleCorrections()).isZero();
+    }
+
+    @Test
+    void processingBoundReadsTheWallClockInTheDeviceZone() {
+        ZoneId zone = ZoneId.of("Pacific/Kiritimati");
+        ReflectionTestUtils.setField(watermarks, "maxProcessingDelay", Duration.ofHours(2));
+        ReflectionTestUtils.setField(watermarks, "deviceZone", zone);
+        LocalDateTime now = LocalDateTime.now(zone);
+
+        // UTC+14: read in UTC, the current local hour would look half a day ahead or behind
+        assertThat(watermarks.isLate(1L, now)).isFalse();
+        assertThat(watermarks.isLate(2L, now.minusHours(1))).isFalse();
+        assertThat(watermarks.isLate(3L, now.minusHours(4))).isTrue();
+        assertThat(watermarks.getStats().getStaleCorrections()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,114 @@
+package com.energy.monitoring.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GorillaChunkTest {
+
+    @Test
+    void randomSeriesRoundTrips() {
+        Random random = new Random(7);
+        long[] timestamps = new long[5000];
+        double[] values = new double[timestamps.length];
+        long timestamp = 1_700_000_000L;
+        double value = 50;
+        for (int i = 0; i < timestamps.length; i++) {
+            // mostly regular readings, with jitter, repeats and gaps of every delta-of-delta width
+            timestamp += switch (random.nextInt(10)) {
+                case 0 -> 0;
+                case 1 -> random.nextInt(200);
+                case 2 -> random.nextInt(2000);
+                case 3 -> random.nextInt(1_000_000);
+                default -> 10;
+            };
+            value = switch (random.nextInt(4)) {
+                case 0 -> value;
+                case 1 -> Math.round(value + random.nextGaussian());
+                default -> value + random.nextGaussian();
+            };
+            timestamps[i] = timestamp;
+            values[i] = value;
+        }
+
+        GorillaChunk chunk = new GorillaChunk(0);
+        for (int i = 0; i < timestamps.length; i++) {
+            chunk.append(timestamps[i], values[i]);
+        }
+        assertRoundTrip(chunk, timestamps, values);
+
+        chunk.seal();
+        assertRoundTrip(chunk, timestamps, values);
+    }
+
+    @Test
+    void edgeValuesRoundTripBitForBit() {
+        double[] values = {0.0, -0.0, Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN, 1.0, 1.0, Math.nextUp(1.0),
+                Double.longBitsToDouble(0x7ff8_0000_0000_0001L), Double.longBitsToDouble(1L << 63 | 1L), 0.0};
+        long[] timestamps = new long[values.length];
+        long[] deltas = {0, 10, 10, 9, 74, 10, 266, 10, 2058, 10, 5_000_000, 10, 0, 1, 10};
+        long timestamp = 0;
+        for (int i = 0; i < values.length; i++) {
+            timestamp += deltas[i];
+            timestamps[i] = timestamp;
+        }
+
+        GorillaChunk chunk = new GorillaChunk(0);
+        for (int i = 0; i < values.length; i++) {
+            chunk.append(timestamps[i], values[i]);
+        }
+        chunk.seal();
+        assertRoundTrip(chunk, timestamps, values);
+    }
+
+    @Test
+    void forEachReturnsOnlyPointsInHalfOpenRange() {
+        GorillaChunk chunk = new GorillaChunk(0);
+        for (long t = 100; t < 200; t += 10) {
+            chunk.append(t, t / 10.0);
+        }
+
+        List<Long> seen = new ArrayList<>();
+        chunk.forEach(120, 150, (timestamp, value) -> seen.add(timestamp));
+        assertThat(seen).containsExactly(120L, 130L, 140L);
+
+        seen.clear();
+        chunk.forEach(200, 300, (timestamp, value) -> seen.add(timestamp));
+        chunk.forEach(0, 100, (timestamp, value) -> seen.add(timestamp));
+        assertThat(seen).isEmpty();
+    }
+
+    @Test
+    void regularReadingsCompressWell() {
+        GorillaChunk chunk = new GorillaChunk(0);
+        for (int i = 0; i < 8640; i++) {
+            chunk.append(i * 10L, 42.5);
+        }
+        chunk.seal();
+        assertThat(chunk.count()).isEqualTo(8640);
+        assertThat(chunk.sizeBytes()).isLessThan(8640 / 3);
+        assertThat(chunk.capacityBytes()).isLessThan(chunk.sizeBytes() + Long.BYTES);
+    }
+
+    private static void assertRoundTrip(GorillaChunk chunk, long[] timestamps, double[] values) {
+        List<Long> decodedTimestamps = new ArrayList<>();
+        List<Long> decodedBits = new ArrayList<>();
+        chunk.forEach(Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, value) -> {
+            decodedTimestamps.add(timestamp);
+            decodedBits.add(Double.doubleToRawLongBits(value));
+        });
+
+        assertThat(chunk.count()).isEqualTo(timestamps.length);
+        assertThat(chunk.lastTimestamp()).isEqualTo(timestamps[timestamps.length - 1]);
+        assertThat(decodedTimestamps).hasSize(timestamps.length);
+        for (int i = 0; i < timestamps.length; i++) {
+            assertThat(decodedTimestamps.get(i)).as("timestamp %d", i).isEqualTo(timestamps[i]);
+            assertThat(decodedBits.get(i)).as("value %d", i).isEqualTo(Double.doubleToRawLongBits(values[i]));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.HourlyDelta;
+import com.energy.monitoring.entity.EnergyConsumption;
+import com.energy.monitoring.entity.EnergyUnits;
+import com.energy.monitoring.repository.EnergyConsumptionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HourlyConsumptionAccumulatorTest {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2025, 3, 1, 10, 0);
+
+    private final EnergyConsumptionRepository consumptionRepository = mock(EnergyConsumptionRepository.class);
+    /** The hourly table: (device, hour) to persisted milliwatt-hours. */
+    private final Map<String, AtomicLong> persisted = new ConcurrentHashMap<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private HourlyConsumptionAccumulator accumulator;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            if (failuresLeft.getAndUpdate(left -> Math.max(left - 1, 0)) > 0) {
+                throw new IllegalStateException("database unavailable");
+            }
+            List<HourlyDelta> deltas = invocation.getArgument(0);
+            deltas.forEach(delta -> persisted
+                    .computeIfAbsent(key(delta.getDeviceId(), delta.getTimestamp()), k -> new AtomicLong())
+                    .addAndGet(delta.getDelta()));
+            return null;
+        }).when(consumptionRepository).applyHourlyDeltas(anyList());
+        when(consumptionRepository.findByDeviceIdAndTimestamp(any(), any())).thenAnswer(invocation -> {
+            AtomicLong total = persisted.get(key(invocation.getArgument(0), invocation.getArgument(1)));
+            return Optional.ofNullable(total).map(t -> EnergyConsumption.builder()
+                    .totalConsumption(EnergyUnits.toDecimal(t.get()))
+                    .build());
+        });
+
+        accumulator = new HourlyConsumptionAccumulator(consumptionRepository,
+                new IngestMetrics(new SimpleMeterRegistry()), mock(ConsumptionResponseCache.class));
+        ReflectionTestUtils.setField(accumulator, "maxDirtyBuckets", 4);
+        ReflectionTestUtils.setField(accumulator, "idleCloseAfter", Duration.ofHours(1));
+    }
+
+    @Test
+    void runningTotalIncludesPersistedAmount() {
+        persisted.put(key(1L, HOUR), new AtomicLong(1_000));
+
+        assertThat(accumulator.add(1L, HOUR, 250)).isEqualTo(1_250);
+        assertThat(accumulator.add(1L, HOUR, 250)).isEqualTo(1_500);
+        assertThat(accumulator.getDirtyBucketCount()).isEqualTo(1);
+
+        accumulator.flush();
+        assertThat(persisted.get(key(1L, HOUR))).hasValue(1_500);
+        assertThat(accumulator.getDirtyBucketCount()).isZero();
+    }
+
+    @Test
+    void failedFlushKeepsAmountsForNextAttempt() {
+        accumulator.add(1L, HOUR, 100);
+        accumulator.add(1L, HOUR.plusHours(1), 10);
+        failuresLeft.set(1);
+
+        // moving on to the next hour retires the first bucket, and its write fails
+        accumulator.add(1L, HOUR.plusHours(2), 1);
+        accumulator.add(1L, HOUR, 5);
+        accumulator.flush();
+
+        assertThat(persisted.get(key(1L, HOUR))).hasValue(105);
+        assertThat(persisted.get(key(1L, HOUR.plusHours(1)))).hasValue(10);
+        assertThat(persisted.get(key(1L, HOUR.plusHours(2)))).hasValue(1);
+        assertThat(accumulator.getDirtyBucketCount()).isZero();
+    }
+
+    @Test
+    void bucketOfSilentDeviceIsClosedByFlush() throws InterruptedException {
+        ReflectionTestUtils.setField(accumulator, "idleCloseAfter", Duration.ofMillis(50));
+        accumulator.add(1L, HOUR, 100);
+        accumulator.flush();
+        assertThat(accumulator.getBucketCount()).isEqualTo(1);
+
+        Thread.sleep(100);
+        accumulator.add(2L, HOUR, 7);
+        accumulator.flush();
+
+        // device 1 never moved on to a new hour, yet its bucket is written and dropped
+        assertThat(accumulator.getBucketCount()).isEqualTo(1);
+        assertThat(persisted.get(key(1L, HOUR))).hasValue(100);
+        // a reading that does show up again starts from the stored total
+        assertThat(accumulator.add(1L, HOUR, 5)).isEqualTo(105);
+    }
+
+    @Test
+    void concurrentReadingsAcrossRetiredHoursAreAllPersistedOnce() throws InterruptedException {
+        int writers = 4;
+        int readingsPerWriter = 20_000;
+        int hours = 6;
+        long[][] added = new long[writers][hours];
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            threads.add(Thread.ofPlatform().start(() -> {
+                awaitQuietly(start);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < readingsPerWriter; i++) {
+                    // mostly the current hour, which advances over the run, sometimes a late one,
+                    // so buckets are retired and taken back while other threads still add to them
+                    int current = Math.min(i * hours / readingsPerWriter, hours - 1);
+                    int hour = random.nextInt(8) == 0 ? random.nextInt(current + 1) : current;
+                    long amount = 1 + random.nextInt(1_000);
+                    accumulator.add(1L + random.nextInt(2), HOUR.plusHours(hour), amount);
+                    added[writer][hour] += amount;
+                }
+            }));
+        }
+        Thread flusher = Thread.ofPlatform().start(() -> {
+            awaitQuietly(start);
+            while (writing.get()) {
+                accumulator.flush();
+                Thread.onSpinWait();
+            }
+        });
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(60));
+        }
+        writing.set(false);
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        accumulator.flush();
+
+        long expected = 0;
+        for (long[] perHour : added) {
+            for (long amount : perHour) {
+                expected += amount;
+            }
+        }
+        long written = persisted.values().stream().mapToLong(AtomicLong::get).sum();
+        assertThat(written).isEqualTo(expected);
+        for (int hour = 0; hour < hours; hour++) {
+            long expectedHour = 0;
+            for (long[] perHour : added) {
+                expectedHour += perHour[hour];
+            }
+            long writtenHour = persisted.getOrDefault(key(1L, HOUR.plusHours(hour)), new AtomicLong()).get()
+                    + persisted.getOrDefault(key(2L, HOUR.plusHours(hour)), new AtomicLong()).get();
+            assertThat(writtenHour).as("hour %d", hour).isEqualTo(expectedHour);
+        }
+        assertThat(accumulator.getDirtyBucketCount()).isZero();
+    }
+
+    private static String key(Long deviceId, LocalDateTime hour) {
+        return deviceId + "@" + hour;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.HourlyDelta;
+import com.energy.monitoring.entity.EnergyUnits;
+import com.energy.monitoring.repository.EnergyConsumptionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IngestPipelineTest {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2025, 3, 1, 10, 0);
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private final EnergyConsumptionRepository consumptionRepository = mock(EnergyConsumptionRepository.class);
+    private final DeviceLimitCache deviceLimitCache = mock(DeviceLimitCache.class);
+    private final AlertPublisher alertPublisher = mock(AlertPublisher.class);
+    /** The hourly table: (device, hour) to stored milliwatt-hours. */
+    private final Map<String, AtomicLong> stored = new ConcurrentHashMap<>();
+    private final AtomicBoolean databaseDown = new AtomicBoolean();
+    private final AtomicInteger batchWrites = new AtomicInteger();
+    private IngestPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            batchWrites.incrementAndGet();
+            if (databaseDown.get()) {
+                throw new DataAccessResourceFailureException("database unavailable");
+            }
+            List<HourlyDelta> deltas = invocation.getArgument(0);
+            deltas.forEach(delta -> store(delta.getDeviceId(), delta.getTimestamp(), delta.getDelta()));
+            return null;
+        }).when(consumptionRepository).applyHourlyDeltas(anyList());
+
+        AlertStateTracker alertStateTracker = new AlertStateTracker();
+        ReflectionTestUtils.setField(alertStateTracker, "hysteresisMargin", 0.05);
+        ReflectionTestUtils.setField(alertStateTracker, "reNotifyIntervalMs", 3_600_000L);
+        MeasurementDeduplicator deduplicator = mock(MeasurementDeduplicator.class);
+        EventTimeWatermarks watermarks = mock(EventTimeWatermarks.class);
+        ConsumptionBaselines baselines = mock(ConsumptionBaselines.class);
+        when(baselines.projectOverrun(any(), any(), anyDouble(), anyDouble())).thenReturn(Double.NaN);
+
+        pipeline = new IngestPipeline(consumptionRepository, deviceLimitCache, alertStateTracker, deduplicator,
+                watermarks, mock(RecentReadingsStore.class), baselines, mock(DeviceHeartbeatMonitor.class),
+                mock(ConsumptionResponseCache.class), alertPublisher, mock(HotPathLogger.class),
+                new IngestMetrics(new SimpleMeterRegistry()), new ObjectMapper().findAndRegisterModules(),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(pipeline, "shardCount", 4);
+        ReflectionTestUtils.setField(pipeline, "shardRingSize", 64);
+        ReflectionTestUtils.setField(pipeline, "alertRingSize", 64);
+        ReflectionTestUtils.setField(pipeline, "persistRingSize", 64);
+        ReflectionTestUtils.setField(pipeline, "persistBatchSize", 16);
+        ReflectionTestUtils.setField(pipeline, "persistRetryIntervalMs", 10L);
+        ReflectionTestUtils.setField(pipeline, "waitStrategy", WaitStrategy.SLEEPING);
+        ReflectionTestUtils.setField(pipeline, "devicesPerShard", 64);
+        ReflectionTestUtils.setField(pipeline, "snapshotDir", "");
+        ReflectionTestUtils.setField(pipeline, "snapshotMaxAge", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(pipeline, "forgetAfter", Duration.ofHours(24));
+        ReflectionTestUtils.setField(pipeline, "flushIntervalMs", 20L);
+        ReflectionTestUtils.setField(pipeline, "maxDirtyBuckets", 1000);
+        pipeline.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline.isRunning()) {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    void readingsAreSummedPerDeviceAndHourByOneShard() {
+        Map<String, Long> expected = new HashMap<>();
+        for (int minute = 0; minute < 120; minute += 5) {
+            for (long deviceId = 1; deviceId <= 40; deviceId++) {
+                double value = 0.001 * deviceId + minute / 1000.0;
+                publish(deviceId, HOUR.plusMinutes(minute), value);
+                expected.merge(key(deviceId, HOUR.plusMinutes(minute).withMinute(0)),
+                        EnergyUnits.toMilliwattHours(value), Long::sum);
+            }
+        }
+
+        // every device lives in exactly one shard's table
+        await(() -> pipeline.getStats().getTrackedDevices() == 40);
+        pipeline.stop();
+
+        Map<String, Long> written = new HashMap<>();
+        stored.forEach((key, total) -> written.put(key, total.get()));
+        assertThat(written).isEqualTo(expected);
+    }
+
+    @Test
+    void limitIsCheckedAgainstTheRunningTotal() {
+        when(deviceLimitCache.get(7L)).thenReturn(new DeviceLimitCache.DeviceLimits(1.0, 70L));
+
+        publish(7L, HOUR.plusMinutes(1), 0.4);
+        publish(7L, HOUR.plusMinutes(2), 0.4);
+        verify(alertPublisher, timeout(500).times(0)).publishOverconsumption(any(), any(), anyDouble(), any());
+
+        publish(7L, HOUR.plusMinutes(3), 0.4);
+        verify(alertPublisher, timeout(5_000)).publishOverconsumption(eq(7L), eq(HOUR), eq(1.2), any());
+    }
+
+    @Test
+    void deltasAreRetriedUntilTheDatabaseIsBack() {
+        when(deviceLimitCache.get(3L)).thenReturn(new DeviceLimitCache.DeviceLimits(1.0, 30L));
+        databaseDown.set(true);
+
+        publish(3L, HOUR.plusMinutes(1), 0.6);
+        await(() -> batchWrites.get() >= 3);
+        // the unwritten total still counts towards the limit
+        publish(3L, HOUR.plusMinutes(2), 0.6);
+        verify(alertPublisher, timeout(5_000)).publishOverconsumption(eq(3L), eq(HOUR), eq(1.2), any());
+        assertThat(stored).isEmpty();
+
+        databaseDown.set(false);
+        await(() -> stored.containsKey(key(3L, HOUR)) && stored.get(key(3L, HOUR)).get() == 1_200_000);
+        pipeline.stop();
+
+        assertThat(stored.get(key(3L, HOUR))).hasValue(1_200_000);
+        verify(consumptionRepository, never()).upsertHourlyConsumption(anyLong(), any(), any());
+    }
+
+    @Test
+    void onlyTheRowThatFailsOnItsOwnIsDropped() {
+        doAnswer(invocation -> {
+            throw new DataIntegrityViolationException("bad row in batch");
+        }).when(consumptionRepository).applyHourlyDeltas(anyList());
+        doAnswer(invocation -> {
+            Long deviceId = invocation.getArgument(0);
+            if (deviceId == 2L) {
+                throw new DataIntegrityViolationException("bad row");
+            }
+            store(deviceId, invocation.getArgument(1),
+                    EnergyUnits.toMilliwattHours((BigDecimal) invocation.getArgument(2)));
+            return 1;
+        }).when(consumptionRepository).upsertHourlyConsumption(anyLong(), any(), any());
+
+        for (long deviceId = 1; deviceId <= 3; deviceId++) {
+            publish(deviceId, HOUR.plusMinutes(1), 0.5);
+        }
+        await(() -> stored.size() == 2);
+        pipeline.stop();
+
+        assertThat(stored).containsOnlyKeys(key(1L, HOUR), key(3L, HOUR));
+        assertThat(stored.get(key(1L, HOUR))).hasValue(500_000);
+    }
+
+    private void publish(long deviceId, LocalDateTime timestamp, double value) {
+        String json = String.format("{\"deviceId\":%d,\"timestamp\":\"%s\",\"measurementValue\":%s}",
+                deviceId, TIMESTAMP.format(timestamp), value);
+        pipeline.publish(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void store(Long deviceId, LocalDateTime hour, long delta) {
+        stored.computeIfAbsent(key(deviceId, hour), k -> new AtomicLong()).addAndGet(delta);
+    }
+
+    private static String key(Long deviceId, LocalDateTime hour) {
+        return deviceId + "@" + hour;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met within 10 s");
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted");
+            }
+        }
+    }
+}
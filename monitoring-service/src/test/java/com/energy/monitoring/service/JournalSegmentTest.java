@@ -0,0 +1,132 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.DeviceMeasurement;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JournalSegmentTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 10, 0, 0, 123_000_000);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsReadBackAfterReopening() throws IOException {
+        List<DeviceMeasurement> measurements = measurements(10);
+        Path file = write(100, measurements);
+
+        try (JournalSegment segment = JournalSegment.recover(file)) {
+            assertThat(segment.first()).isEqualTo(100);
+            assertThat(segment.end()).isEqualTo(110);
+            assertThat(segment.free()).isZero();
+
+            List<DeviceMeasurement> read = new ArrayList<>();
+            segment.read(103, 110, ByteBuffer.allocate(JournalSegment.RECORD_BYTES * 2), read);
+            assertThat(read).isEqualTo(measurements.subList(3, 10));
+        }
+    }
+
+    @Test
+    void recoverCutsTornTail() throws IOException {
+        Path file = write(0, measurements(10));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // half of an eleventh record
+            channel.write(ByteBuffer.allocate(JournalSegment.RECORD_BYTES / 2), channel.size());
+        }
+
+        try (JournalSegment segment = JournalSegment.recover(file)) {
+            assertThat(segment.end()).isEqualTo(10);
+        }
+        assertThat(Files.size(file)).isEqualTo(10L * JournalSegment.RECORD_BYTES);
+    }
+
+    @Test
+    void recoverCutsAtFirstCorruptRecord() throws IOException {
+        Path file = write(0, measurements(10));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // a record whose write only partly reached the disk
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), 6L * JournalSegment.RECORD_BYTES + 9);
+        }
+
+        try (JournalSegment segment = JournalSegment.recover(file)) {
+            assertThat(segment.end()).isEqualTo(6);
+            List<DeviceMeasurement> read = new ArrayList<>();
+            segment.read(0, 6, ByteBuffer.allocate(JournalSegment.RECORD_BYTES * 4), read);
+            assertThat(read).hasSize(6);
+        }
+        assertThat(Files.size(file)).isEqualTo(6L * JournalSegment.RECORD_BYTES);
+    }
+
+    @Test
+    void recordsAtAnotherPositionDoNotCheckOut() throws IOException {
+        Path file = write(0, measurements(4));
+        Path moved = dir.resolve(file.getFileName().toString().replace("00000000000000000000", "00000000000000000001"));
+        Files.move(file, moved);
+
+        try (JournalSegment segment = JournalSegment.recover(moved)) {
+            assertThat(segment.end()).isEqualTo(segment.first());
+        }
+    }
+
+    @Test
+    void truncateDropsRecordsFromPosition() throws IOException {
+        List<DeviceMeasurement> measurements = measurements(8);
+        try (JournalSegment segment = JournalSegment.create(dir, 50, 16)) {
+            segment.append(measurements, 0, 8, ByteBuffer.allocate(JournalSegment.RECORD_BYTES * 8));
+            segment.truncate(55);
+
+            assertThat(segment.end()).isEqualTo(55);
+            assertThat(segment.free()).isEqualTo(11);
+            assertThatThrownBy(() -> segment.read(50, 56, ByteBuffer.allocate(JournalSegment.RECORD_BYTES), new ArrayList<>()))
+                    .isInstanceOf(IOException.class);
+
+            // the next append continues at the cut
+            segment.append(measurements, 7, 8, ByteBuffer.allocate(JournalSegment.RECORD_BYTES));
+            List<DeviceMeasurement> read = new ArrayList<>();
+            segment.read(50, 56, ByteBuffer.allocate(JournalSegment.RECORD_BYTES), read);
+            assertThat(read.subList(0, 5)).isEqualTo(measurements.subList(0, 5));
+            assertThat(read.get(5)).isEqualTo(measurements.get(7));
+        }
+    }
+
+    private Path write(long first, List<DeviceMeasurement> measurements) throws IOException {
+        try (JournalSegment segment = JournalSegment.create(dir, first, measurements.size())) {
+            segment.append(measurements, 0, measurements.size(),
+                    ByteBuffer.allocate(JournalSegment.RECORD_BYTES * measurements.size()));
+            segment.force();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(JournalSegment::isSegment)
+                    .filter(file -> JournalSegment.firstPosition(file) == first)
+                    .findFirst()
+                    .orElseThrow();
+        }
+    }
+
+    private static List<DeviceMeasurement> measurements(int count) {
+        List<DeviceMeasurement> measurements = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            measurements.add(DeviceMeasurement.builder()
+                    .deviceId(1L + i % 3)
+                    .timestamp(START.plusSeconds(10L * i))
+                    .measurementValue(0.5 + i)
+                    .build());
+        }
+        return measurements;
+    }
+}
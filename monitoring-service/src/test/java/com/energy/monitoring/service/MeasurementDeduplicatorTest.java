@@ -0,0 +1,94 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.DedupStatsDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MeasurementDeduplicatorTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 12, 0);
+
+    @Test
+    void redeliveryWithinRingIsDuplicate() {
+        MeasurementDeduplicator deduplicator = deduplicator(16, 1 << 16);
+
+        assertThat(deduplicator.isDuplicate(1L, at(0))).isFalse();
+        assertThat(deduplicator.isDuplicate(2L, at(0))).isFalse();
+        assertThat(deduplicator.isDuplicate(1L, at(1))).isFalse();
+        assertThat(deduplicator.isDuplicate(1L, at(0))).isTrue();
+
+        DedupStatsDTO stats = deduplicator.getStats();
+        assertThat(stats.getChecked()).isEqualTo(4);
+        assertThat(stats.getRingDuplicates()).isEqualTo(1);
+        assertThat(stats.getBloomDuplicates()).isZero();
+        assertThat(stats.getTrackedDevices()).isEqualTo(2);
+    }
+
+    @Test
+    void duplicateOlderThanRingIsCaughtByBloomFilter() {
+        MeasurementDeduplicator deduplicator = deduplicator(2, 1 << 16);
+        for (int second = 0; second < 10; second++) {
+            assertThat(deduplicator.isDuplicate(1L, at(second))).isFalse();
+        }
+
+        assertThat(deduplicator.isDuplicate(1L, at(3))).isTrue();
+        assertThat(deduplicator.getStats().getBloomDuplicates()).isEqualTo(1);
+        // an old reading that was never seen passes
+        assertThat(deduplicator.isDuplicate(1L, at(-5))).isFalse();
+    }
+
+    @Test
+    void duplicateSurvivesOneRotationAndIsForgottenAfterTwo() {
+        // 1024 bits hold 102 readings per generation
+        MeasurementDeduplicator deduplicator = deduplicator(2, 1024);
+        for (int second = 0; second < 102; second++) {
+            deduplicator.isDuplicate(1L, at(second));
+        }
+        assertThat(deduplicator.getStats().getBloomRotations()).isEqualTo(1);
+        assertThat(deduplicator.isDuplicate(1L, at(0))).isTrue();
+
+        for (int second = 102; second < 204; second++) {
+            deduplicator.isDuplicate(1L, at(second));
+        }
+        assertThat(deduplicator.getStats().getBloomRotations()).isEqualTo(2);
+        assertThat(deduplicator.isDuplicate(1L, at(1))).isFalse();
+    }
+
+    @Test
+    void evictedDeviceStartsWithEmptyRing() {
+        MeasurementDeduplicator deduplicator = deduplicator(16, 1 << 16);
+        deduplicator.isDuplicate(1L, at(0));
+        deduplicator.evictDevice(1L);
+
+        assertThat(deduplicator.getStats().getTrackedDevices()).isZero();
+        // a not-yet-full ring does not consult the bloom filter
+        assertThat(deduplicator.isDuplicate(1L, at(0))).isFalse();
+    }
+
+    @Test
+    void disabledDeduplicatorAcceptsEverything() {
+        MeasurementDeduplicator deduplicator = deduplicator(16, 1 << 16);
+        ReflectionTestUtils.setField(deduplicator, "enabled", false);
+
+        assertThat(deduplicator.isDuplicate(1L, at(0))).isFalse();
+        assertThat(deduplicator.isDuplicate(1L, at(0))).isFalse();
+        assertThat(deduplicator.getStats().getChecked()).isZero();
+    }
+
+    private static MeasurementDeduplicator deduplicator(int ringSize, int bloomBits) {
+        MeasurementDeduplicator deduplicator = new MeasurementDeduplicator();
+        ReflectionTestUtils.setField(deduplicator, "enabled", true);
+        ReflectionTestUtils.setField(deduplicator, "ringSize", ringSize);
+        ReflectionTestUtils.setField(deduplicator, "bloomBits", bloomBits);
+        deduplicator.init();
+        return deduplicator;
+    }
+
+    private static LocalDateTime at(int second) {
+        return START.plusSeconds(second);
+    }
+}
@@ -0,0 +1,178 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.DeviceMeasurement;
+import com.energy.monitoring.dto.HourlyDelta;
+import com.energy.monitoring.repository.EnergyConsumptionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MeasurementJournalTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 10, 0);
+
+    @TempDir
+    Path dir;
+
+    private final EnergyConsumptionRepository consumptionRepository = mock(EnergyConsumptionRepository.class);
+    /** The checkpoint row: position up to which the journal is applied. */
+    private final AtomicLong checkpoint = new AtomicLong();
+    private final AtomicBoolean databaseDown = new AtomicBoolean();
+    private final List<MeasurementJournal> journals = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(consumptionRepository.findJournalCheckpoint(anyString())).thenAnswer(invocation -> checkpoint.get());
+        doAnswer(invocation -> {
+            if (databaseDown.get()) {
+                throw new IllegalStateException("database unavailable");
+            }
+            checkpoint.set(invocation.getArgument(2));
+            return null;
+        }).when(consumptionRepository).applyJournaledDeltas(anyList(), anyString(), anyLong());
+    }
+
+    @AfterEach
+    void tearDown() {
+        journals.stream().filter(MeasurementJournal::isRunning).forEach(MeasurementJournal::stop);
+    }
+
+    @Test
+    void restartReplaysExactlyWhatIsPastTheCheckpoint() {
+        List<DeviceMeasurement> measurements = measurements(8);
+
+        List<DeviceMeasurement> firstRun = Collections.synchronizedList(new ArrayList<>());
+        MeasurementJournal journal = journal(applying(firstRun));
+        journal.start();
+        journal.append(measurements.subList(0, 3));
+        await(() -> checkpoint.get() == 3);
+
+        // acknowledged while the database is down, then the service stops
+        databaseDown.set(true);
+        journal.append(measurements.subList(3, 8));
+        await(() -> journal.getStats().getApplyRetries() > 0);
+        journal.stop();
+        assertThat(firstRun).isEqualTo(measurements.subList(0, 3));
+        assertThat(checkpoint).hasValue(3);
+
+        databaseDown.set(false);
+        List<DeviceMeasurement> secondRun = Collections.synchronizedList(new ArrayList<>());
+        MeasurementJournal restarted = journal(applying(secondRun));
+        restarted.start();
+        await(() -> checkpoint.get() == 8);
+
+        assertThat(secondRun).isEqualTo(measurements.subList(3, 8));
+        assertThat(restarted.getStats().getUnapplied()).isZero();
+        // the segments wholly behind the checkpoint are gone, only the one being written is left
+        await(() -> restarted.getStats().getSegments() == 1);
+    }
+
+    @Test
+    void failedApplyRejectsAppendsAndLeavesReadingsForReplay() {
+        List<DeviceMeasurement> measurements = measurements(5);
+
+        MonitoringService broken = mock(MonitoringService.class);
+        when(broken.applyJournaledBatch(anyList(), any())).thenThrow(new IllegalArgumentException("bad batch"));
+        MeasurementJournal journal = journal(broken);
+        journal.start();
+        journal.append(measurements);
+        await(() -> journal.getStats().isFailed());
+
+        assertThatThrownBy(() -> journal.append(measurements.subList(0, 1)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Ingest journal failed");
+        journal.stop();
+        assertThat(checkpoint).hasValue(0);
+
+        List<DeviceMeasurement> replayed = Collections.synchronizedList(new ArrayList<>());
+        MeasurementJournal restarted = journal(applying(replayed));
+        restarted.start();
+        await(() -> checkpoint.get() == 5);
+
+        assertThat(replayed).isEqualTo(measurements);
+    }
+
+    private MeasurementJournal journal(MonitoringService monitoringService) {
+        MeasurementJournal journal = new MeasurementJournal(monitoringService, consumptionRepository,
+                mock(HotPathLogger.class), new IngestMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(journal, "dir", dir.toString());
+        ReflectionTestUtils.setField(journal, "journalId", "test");
+        // small segments, so appends roll over into new files
+        ReflectionTestUtils.setField(journal, "segmentRecords", 4);
+        ReflectionTestUtils.setField(journal, "maxUnapplied", 1_000L);
+        ReflectionTestUtils.setField(journal, "syncTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(journal, "applyBatchSize", 2);
+        ReflectionTestUtils.setField(journal, "retryIntervalMs", 10L);
+        journals.add(journal);
+        return journal;
+    }
+
+    /**
+     * A monitoring service that writes one delta per batch and records the readings of every
+     * batch whose write committed.
+     */
+    @SuppressWarnings("unchecked")
+    private static MonitoringService applying(List<DeviceMeasurement> applied) {
+        MonitoringService monitoringService = mock(MonitoringService.class);
+        when(monitoringService.applyJournaledBatch(anyList(), any())).thenAnswer(invocation -> {
+            List<DeviceMeasurement> batch = invocation.getArgument(0);
+            Consumer<List<HourlyDelta>> write = invocation.getArgument(1);
+            write.accept(List.of(new HourlyDelta(1L, START, batch.size())));
+            applied.addAll(batch);
+            return batch.size();
+        });
+        return monitoringService;
+    }
+
+    private static List<DeviceMeasurement> measurements(int count) {
+        List<DeviceMeasurement> measurements = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            measurements.add(DeviceMeasurement.builder()
+                    .deviceId(1L)
+                    .timestamp(START.plusMinutes(i))
+                    .measurementValue(i + 0.25)
+                    .build());
+        }
+        return measurements;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met within 10 s");
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted");
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.energy.monitoring.service;
+
+import com.energy.monitoring.dto.DeviceMeasurement;
+import com.energy.monitoring.dto.HourlyDelta;
+import com.energy.monitoring.entity.EnergyUnits;
+import com.energy.monitoring.repository.DailyConsumptionRepository;
+import com.energy.monitoring.repository.DeviceReferenceRepository;
+import com.energy.monitoring.repository.EnergyConsumptionRepository;
+import com.energy.monitoring.repository.MonthlyConsumptionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class MonitoringServiceTest {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2025, 3, 1, 10, 0);
+
+    private final EnergyConsumptionRepository consumptionRepository = mock(EnergyConsumptionRepository.class);
+    private final AlertPublisher alertPublisher = mock(AlertPublisher.class);
+    private final RecentReadingsStore recentReadingsStore = mock(RecentReadingsStore.class);
+    private final HourlyConsumptionAccumulator consumptionAccumulator = mock(HourlyConsumptionAccumulator.class);
+    private final ConsumptionBaselines baselines = mock(ConsumptionBaselines.class);
+    /** The hourly table: (device, hour) to stored milliwatt-hours. */
+    private final Map<String, AtomicLong> stored = new ConcurrentHashMap<>();
+    private final AtomicBoolean databaseDown = new AtomicBoolean();
+    private final MeasurementDeduplicator deduplicator = new MeasurementDeduplicator();
+    private final EventTimeWatermarks watermarks = new EventTimeWatermarks();
+    private MonitoringService monitoringService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        doAnswer(invocation -> {
+            if (databaseDown.get()) {
+                throw new CannotCreateTransactionException("Could not open JDBC connection");
+            }
+            List<HourlyDelta> deltas = invocation.getArgument(0);
+            deltas.forEach(delta -> store(delta.getDeviceId(), delta.getTimestamp(), delta.getDelta()));
+            return null;
+        }).when(consumptionRepository).applyHourlyDeltas(anyList());
+        doAnswer(invocation -> {
+            store(invocation.getArgument(0), invocation.getArgument(1),
+                    EnergyUnits.toMilliwattHours((BigDecimal) invocation.getArgument(2)));
+            return 1;
+        }).when(consumptionRepository).upsertHourlyConsumption(anyLong(), any(), any());
+
+        ReflectionTestUtils.setField(deduplicator, "enabled", true);
+        ReflectionTestUtils.setField(deduplicator, "ringSize", 4);
+        ReflectionTestUtils.setField(deduplicator, "bloomBits", 1 << 16);
+        deduplicator.init();
+        ReflectionTestUtils.setField(watermarks, "allowedLateness", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(watermarks, "maxProcessingDelay", Duration.ZERO);
+        ReflectionTestUtils.setField(watermarks, "deviceZone", ZoneOffset.UTC);
+
+        monitoringService = new MonitoringService(consumptionRepository, mock(DeviceReferenceRepository.class),
+                mock(DailyConsumptionRepository.class), mock(MonthlyConsumptionRepository.class),
+                consumptionAccumulator, mock(DeviceLimitCache.class), mock(AlertStateTracker.class),
+                alertPublisher, recentReadingsStore, mock(RecentReadingsPeers.class), deduplicator, watermarks,
+                baselines, mock(DeviceHeartbeatMonitor.class),
+                mock(ConsumptionResponseCache.class), mock(DeviceStateBroadcaster.class), mock(HotPathLogger.class),
+                new IngestMetrics(new SimpleMeterRegistry()), mock(ObjectProvider.class), mock(ObjectProvider.class));
+    }
+
+    @Test
+    void batchIsRethrownWhileDatabaseIsDownAndCountedOnceRedelivered() {
+        List<DeviceMeasurement> batch = List.of(
+                measurement(1L, HOUR.plusMinutes(1), 0.25),
+                measurement(1L, HOUR.plusMinutes(2), 0.25),
+                measurement(2L, HOUR.plusMinutes(1), 0.5));
+        databaseDown.set(true);
+
+        assertThatThrownBy(() -> monitoringService.processMeasurementBatch(batch))
+                .isInstanceOf(CannotCreateTransactionException.class);
+        assertThat(stored).isEmpty();
+        verify(alertPublisher, never()).checkConsumption(any(), anyDouble(), any());
+        verify(recentReadingsStore, never()).append(any(), any(), anyDouble());
+
+        // the broker delivers the same batch again, and it is not taken for a duplicate
+        databaseDown.set(false);
+        assertThat(monitoringService.processMeasurementBatch(batch)).isEqualTo(3);
+        assertThat(stored.get(key(1L, HOUR))).hasValue(500_000);
+        assertThat(stored.get(key(2L, HOUR))).hasValue(500_000);
+        verify(recentReadingsStore, times(3)).append(any(), any(), anyDouble());
+    }
+
+    @Test
+    void rowFailingOnItsOwnIsDroppedAndTheRestWritten() {
+        doAnswer(invocation -> {
+            throw new DataIntegrityViolationException("bad row in batch");
+        }).when(consumptionRepository).applyHourlyDeltas(anyList());
+        doAnswer(invocation -> {
+            Long deviceId = invocation.getArgument(0);
+            if (deviceId == 2L) {
+                throw new DataIntegrityViolationException("bad row");
+            }
+            store(deviceId, invocation.getArgument(1),
+                    EnergyUnits.toMilliwattHours((BigDecimal) invocation.getArgument(2)));
+            return 1;
+        }).when(consumptionRepository).upsertHourlyConsumption(anyLong(), any(), any());
+
+        int accepted = monitoringService.processMeasurementBatch(List.of(
+                measurement(1L, HOUR.plusMinutes(1), 0.25),
+                measurement(2L, HOUR.plusMinutes(1), 0.5),
+                measurement(3L, HOUR.plusMinutes(1), 0.75)));
+
+        assertThat(accepted).isEqualTo(3);
+        assertThat(stored).containsOnlyKeys(key(1L, HOUR), key(3L, HOUR));
+    }
+
+    @Test
+    void connectivityLossDuringRowRetriesRequeuesOnlyUnwrittenRows() {
+        doAnswer(invocation -> {
+            throw new DataIntegrityViolationException("bad row in batch");
+        }).when(consumptionRepository).applyHourlyDeltas(anyList());
+        doAnswer(invocation -> {
+            Long deviceId = invocation.getArgument(0);
+            if (deviceId == 2L && databaseDown.getAndSet(false)) {
+                throw new DataAccessResourceFailureException("connection reset");
+            }
+            store(deviceId, invocation.getArgument(1),
+                    EnergyUnits.toMilliwattHours((BigDecimal) invocation.getArgument(2)));
+            return 1;
+        }).when(consumptionRepository).upsertHourlyConsumption(anyLong(), any(), any());
+        List<DeviceMeasurement> batch = new ArrayList<>(List.of(
+                measurement(1L, HOUR.plusMinutes(1), 0.25),
+                measurement(2L, HOUR.plusMinutes(1), 0.5),
+                measurement(3L, HOUR.plusMinutes(1), 0.75)));
+        databaseDown.set(true);
+
+        assertThatThrownBy(() -> monitoringService.processMeasurementBatch(batch))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(stored).containsOnlyKeys(key(1L, HOUR));
+
+        // device 1 was written before the connection dropped, so its redelivery is a duplicate
+        assertThat(monitoringService.processMeasurementBatch(batch)).isEqualTo(2);
+        assertThat(stored.get(key(1L, HOUR))).hasValue(250_000);
+        assertThat(stored.get(key(2L, HOUR))).hasValue(500_000);
+        assertThat(stored.get(key(3L, HOUR))).hasValue(750_000);
+    }
+
+    @Test
+    void lateReadingIsStoredAsCorrectionWithoutAlertCheck() {
+        monitoringService.processDeviceMeasurement(measurement(5L, HOUR.plusHours(2).plusMinutes(30), 0.1));
+        monitoringService.processDeviceMeasurement(measurement(5L, HOUR.plusMinutes(15), 0.4));
+
+        // the hour ended before the device's watermark, so the reading goes straight to its stored total
+        assertThat(stored.get(key(5L, HOUR))).hasValue(400_000);
+        verify(consumptionAccumulator, never()).add(anyLong(), eq(HOUR), anyLong());
+        verify(alertPublisher, never()).checkConsumption(any(), anyDouble(), eq(HOUR));
+        verify(baselines, times(1)).observe(any(), any(), anyDouble());
+    }
+
+    @Test
+    void lateReadingInBatchIsWrittenWithoutAlertCheck() {
+        int accepted = monitoringService.processMeasurementBatch(List.of(
+                measurement(5L, HOUR.plusHours(2).plusMinutes(30), 0.1),
+                measurement(5L, HOUR.plusMinutes(15), 0.4),
+                measurement(5L, HOUR.plusMinutes(20), 0.2)));
+
+        assertThat(accepted).isEqualTo(3);
+        assertThat(stored.get(key(5L, HOUR))).hasValue(600_000);
+        assertThat(stored.get(key(5L, HOUR.plusHours(2)))).hasValue(100_000);
+        verify(alertPublisher).checkConsumption(eq(5L), anyDouble(), eq(HOUR.plusHours(2)));
+        verify(alertPublisher, never()).checkConsumption(any(), anyDouble(), eq(HOUR));
+        verify(consumptionAccumulator, never()).addPersisted(anyLong(), eq(HOUR), anyLong());
+        verify(baselines, times(1)).observe(any(), any(), anyDouble());
+        verify(recentReadingsStore, times(3)).append(any(), any(), anyDouble());
+    }
+
+    private void store(Long deviceId, LocalDateTime hour, long delta) {
+        stored.computeIfAbsent(key(deviceId, hour), k -> new AtomicLong()).addAndGet(delta);
+    }
+
+    private static String key(Long deviceId, LocalDateTime hour) {
+        return deviceId + "@" + hour;
+    }
+
+    private static DeviceMeasurement measurement(Long deviceId, LocalDateTime timestamp, double value) {
+        return DeviceMeasurement.builder()
+                .deviceId(deviceId)
+                .timestamp(timestamp)
+                .measurementValue(value)
+                .build();
+    }
+}
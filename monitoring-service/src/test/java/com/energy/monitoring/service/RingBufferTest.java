@@ -0,0 +1,131 @@
+package com.energy.monitoring.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RingBufferTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int EVENTS_PER_PRODUCER = 20_000;
+
+    @Test
+    void capacityIsRoundedUpToPowerOfTwo() {
+        assertThat(new RingBuffer<>(5, () -> new long[1], WaitStrategy.SLEEPING).capacity()).isEqualTo(8);
+        assertThat(new RingBuffer<>(8, () -> new long[1], WaitStrategy.SLEEPING).capacity()).isEqualTo(8);
+        assertThat(new RingBuffer<>(1, () -> new long[1], WaitStrategy.SLEEPING).capacity()).isEqualTo(2);
+    }
+
+    @Test
+    void slotsAreReusedAfterWrapping() {
+        RingBuffer<long[]> ring = new RingBuffer<>(4, () -> new long[1], WaitStrategy.SLEEPING);
+        long next = 0;
+        for (int round = 0; round < 25; round++) {
+            for (int i = 0; i < ring.capacity(); i++) {
+                long sequence = ring.next();
+                ring.get(sequence)[0] = sequence * 10;
+                ring.publish(sequence);
+            }
+            assertThat(ring.backlog()).isEqualTo(ring.capacity());
+
+            long available = ring.waitFor(next, 0);
+            assertThat(available).isEqualTo(next + ring.capacity() - 1);
+            for (long sequence = next; sequence <= available; sequence++) {
+                assertThat(ring.get(sequence)[0]).isEqualTo(sequence * 10);
+            }
+            ring.release(available);
+            next = available + 1;
+            assertThat(ring.backlog()).isZero();
+        }
+        assertThat(ring.get(0)).isSameAs(ring.get(ring.capacity()));
+    }
+
+    @Test
+    void waitForTimesOutWhenNothingIsPublished() {
+        RingBuffer<long[]> ring = new RingBuffer<>(4, () -> new long[1], WaitStrategy.BLOCKING);
+        long claimed = ring.next();
+
+        assertThat(ring.waitFor(0, TimeUnit.MILLISECONDS.toNanos(5))).isEqualTo(-1);
+
+        ring.publish(claimed);
+        assertThat(ring.waitFor(0, 0)).isZero();
+    }
+
+    @Test
+    void waitForStopsAtFirstUnpublishedSequence() {
+        RingBuffer<long[]> ring = new RingBuffer<>(8, () -> new long[1], WaitStrategy.SLEEPING);
+        long first = ring.next();
+        long second = ring.next();
+        long third = ring.next();
+        ring.publish(first);
+        ring.publish(third);
+
+        assertThat(ring.waitFor(first, 0)).isEqualTo(first);
+
+        ring.publish(second);
+        assertThat(ring.waitFor(first, 0)).isEqualTo(third);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = WaitStrategy.class, names = {"YIELDING", "SLEEPING", "BLOCKING"})
+    void concurrentProducersPublishEveryEventOnce(WaitStrategy waitStrategy) throws InterruptedException {
+        // small ring, so producers keep wrapping and waiting for the consumer
+        RingBuffer<long[]> ring = new RingBuffer<>(64, () -> new long[1], waitStrategy);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            long producer = p;
+            producers.add(Thread.ofPlatform().start(() -> {
+                awaitQuietly(start);
+                for (long i = 0; i < EVENTS_PER_PRODUCER; i++) {
+                    long sequence = ring.next();
+                    ring.get(sequence)[0] = producer << 32 | i;
+                    ring.publish(sequence);
+                }
+            }));
+        }
+
+        long[] lastSeen = new long[PRODUCERS];
+        Arrays.fill(lastSeen, -1);
+        long total = (long) PRODUCERS * EVENTS_PER_PRODUCER;
+        long next = 0;
+        start.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (next < total && System.nanoTime() < deadline) {
+            long available = ring.waitFor(next, TimeUnit.MILLISECONDS.toNanos(10));
+            for (long sequence = next; sequence <= available; sequence++) {
+                long event = ring.get(sequence)[0];
+                int producer = (int) (event >>> 32);
+                long index = event & 0xFFFF_FFFFL;
+                // each producer's events arrive once and in the order it published them
+                assertThat(index).isEqualTo(lastSeen[producer] + 1);
+                lastSeen[producer] = index;
+            }
+            ring.release(available);
+            next = available + 1;
+        }
+        for (Thread producer : producers) {
+            producer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        assertThat(next).isEqualTo(total);
+        assertThat(lastSeen).containsOnly(EVENTS_PER_PRODUCER - 1L);
+        assertThat(ring.backlog()).isZero();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 public class OverconsumptionAlert {
+    private String type;
     private Long deviceId;
     private Long userId;
     private String deviceName;
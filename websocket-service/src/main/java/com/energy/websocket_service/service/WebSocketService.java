@@ -30,7 +30,7 @@ public class WebSocketService {
 
             NotificationMessage notification = new NotificationMessage(
                     "ALERT",
-                    "Overconsumption Warning",
+                    titleOf(alert),
                     alert.getMessage(),
                     LocalDateTime.now(),
                     alert
@@ -46,6 +46,19 @@ public class WebSocketService {
         }
     }
 
+    private static String titleOf(OverconsumptionAlert alert) {
+        if (alert.getType() == null) {
+            return "Overconsumption Warning";
+        }
+        return switch (alert.getType()) {
+            case "ANOMALY" -> "Unusual Consumption";
+            case "PROJECTED_OVERRUN" -> "Projected Overconsumption";
+            case "DEVICE_SILENT" -> "Device Not Reporting";
+            case "DEVICE_RESUMED" -> "Device Reporting Again";
+            default -> "Overconsumption Warning";
+        };
+    }
+
     public void sendChatMessage(String recipientId, ChatMessage message) {
         log.info("Sending chat message to recipient: {}", recipientId);
 